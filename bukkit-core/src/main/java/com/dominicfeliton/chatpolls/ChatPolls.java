@@ -18,6 +18,7 @@ import com.dominicfeliton.chatpolls.util.GenericRunnable;
 import com.dominicfeliton.chatpolls.util.PlayerRecord;
 import com.dominicfeliton.chatpolls.util.PollObject;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
+import net.kyori.adventure.sound.Sound;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -32,11 +33,15 @@ import org.jetbrains.annotations.NotNull;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.dominicfeliton.chatpolls.ChatPollsHelper.SchedulerType.ASYNC;
+import static com.dominicfeliton.chatpolls.ChatPollsHelper.SchedulerType.GLOBAL;
 import static com.dominicfeliton.chatpolls.util.CommonRefs.SoundType.CHP_VERSION;
 
 public class ChatPolls extends JavaPlugin {
@@ -75,15 +80,39 @@ public class ChatPolls extends JavaPlugin {
     private Map<String, PlayerRecord> playerRecords = new ConcurrentHashMap<>();
 
     /**
-     * personalPolls is a mapping of player UUID => (pollId => PollObject).
-     * This is an in-memory store for personal polls.
+     * In-memory store of every poll, indexed by pollId, creator, tag and status.
      */
-    private final Map<UUID, Map<String, PollObject>> personalPolls = new ConcurrentHashMap<>();
+    private final PollRegistry pollRegistry = new PollRegistry();
+
+    private final PollLifecycleScheduler lifecycleScheduler = new PollLifecycleScheduler();
+
+    private ExpirationWarningBroadcaster<Player, Component> warningBroadcaster;
+
+    private PollArchiver pollArchiver;
+
+    private PollIdAllocator pollIdAllocator;
+
+    private HotPollDispatcher hotPolls;
+
+    // Null if journaling is disabled or the journal could not be opened
+    private volatile PollJournal pollJournal;
+
+    private volatile PollLoader pollLoader;
+    // Set once the save files with open polls are loaded and their journaled changes replayed
+    private volatile boolean pollsReady;
+    // Set once every save file is loaded and every journaled change replayed
+    private volatile boolean pollsLoaded;
 
     private volatile String globalState = "Starting";
     
     private ObjectMapper objectMapper;
     private static final String POLLS_SAVE_PATH = "plugins/ChatPolls/polls/";
+    private static final String JSON_SUFFIX = ".json";
+    private static final String SNAPSHOT_SUFFIX = ".chps";
+    // Players with active or scheduled polls as of the last save, whose files load first
+    private static final String OPEN_CREATORS_FILE = "open-creators.txt";
+    // Whether save files are written as binary snapshots; both formats are always loaded
+    private volatile boolean binarySaves;
 
     public @NotNull BukkitAudiences adventure() {
         if (adventure == null) {
@@ -112,6 +141,7 @@ public class ChatPolls extends JavaPlugin {
         GenericRunnable autoSave = new GenericRunnable() {
             @Override
             protected void execute() {
+                archiveColdPolls();
                 savePolls();
                 refs.debugMsg("Auto-saved polls");
             }
@@ -119,6 +149,198 @@ public class ChatPolls extends JavaPlugin {
         helper.runAsyncRepeating(true, 300 * 20, 300 * 20, autoSave, ASYNC, null);
     }
 
+    private void setupSaveFormat() {
+        String format = configurationManager.getMainConfig().getString("General.saveFormat", "json");
+        binarySaves = "binary".equalsIgnoreCase(format);
+    }
+
+    private void setupArchiver() {
+        long archiveAfterSeconds = configurationManager.getMainConfig().getLong("General.archiveEndedPollsAfterSeconds", 86400);
+        pollArchiver = new PollArchiver(java.nio.file.Paths.get(POLLS_SAVE_PATH, "archive"), archiveAfterSeconds * 1000L);
+    }
+
+    private void setupPollIds() {
+        // -1 on a single server; servers sharing a poll store each need their own node
+        int nodeId = Math.min(configurationManager.getMainConfig().getInt("General.pollIdNode", -1),
+                PollIdAllocator.MAX_NODE_ID);
+        try {
+            pollIdAllocator = new PollIdAllocator(java.nio.file.Paths.get(POLLS_SAVE_PATH, "next-poll-id"), nodeId);
+        } catch (java.io.IOException e) {
+            // The registry still rejects an ID that is already taken
+            refs.debugMsg("Could not read poll ID state, IDs will restart from 1: " + e.getMessage());
+            pollIdAllocator = new PollIdAllocator(nodeId);
+        }
+    }
+
+    /**
+     * Moves the ballots of polls that have been ended for a while to disk.
+     */
+    private void archiveColdPolls() {
+        long now = SystemClock.millis();
+        for (String pollId : pollRegistry.getPollIds()) {
+            PollObject poll = pollRegistry.get(pollId);
+            if (poll == null) continue;
+            try {
+                if (pollArchiver.archiveIfCold(poll, now)) {
+                    refs.debugMsg("Archived ballots of poll " + pollId);
+                }
+            } catch (Exception e) {
+                refs.debugMsg("Could not archive poll " + pollId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Opens the journal and reads the poll changes journaled since the last save, to be
+     * replayed as each poll is loaded. Every poll is journaled from here on. Each save
+     * starts a new journal segment and deletes the ones it covered.
+     *
+     * @return The changes to replay, or null if polls are not journaled
+     */
+    private PollJournal.Replay openJournal() {
+        if (!configurationManager.getMainConfig().getBoolean("General.enableVoteJournal", true)) return null;
+        long fsyncIntervalMillis = configurationManager.getMainConfig().getLong("General.journalFsyncIntervalMillis",
+                PollJournal.DEFAULT_FSYNC_INTERVAL_MILLIS);
+        PollJournal journal = new PollJournal(java.nio.file.Paths.get(POLLS_SAVE_PATH, "journal"), new PollJournal.Codec() {
+            @Override
+            public byte[] encode(PollObject poll) throws java.io.IOException {
+                return objectMapper.writeValueAsBytes(poll);
+            }
+
+            @Override
+            public PollObject decode(byte[] data) throws java.io.IOException {
+                return objectMapper.readValue(data, BukkitPollObject.class);
+            }
+        }, fsyncIntervalMillis);
+
+        PollJournal.Replay replay;
+        try {
+            replay = journal.prepareReplay(pollRegistry, new PollJournal.Listener() {
+                @Override
+                public void restored(String pollId, PollObject poll) {
+                    attachVotingLog(poll);
+                    try {
+                        pollArchiver.attach(poll);
+                    } catch (java.io.IOException e) {
+                        refs.debugMsg("Could not read archive of poll " + pollId + ": " + e.getMessage());
+                    }
+                    journal.attach(pollId, poll);
+                    lifecycleScheduler.schedule(pollId, poll);
+                    warningBroadcaster.track(pollId, poll);
+                }
+
+                @Override
+                public void deleted(String pollId, PollObject poll) {
+                    lifecycleScheduler.cancel(pollId);
+                    warningBroadcaster.untrack(pollId);
+                    deletePollFiles(pollId, poll);
+                }
+
+                @Override
+                public void skipped(java.nio.file.Path segment, Exception e) {
+                    refs.debugMsg("Skipping unreadable record in " + segment.getFileName() + ": " + e.getMessage());
+                }
+            });
+            journal.open();
+        } catch (java.io.IOException e) {
+            // Without a journal, the segments are kept for the next start
+            refs.debugMsg("Could not open the poll journal, changes are only kept by saves: " + e.getMessage());
+            return null;
+        }
+        // Polls created from here on attach themselves
+        pollJournal = journal;
+        return replay;
+    }
+
+    private void deletePollFiles(String pollId, PollObject poll) {
+        try {
+            poll.getVotingLog().deleteSpillFile();
+            pollArchiver.delete(poll);
+        } catch (java.io.IOException e) {
+            refs.debugMsg("Could not delete files of poll " + pollId + ": " + e.getMessage());
+        }
+    }
+
+    private void setupLifecycleScheduler() {
+        lifecycleScheduler.addListener(this::announceTransition);
+
+        // One task drives every poll's start and end; ticks once a second to match the wheel
+        GenericRunnable lifecycleTick = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                lifecycleScheduler.tick(SystemClock.millis());
+            }
+        };
+        lifecycleTick.setName("PollLifecycleTick");
+        helper.runSyncRepeating(true, 20, 20, lifecycleTick, GLOBAL, null);
+    }
+
+    private void setupExpirationWarnings() {
+        int sendsPerTick = configurationManager.getMainConfig().getInt("General.warningSendsPerTick",
+                ExpirationWarningBroadcaster.DEFAULT_SENDS_PER_TICK);
+        warningBroadcaster = new ExpirationWarningBroadcaster<>(new BukkitWarningPlatform(this, refs), sendsPerTick);
+        for (String pollId : pollRegistry.getPollIds()) {
+            warningBroadcaster.track(pollId, pollRegistry.get(pollId));
+        }
+
+        // Runs every tick so large broadcasts drain quickly within the per-tick budget
+        GenericRunnable warningTick = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                warningBroadcaster.tick(SystemClock.millis());
+            }
+        };
+        warningTick.setName("ExpirationWarningTick");
+        helper.runSyncRepeating(true, 1, 1, warningTick, GLOBAL, null);
+    }
+
+    private void setupHotPolls() {
+        int hotVotesPerSecond = configurationManager.getMainConfig().getInt("General.hotPollVotesPerSecond",
+                HotPollDispatcher.DEFAULT_HOT_VOTES_PER_SECOND);
+        hotPolls = new HotPollDispatcher(new BukkitHotVoteAcknowledger(this, refs), hotVotesPerSecond);
+
+        // Applies queued votes of hot polls every tick, acknowledging each tick's votes together
+        GenericRunnable hotPollDrain = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                hotPolls.drain(SystemClock.millis());
+            }
+        };
+        hotPollDrain.setName("HotPollDrain");
+        helper.runSyncRepeating(true, 1, 1, hotPollDrain, GLOBAL, null);
+    }
+
+    private void announceTransition(String pollId, PollObject poll, PollStatus status) {
+        refs.debugMsg("Poll " + pollId + " is now " + status);
+        if (status == PollStatus.ENDED && warningBroadcaster != null) {
+            warningBroadcaster.untrack(pollId);
+        }
+        String messageName;
+        CommonRefs.SoundType fallback;
+        Sound custom;
+        if (status == PollStatus.ACTIVE) {
+            messageName = "chppPollOpened";
+            fallback = CommonRefs.SoundType.POLL_BEGIN;
+            custom = poll.getOnBegin();
+        } else if (status == PollStatus.ENDED) {
+            messageName = "chppPollClosed";
+            fallback = CommonRefs.SoundType.POLL_END;
+            custom = poll.getOnEnd();
+        } else {
+            return;
+        }
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            BukkitCommandSender target = new BukkitCommandSender(player);
+            refs.sendMsg(messageName, new String[]{pollId, poll.getTitle()}, "&r&d", target);
+            if (custom != null) {
+                adventure().player(player).playSound(custom);
+            } else {
+                refs.playSound(fallback, target);
+            }
+        }
+    }
+
     private void initStableObjs() {
         instance = this;
         adapterFactory = new AdapterFactory();
@@ -137,73 +359,334 @@ public class ChatPolls extends JavaPlugin {
         configurationManager = new ConfigurationHandler();
     }
 
+    /**
+     * Writes the save file of every player whose polls changed since they were last saved.
+     * Unchanged files are left alone. Once every file is written, the journal segments the
+     * save covers are deleted.
+     */
     public synchronized void savePolls() {
         try {
             // Create directory if it doesn't exist
             java.nio.file.Files.createDirectories(java.nio.file.Paths.get(POLLS_SAVE_PATH));
-            
-            // Save each player's polls
-            for (Map.Entry<UUID, Map<String, PollObject>> entry : personalPolls.entrySet()) {
-                UUID playerId = entry.getKey();
-                Map<String, PollObject> polls = entry.getValue();
-                
-                String playerFile = POLLS_SAVE_PATH + playerId.toString() + ".json";
-                
-                // Log the JSON content before writing
-                String jsonContent = objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(polls);
-                refs.debugMsg("Writing JSON for player " + playerId + ":\n" + jsonContent);
-                
-                // Write the file
-                objectMapper.writeValue(new java.io.File(playerFile), polls);
-                
-                // Log the file content after writing
-                String writtenContent = new String(
-                    java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(playerFile)),
-                    java.nio.charset.StandardCharsets.UTF_8
-                );
-                refs.debugMsg("File content after write for player " + playerId + ":\n" + writtenContent);
-            }
         } catch (Exception e) {
             refs.debugMsg("Error saving polls: " + e.getMessage());
             e.printStackTrace();
+            return;
+        }
+
+        // Everything journaled before this is in memory, so in the files written below
+        PollJournal journal = pollJournal;
+        long checkpoint = -1;
+        if (journal != null) {
+            try {
+                checkpoint = journal.rollOver();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Until then, journaled changes may be waiting for polls that are not loaded yet
+        boolean complete = pollsLoaded;
+        Set<UUID> dirty = pollRegistry.takeDirtyCreators();
+        for (UUID playerId : dirty) {
+            PollLoader loader = pollLoader;
+            if (loader != null && loader.isLoading(playerId)) {
+                // Only part of the file may be in memory yet
+                pollRegistry.markDirty(playerId);
+                complete = false;
+                continue;
+            }
+            Map<String, PollObject> polls = pollRegistry.getByCreator(playerId);
+            Map<String, Long> stamps = new HashMap<>();
+            for (Map.Entry<String, PollObject> entry : polls.entrySet()) {
+                // Read before serializing, so a change made while writing is saved next time
+                stamps.put(entry.getKey(), entry.getValue().getChangeStamp());
+                // Persist in-memory vote events alongside the poll data
+                entry.getValue().flushVotingLog();
+            }
+
+            try {
+                // Polls with rewards stay JSON
+                boolean binary = binarySaves && polls.values().stream().allMatch(PollSnapshot::supports);
+                java.nio.file.Path file = java.nio.file.Paths.get(POLLS_SAVE_PATH, playerId + (binary ? SNAPSHOT_SUFFIX : JSON_SUFFIX));
+                // Through a temp file, so a crash mid-write keeps the previous file
+                if (binary) {
+                    SnapshotFile.write(file, out -> PollSnapshot.write(out, playerId, polls));
+                } else {
+                    SnapshotFile.write(file, out -> objectMapper.writeValue(out, polls));
+                }
+                // The file in the other format is now out of date
+                java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get(POLLS_SAVE_PATH,
+                        playerId + (binary ? JSON_SUFFIX : SNAPSHOT_SUFFIX)));
+                pollRegistry.markSaved(stamps);
+            } catch (Exception e) {
+                pollRegistry.markDirty(playerId);
+                complete = false;
+                refs.debugMsg("Error saving polls of player " + playerId + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        refs.debugMsg("Saved polls of " + dirty.size() + " players");
+        if (pollsLoaded) {
+            saveOpenCreators();
+        }
+
+        if (journal == null) return;
+        java.io.IOException failure = journal.takeFailure();
+        if (failure != null) {
+            refs.debugMsg("Error writing the poll journal: " + failure.getMessage());
+        }
+        if (complete && checkpoint > 0) {
+            try {
+                journal.deleteSegmentsBefore(checkpoint);
+            } catch (java.io.IOException e) {
+                refs.debugMsg("Could not delete old poll journal segments: " + e.getMessage());
+            }
         }
     }
 
+    /**
+     * Starts loading every player's save file in the background, files with open polls first.
+     * Each poll's journaled changes are replayed as it loads, before it is registered. Poll
+     * commands open up once the open polls are in.
+     */
     private void loadPolls() {
-        try {
-            java.io.File pollsDir = new java.io.File(POLLS_SAVE_PATH);
-            if (!pollsDir.exists()) return;
+        java.io.File[] listed = new java.io.File(POLLS_SAVE_PATH).listFiles(
+                (dir, name) -> name.endsWith(JSON_SUFFIX) || name.endsWith(SNAPSHOT_SUFFIX));
+        // A player with a file in each format crashed before the old one was deleted; the newer wins
+        Map<UUID, java.io.File> newest = new HashMap<>();
+        for (java.io.File file : listed == null ? new java.io.File[0] : listed) {
+            UUID playerUUID;
+            try {
+                playerUUID = UUID.fromString(playerIdOf(file.getName()));
+            } catch (IllegalArgumentException e) {
+                refs.debugMsg("Skipping poll file " + file.getName() + ": not named after a player");
+                continue;
+            }
+            newest.merge(playerUUID, file, (a, b) -> a.lastModified() >= b.lastModified() ? a : b);
+        }
+        Map<UUID, java.nio.file.Path> saveFiles = new HashMap<>();
+        for (Map.Entry<UUID, java.io.File> entry : newest.entrySet()) {
+            saveFiles.put(entry.getKey(), entry.getValue().toPath());
+        }
 
-            java.io.File[] pollFiles = pollsDir.listFiles((dir, name) -> name.endsWith(".json"));
-            if (pollFiles == null) return;
+        refs.debugMsg("Loading polls...");
+        refs.debugMsg("Found " + saveFiles.size() + " poll files");
+        PollJournal.Replay replay = openJournal();
+        Set<UUID> first = readOpenCreators(saveFiles.keySet());
+        if (replay != null) {
+            // Polls created since the last save are likely open
+            for (UUID creator : replay.getCreators()) {
+                if (saveFiles.containsKey(creator)) {
+                    first.add(creator);
+                } else {
+                    replay.replayCreated(creator);
+                }
+            }
+        }
 
-            refs.debugMsg("Loading polls...");
-            refs.debugMsg("Found " + pollFiles.length + " poll files");
+        int threads = configurationManager.getMainConfig().getInt("General.pollLoadThreads", PollLoader.DEFAULT_THREADS);
+        PollLoader loader = new PollLoader(pollRegistry, threads);
+        pollLoader = loader;
+        PollJournal journal = pollJournal;
+        java.util.concurrent.CompletableFuture<Void> done = loader.load(saveFiles, first, this::readPollFile, new PollLoader.Listener() {
+            @Override
+            public void prepare(String pollId, PollObject poll) {
+                attachVotingLog(poll);
+                try {
+                    pollArchiver.attach(poll);
+                } catch (java.io.IOException e) {
+                    refs.debugMsg("Could not read archive of poll " + pollId + ": " + e.getMessage());
+                }
+            }
 
-            for (java.io.File file : pollFiles) {
-                refs.debugMsg("Loading poll file " + file.getName());
+            @Override
+            public int replay(String pollId, PollObject poll) {
+                if (replay == null) return 0;
+                int replayed = replay.replayInto(pollId, poll);
+                if (replayed == PollLoader.DELETED) {
+                    deletePollFiles(pollId, poll);
+                }
+                return replayed;
+            }
 
-                try {
-                    String playerId = file.getName().replace(".json", "");
-                    UUID playerUUID = UUID.fromString(playerId);
-                    
-                    // Use TypeReference to handle the complex map type
-                    Map<String, BukkitPollObject> polls = objectMapper.readValue(file, 
-                        objectMapper.getTypeFactory().constructMapType(
-                            Map.class, 
-                            String.class, 
-                            BukkitPollObject.class
-                        )
-                    );
-                    
-                    personalPolls.put(playerUUID, new ConcurrentHashMap<>(polls));
-                } catch (Exception e) {
-                    refs.debugMsg("Error loading poll file " + file.getName() + ": " + e.getMessage());
+            @Override
+            public void loaded(String pollId, PollObject poll) {
+                if (journal != null) {
+                    journal.attach(pollId, poll);
                 }
+                lifecycleScheduler.schedule(pollId, poll);
+                warningBroadcaster.track(pollId, poll);
             }
-        } catch (Exception e) {
-            refs.debugMsg("Error loading polls: " + e.getMessage());
+
+            @Override
+            public void fileLoaded(UUID creator) {
+                if (replay != null) {
+                    replay.replayCreated(creator);
+                }
+            }
+
+            @Override
+            public void skipped(String pollId, java.nio.file.Path file) {
+                refs.debugMsg("Skipping poll " + pollId + " in " + file.getFileName() + ": ID already in use");
+            }
+
+            @Override
+            public void failed(java.nio.file.Path file, Exception e) {
+                refs.debugMsg("Error loading poll file " + file.getFileName() + ": " + e.getMessage());
+            }
+
+            @Override
+            public void restoredFromBackup(java.nio.file.Path file, Exception e) {
+                refs.debugMsg("Could not read " + file.getFileName() + ", loaded its backup: " + e.getMessage());
+            }
+        });
+
+        // Completed on a loader thread; the rest happens on the main thread, and not at all once disabled
+        loader.whenFirstLoaded().whenComplete((loaded, error) -> runOnMainThread("PollsReady", () -> {
+            pollsReady = true;
+            refs.debugMsg("Loaded the " + first.size() + " poll files with open polls");
+        }));
+        done.whenComplete((loaded, error) -> runOnMainThread("PollsLoaded", () -> {
+            if (error != null) {
+                refs.debugMsg("Error loading polls: " + error.getMessage());
+            }
+            finishLoading(loader, replay);
+        }));
+    }
+
+    /**
+     * Replays what is left of the journal once every file is loaded, e.g. changes to polls
+     * whose files could not be read.
+     */
+    private void finishLoading(PollLoader loader, PollJournal.Replay replay) {
+        pollsReady = true;
+        if (replay != null) {
+            replay.replayRemaining();
+        }
+        pollsLoaded = true;
+
+        PollJournal journal = pollJournal;
+        int replayed = replay == null ? 0 : replay.getApplied();
+        int skipped = journal == null ? 0 : journal.getSkippedRecords();
+        if (skipped > 0) {
+            refs.warnLog("Skipped " + skipped + " unreadable poll journal records.");
+        }
+        if (replayed > 0 || skipped > 0) {
+            refs.debugMsg("Replayed " + replayed + " journaled poll changes");
+            // Fold the replayed changes into the save files, which drops the replayed segments and bad records
+            GenericRunnable compaction = new GenericRunnable() {
+                @Override
+                protected void execute() {
+                    savePolls();
+                }
+            };
+            compaction.setName("PollJournalCompaction");
+            helper.runAsync(compaction, ASYNC, null);
+        }
+        refs.log(refs.getPlainMsg("chpPollsLoaded",
+                new String[]{"&6" + loader.getPollCount(), "&6" + loader.getFileCount(),
+                        "&6" + loader.getDurationMillis()},
+                "&a"));
+    }
+
+    private void runOnMainThread(String name, Runnable action) {
+        ChatPollsHelper scheduler = helper;
+        // Null once disabled
+        if (scheduler == null) return;
+        GenericRunnable task = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                if (isEnabled()) {
+                    action.run();
+                }
+            }
+        };
+        task.setName(name);
+        scheduler.runSync(task, GLOBAL, null);
+    }
+
+    /**
+     * @param saveFiles Every player with a save file, all of whom load first if the list is missing
+     * @return A new set of the players with active or scheduled polls as of the last save
+     */
+    private Set<UUID> readOpenCreators(Set<UUID> saveFiles) {
+        java.nio.file.Path file = java.nio.file.Paths.get(POLLS_SAVE_PATH, OPEN_CREATORS_FILE);
+        Set<UUID> open = new HashSet<>();
+        try {
+            for (String line : java.nio.file.Files.readAllLines(file)) {
+                if (!line.isBlank()) {
+                    open.add(UUID.fromString(line.trim()));
+                }
+            }
+        } catch (java.nio.file.NoSuchFileException e) {
+            return new HashSet<>(saveFiles);
+        } catch (java.io.IOException | IllegalArgumentException e) {
+            refs.debugMsg("Could not read " + OPEN_CREATORS_FILE + ", loading every poll file first: " + e.getMessage());
+            return new HashSet<>(saveFiles);
+        }
+        return open;
+    }
+
+    private void saveOpenCreators() {
+        long now = SystemClock.millis();
+        Set<UUID> open = new HashSet<>();
+        for (PollStatus status : new PollStatus[]{PollStatus.ACTIVE, PollStatus.SCHEDULED}) {
+            for (String pollId : pollRegistry.getByStatus(status, now).keySet()) {
+                UUID creator = pollRegistry.getCreator(pollId);
+                if (creator != null) {
+                    open.add(creator);
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        for (UUID creator : open) {
+            out.append(creator).append('\n');
+        }
+        try {
+            SnapshotFile.write(java.nio.file.Paths.get(POLLS_SAVE_PATH, OPEN_CREATORS_FILE),
+                    stream -> stream.write(out.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        } catch (java.io.IOException e) {
+            refs.debugMsg("Could not save " + OPEN_CREATORS_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static String playerIdOf(String fileName) {
+        String suffix = fileName.endsWith(SNAPSHOT_SUFFIX) ? SNAPSHOT_SUFFIX : JSON_SUFFIX;
+        return fileName.substring(0, fileName.length() - suffix.length());
+    }
+
+    private Map<String, BukkitPollObject> readPollFile(java.nio.file.Path path) throws java.io.IOException {
+        // A backup keeps its save file's name, plus ".bak"
+        String name = path.getFileName().toString();
+        if (name.endsWith(SNAPSHOT_SUFFIX) || name.endsWith(SNAPSHOT_SUFFIX + ".bak")) {
+            PollSnapshot snapshot = PollSnapshot.open(path);
+            Map<String, BukkitPollObject> polls = new java.util.LinkedHashMap<>();
+            for (int i = 0; i < snapshot.size(); i++) {
+                polls.put(snapshot.getPollId(i), (BukkitPollObject) snapshot.decode(i,
+                        (title, options, description) -> new BukkitPollObject(title, options, description, 0, 0)));
+            }
+            return polls;
+        }
+
+        // Use TypeReference to handle the complex map type
+        return objectMapper.readValue(path.toFile(),
+            objectMapper.getTypeFactory().constructMapType(
+                Map.class,
+                String.class,
+                BukkitPollObject.class
+            )
+        );
+    }
+
+    /**
+     * Points a poll's voting log at its spill file, so overflowing events go to disk.
+     */
+    public void attachVotingLog(PollObject poll) {
+        try {
+            poll.setVotingLogFile(java.nio.file.Paths.get(POLLS_SAVE_PATH, "logs", poll.getUuid() + ".log"));
+        } catch (java.io.IOException e) {
+            refs.debugMsg("Could not attach voting log for poll " + poll.getUuid() + ": " + e.getMessage());
         }
     }
 
@@ -230,8 +713,15 @@ public class ChatPolls extends JavaPlugin {
 
         initObjectMapper();
         doStartupTasks();
-        loadPolls();
+        setupSaveFormat();
+        setupArchiver();
+        setupPollIds();
         setupAutoSave();
+        setupLifecycleScheduler();
+        setupExpirationWarnings();
+        setupHotPolls();
+        // Opens the journal, then loads off the main thread
+        loadPolls();
 
         refs.debugMsg(platformType + " | " + platformVersion);
 
@@ -243,6 +733,16 @@ public class ChatPolls extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (pollLoader != null) {
+            // Players whose files were not finished are left out of the save below
+            try {
+                if (!pollLoader.cancel(5000)) {
+                    refs.debugMsg("Poll loader threads did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         refs.debugMsg("Saving polls before shutdown...");
         try {
             savePolls();
@@ -250,6 +750,15 @@ public class ChatPolls extends JavaPlugin {
         } catch (Exception e) {
             refs.debugMsg("Failed to save polls: " + e.getMessage());
         }
+        if (pollJournal != null) {
+            try {
+                // Anything changed during the save is replayed on the next start
+                pollJournal.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pollJournal = null;
+        }
         doTakedownTasks();
 
         // TODO: Move to Helper, spigot only
@@ -371,8 +880,57 @@ public class ChatPolls extends JavaPlugin {
         return configurationManager;
     }
 
-    public Map<UUID, Map<String, PollObject>> getPersonalPolls() {
-        return personalPolls;
+    public PollRegistry getPollRegistry() {
+        return pollRegistry;
+    }
+
+    public PollLifecycleScheduler getLifecycleScheduler() {
+        return lifecycleScheduler;
+    }
+
+    public ExpirationWarningBroadcaster<Player, Component> getWarningBroadcaster() {
+        return warningBroadcaster;
+    }
+
+    public PollArchiver getPollArchiver() {
+        return pollArchiver;
+    }
+
+    public PollIdAllocator getPollIdAllocator() {
+        return pollIdAllocator;
+    }
+
+    public HotPollDispatcher getHotPolls() {
+        return hotPolls;
+    }
+
+    /**
+     * @return Whether every active and scheduled poll is loaded, with its journaled changes
+     */
+    public boolean isPollsReady() {
+        return pollsReady;
+    }
+
+    /**
+     * @return Whether every save file is loaded, ended polls included
+     */
+    public boolean isPollsLoaded() {
+        return pollsLoaded;
+    }
+
+    /**
+     * @return Whether a player's save file is still being loaded
+     */
+    public boolean isLoadingPolls(UUID playerUuid) {
+        PollLoader loader = pollLoader;
+        return !pollsLoaded && (loader == null || loader.isLoading(playerUuid));
+    }
+
+    /**
+     * @return The poll journal, or null if polls are not journaled
+     */
+    public PollJournal getPollJournal() {
+        return pollJournal;
     }
 
     public PlayerRecord getPlayerRecord(Player inPlayer, boolean createNewIfNotExisting) {
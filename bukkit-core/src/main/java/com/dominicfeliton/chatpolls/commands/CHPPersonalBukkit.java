@@ -2,13 +2,23 @@ package com.dominicfeliton.chatpolls.commands;
 
 import com.dominicfeliton.chatpolls.ChatPolls;
 import com.dominicfeliton.chatpolls.commands.BasicCommand;
+import com.dominicfeliton.chatpolls.util.BallotCodec;
 import com.dominicfeliton.chatpolls.util.BukkitPollObject;
 import com.dominicfeliton.chatpolls.util.CommonRefs;
 import com.dominicfeliton.chatpolls.util.GenericCommandSender;
 import com.dominicfeliton.chatpolls.util.BukkitCommandSender;
+import com.dominicfeliton.chatpolls.util.GenericRunnable;
+import com.dominicfeliton.chatpolls.util.PollAudit;
+import com.dominicfeliton.chatpolls.util.PollJournal;
 import com.dominicfeliton.chatpolls.util.PollObject;
+import com.dominicfeliton.chatpolls.util.PollRegistry;
+import com.dominicfeliton.chatpolls.util.PollResultSnapshot;
+import com.dominicfeliton.chatpolls.util.PollStatus;
 import com.dominicfeliton.chatpolls.util.PollType;
+import com.dominicfeliton.chatpolls.util.SystemClock;
+import com.dominicfeliton.chatpolls.util.VoteRequest;
 
+import net.kyori.adventure.sound.Sound;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
@@ -21,19 +31,24 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.dominicfeliton.chatpolls.ChatPollsHelper.SchedulerType.ASYNC;
+
 /**
  * A command for creating, listing, deleting, and voting on personal polls (here named "BukkitPollObject").
  */
 public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
 
     private static final long DEFAULT_DURATION = 24 * 60 * 60; // 24 hours in seconds
+    private static final int MAX_ID_SUGGESTIONS = 50;
+    private static final int MAX_OPTION_SUGGESTIONS = 50;
+    // Options and tally lines shown in chat before the rest are summarised
+    private static final int OPTION_PAGE_SIZE = 10;
 
     private final ChatPolls main;
     private final CommonRefs refs;
@@ -56,37 +71,42 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
         UUID playerUuid = player.getUniqueId();
 
         if (args.length == 1) {
-            return Arrays.asList("create", "list", "delete", "vote", "save", "end").stream()
+            return Arrays.asList("create", "list", "delete", "vote", "undo", "save", "end", "audit").stream()
                     .filter(cmd -> cmd.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
 
         if (args.length == 2) {
+            PollRegistry registry = main.getPollRegistry();
             switch (args[0].toLowerCase()) {
                 case "vote":
+                case "undo":
+                    // Anyone can vote on any running poll
+                    registry.advance(SystemClock.millis());
+                    return registry.findIdsByPrefix(args[1], MAX_ID_SUGGESTIONS,
+                            id -> registry.getStatus(id) == PollStatus.ACTIVE);
                 case "delete":
                 case "end":
-                    Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-                    if (userPolls != null) {
-                        return userPolls.keySet().stream()
-                                .filter(id -> id.toLowerCase().startsWith(args[1].toLowerCase()))
-                                .collect(Collectors.toList());
-                    }
-                    break;
+                    return registry.findIdsByPrefix(args[1], MAX_ID_SUGGESTIONS,
+                            id -> playerUuid.equals(registry.getCreator(id)));
+                case "audit":
+                    if (!player.hasPermission("chatpolls.chp.polls.audit")) break;
+                    return registry.findIdsByPrefix(args[1], MAX_ID_SUGGESTIONS, id -> true);
             }
         }
 
+        if (args.length == 3 && args[0].equalsIgnoreCase("audit") && "repair".startsWith(args[2].toLowerCase())) {
+            return Collections.singletonList("repair");
+        }
+
         // Option suggestions for vote command
         if (args.length == 3 && args[0].equalsIgnoreCase("vote")) {
-            Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-            if (userPolls != null && userPolls.containsKey(args[1])) {
-                PollObject poll = userPolls.get(args[1]);
+            String pollId = main.getPollRegistry().resolveId(args[1]);
+            PollObject poll = pollId == null ? null : main.getPollRegistry().get(pollId);
+            if (poll != null) {
                 // Check if poll is a BukkitPollObject
                 if (poll instanceof BukkitPollObject) {
-                    BukkitPollObject bukkitPoll = (BukkitPollObject) poll;
-                    return bukkitPoll.getOptions().stream()
-                            .filter(opt -> opt.toLowerCase().startsWith(args[2].toLowerCase()))
-                            .collect(Collectors.toList());
+                    return poll.findOptionsByPrefix(args[2], MAX_OPTION_SUGGESTIONS);
                 }
             }
         }
@@ -119,6 +139,11 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
 
         UUID playerUuid = bukkitPlayer.getUniqueId();
 
+        if (!main.isPollsLoaded() && mustWaitForPolls(args[0].toLowerCase(), playerUuid)) {
+            refs.sendMsg("chppPollsLoading", sender);
+            return true;
+        }
+
         switch (args[0].toLowerCase()) {
             case "create":
                 return handleCreate(playerUuid);
@@ -128,16 +153,39 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                 return handleDelete(playerUuid);
             case "vote":
                 return handleVote(playerUuid);
+            case "undo":
+                return handleUndo(playerUuid);
             case "save":
                 return handleSave(playerUuid);
             case "end":
                 return handleEnd(playerUuid);
+            case "audit":
+                return handleAudit();
             default:
                 refs.sendMsg("chppUsage", sender);
                 return true;
         }
     }
 
+    /**
+     * While polls load at startup, a player's own polls are usable once their file is read.
+     * Polls looked up by ID may belong to anyone; they wait for the active and scheduled polls,
+     * which load first with their journaled changes. An ID not found by then may still be an
+     * ended poll whose file is not read yet.
+     */
+    private boolean mustWaitForPolls(String subCommand, UUID playerUuid) {
+        switch (subCommand) {
+            case "create":
+            case "list":
+                return main.isLoadingPolls(playerUuid);
+            case "save":
+                return false;
+            default:
+                if (!main.isPollsReady()) return true;
+                return args.length >= 2 && !main.getPollRegistry().contains(resolvePollId(args[1]));
+        }
+    }
+
     // ----------------------------------------------------------------------
     //  CREATE
     // ----------------------------------------------------------------------
@@ -178,8 +226,9 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             refs.sendMsg("chppTooFewOptions", sender);
             return true;
         }
-        if (options.size() > 5) {
-            refs.sendMsg("chppTooManyOptions", sender);
+        int maxOptions = main.getConfigManager().getMainConfig().getInt("General.maxPollOptions", 500);
+        if (options.size() > maxOptions) {
+            refs.sendMsg("chppTooManyOptions", new String[]{String.valueOf(maxOptions)}, "&r&d", sender);
             return true;
         }
 
@@ -223,15 +272,51 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                 durationSeconds
         );
         
+        bukkitPoll.setAllowVoteUndo(main.getConfigManager().getMainConfig().getBoolean("General.allowVoteUndo", true));
+        bukkitPoll.setSendExpirationWarning(main.getConfigManager().getMainConfig().getBoolean("General.sendExpirationWarnings", true));
+        bukkitPoll.setWarningThresholdsInSeconds(main.getConfigManager().getMainConfig().getIntegerList("General.expirationWarningSeconds"));
+
         // Check if this should be a ranked poll (if title starts with [RANKED])
         //TODO: Make poll type just a param
         if (pollTitle.toUpperCase().startsWith("[RANKED]")) {
             bukkitPoll.setPollType(PollType.RANKED);
             pollTitle = pollTitle.substring(8).trim(); // Remove [RANKED] prefix
+        } else if (pollTitle.toUpperCase().startsWith("[SCHULZE]")) {
+            bukkitPoll.setPollType(PollType.SCHULZE);
+            pollTitle = pollTitle.substring(9).trim(); // Remove [SCHULZE] prefix
+        } else if (pollTitle.toUpperCase().startsWith("[BORDA]")) {
+            bukkitPoll.setPollType(PollType.BORDA);
+            pollTitle = pollTitle.substring(7).trim(); // Remove [BORDA] prefix
+        } else if (pollTitle.toUpperCase().startsWith("[MULTI]")) {
+            bukkitPoll.setPollType(PollType.MULTIPLE);
+            pollTitle = pollTitle.substring(7).trim(); // Remove [MULTI] prefix
+        } else if (pollTitle.toUpperCase().startsWith("[APPROVAL]")) {
+            bukkitPoll.setPollType(PollType.APPROVAL);
+            pollTitle = pollTitle.substring(10).trim(); // Remove [APPROVAL] prefix
         }
 
-        main.getPersonalPolls().putIfAbsent(playerUuid, new ConcurrentHashMap<>());
-        main.getPersonalPolls().get(playerUuid).put(pollId, bukkitPoll);
+        // Ballots and selections are packed into ints, which caps these types
+        int typeLimit = bukkitPoll.getPollType().isRanked() ? BallotCodec.MAX_OPTIONS
+                : bukkitPoll.getPollType().isMultiSelect() ? PollObject.MAX_SELECTION_OPTIONS
+                : Integer.MAX_VALUE;
+        if (options.size() > typeLimit) {
+            refs.sendMsg("chppTooManyOptions", new String[]{String.valueOf(typeLimit)}, "&r&d", sender);
+            return true;
+        }
+
+        bukkitPoll.setCreatorUuid(playerUuid.toString());
+        // Allocated IDs never repeat, but skip any a legacy or imported poll already uses
+        while (!main.getPollRegistry().register(pollId, playerUuid, bukkitPoll)) {
+            pollId = generatePollId();
+        }
+        main.attachVotingLog(bukkitPoll);
+        PollJournal journal = main.getPollJournal();
+        if (journal != null) {
+            journal.logCreate(pollId, playerUuid, bukkitPoll);
+            journal.attach(pollId, bukkitPoll);
+        }
+        main.getLifecycleScheduler().schedule(pollId, bukkitPoll);
+        main.getWarningBroadcaster().track(pollId, bukkitPoll);
 
         // placeholders => [pollId, pollTitle, optionsDisplay, dtStart, dtEnd, description]
         refs.sendMsg("chppCreateSuccess",
@@ -297,7 +382,16 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
     }
 
     private String generatePollId() {
-        return String.valueOf(ThreadLocalRandom.current().nextInt(100000, 999999));
+        return main.getPollIdAllocator().next();
+    }
+
+    /**
+     * @return The poll ID a typed ID or unique prefix refers to, or the typed text if none
+     */
+    private String resolvePollId(String typed) {
+        String trimmed = typed.trim();
+        String pollId = main.getPollRegistry().resolveId(trimmed);
+        return pollId == null ? trimmed : pollId;
     }
 
     private long parseTimeString(String timeStr) {
@@ -327,8 +421,8 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
     // ----------------------------------------------------------------------
 
     private boolean handleList(UUID playerUuid) {
-        Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-        if (userPolls == null || userPolls.isEmpty()) {
+        Map<String, PollObject> userPolls = main.getPollRegistry().getByCreator(playerUuid);
+        if (userPolls.isEmpty()) {
             refs.sendMsg("chppListEmpty", sender);
             return true;
         }
@@ -349,10 +443,15 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             if (!bukkitPoll.getDescription().isEmpty()) {
                 hoverText.append(refs.getPlainMsg("chppListHoverDesc", bukkitPoll.getDescription(), sender)).append("\n");
             }
-            hoverText.append(refs.getPlainMsg("chppListHoverOptions", bukkitPoll.getOptionsDisplay(), sender))
+            List<String> options = bukkitPoll.getOptions();
+            String optionsDisplay = options.size() <= OPTION_PAGE_SIZE
+                    ? bukkitPoll.getOptionsDisplay()
+                    : String.join(", ", options.subList(0, OPTION_PAGE_SIZE)) + ", ...";
+            hoverText.append(refs.getPlainMsg("chppListHoverOptions", optionsDisplay, sender))
                      .append("\n\n");
 
-            if (bukkitPoll.getPollType() == PollType.RANKED) {
+            PollResultSnapshot results = bukkitPoll.getResults();
+            if (bukkitPoll.getPollType().isRanked()) {
                 // Show user's ranking if they voted
                 List<String> ranking = bukkitPoll.getRankedVotes(playerUuid);
                 if (ranking != null) {
@@ -360,28 +459,32 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                         String.join(" > ", ranking), sender)).append("\n");
                 }
                 // Show current winner
-                String winner = bukkitPoll.calculateRankedWinner();
+                String winner = results.getRankedWinner();
                 if (winner != null) {
-                    hoverText.append(refs.getPlainMsg("chppRankedWinner", winner, sender)).append("\n");
+                    hoverText.append(refs.getPlainMsg(rankedWinnerKey(bukkitPoll.getPollType()), winner, sender)).append("\n");
                 }
             } else {
                 // Regular poll - show user's vote and vote counts
-                String playerVote = bukkitPoll.getPlayerVote(playerUuid);
+                String playerVote = describeVote(bukkitPoll, playerUuid);
                 if (playerVote != null) {
                     hoverText.append(refs.getPlainMsg("chppListHoverVoted", playerVote, sender)).append("\n");
                 }
                 hoverText.append(refs.getPlainMsg("chppListHoverVotes", sender)).append("\n");
-                Map<String, Integer> voteMap = bukkitPoll.getOptionVotes();
-                for (Map.Entry<String, Integer> v : voteMap.entrySet()) {
+                for (int i : tallyPage(results)) {
                     hoverText.append(
                             refs.getPlainMsg(
                                     "chppListHoverVoteLine",
-                                    new String[]{v.getKey(), String.valueOf(v.getValue())},
+                                    tallyLineArgs(results, i),
                                     "&r&d",
                                     sender
                             )
                     ).append("\n");
                 }
+                if (options.size() > OPTION_PAGE_SIZE) {
+                    hoverText.append(refs.getPlainMsg("chppTallyMore",
+                            new String[]{String.valueOf(OPTION_PAGE_SIZE), String.valueOf(options.size())},
+                            "&r&d", sender)).append("\n");
+                }
             }
             hoverText.append("\n").append(refs.getPlainMsg("chppListHoverVoteAction", sender));
 
@@ -426,14 +529,38 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             refs.sendMsg(sender, usageMsg, false);
             return true;
         }
-        String pollId = args[1].trim();
+        String pollId = resolvePollId(args[1]);
 
-        Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-        if (userPolls == null || !userPolls.containsKey(pollId)) {
+        PollRegistry registry = main.getPollRegistry();
+        if (!playerUuid.equals(registry.getCreator(pollId))) {
             refs.sendMsg("chppDeleteNotFound", new String[]{pollId}, "&r&d", sender);
             return true;
         }
-        userPolls.remove(pollId);
+        // Acknowledges queued votes before the poll is gone
+        main.getHotPolls().forget(pollId);
+        PollObject removed = registry.unregister(pollId);
+        main.getLifecycleScheduler().cancel(pollId);
+        main.getWarningBroadcaster().untrack(pollId);
+        if (removed == null) {
+            // Deleted concurrently
+            refs.sendMsg("chppDeleteNotFound", new String[]{pollId}, "&r&d", sender);
+            return true;
+        }
+        PollJournal journal = main.getPollJournal();
+        if (journal != null) {
+            journal.detach(removed);
+            journal.logDelete(pollId);
+        }
+        try {
+            removed.getVotingLog().deleteSpillFile();
+        } catch (IOException e) {
+            refs.debugMsg("Could not delete voting log for poll " + pollId + ": " + e.getMessage());
+        }
+        try {
+            main.getPollArchiver().delete(removed);
+        } catch (IOException e) {
+            refs.debugMsg("Could not delete archive of poll " + pollId + ": " + e.getMessage());
+        }
         refs.sendMsg("chppDeleteSuccess", pollId, sender);
         return true;
     }
@@ -459,6 +586,89 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
         }
     }
     
+    // ----------------------------------------------------------------------
+    //  AUDIT
+    // ----------------------------------------------------------------------
+
+    private boolean handleAudit() {
+        if (!((BukkitCommandSender) sender).getBukkitSender().hasPermission("chatpolls.chp.polls.audit")) {
+            refs.sendMsg("chpBadPerms", "chatpolls.chp.polls.audit", sender);
+            return true;
+        }
+        if (args.length < 2) {
+            String usageMsg = refs.getPlainMsg("chppAuditUsage", sender)
+                    .replace("/chpp", "/chp");
+            refs.sendMsg(sender, usageMsg, false);
+            return true;
+        }
+        String pollId = resolvePollId(args[1]);
+        PollObject poll = main.getPollRegistry().get(pollId);
+        if (poll == null) {
+            refs.sendMsg("chppAuditNotFound", new String[]{pollId}, "&r&d", sender);
+            return true;
+        }
+        boolean repair = args.length > 2 && args[2].equalsIgnoreCase("repair");
+
+        // Recounting a large poll takes a while; voting carries on meanwhile
+        refs.sendMsg("chppAuditStarted", pollId, "&r&d", sender);
+        GenericRunnable audit = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                try {
+                    sendAudit(pollId, poll.audit(repair));
+                } catch (IllegalStateException e) {
+                    refs.sendMsg("chppAuditFail", new String[]{pollId, e.getMessage()}, "&r&d", sender);
+                }
+            }
+        };
+        audit.setName("PollAudit-" + pollId);
+        main.getHelper().runAsync(audit, ASYNC, null);
+        return true;
+    }
+
+    private void sendAudit(String pollId, PollAudit audit) {
+        String voters = String.valueOf(audit.getVoters());
+        String millis = String.valueOf(audit.getDurationMillis());
+        if (!audit.isSettled()) {
+            refs.sendMsg("chppAuditUnsettled", pollId, "&r&d", sender);
+            return;
+        }
+        if (!audit.hasDrift()) {
+            refs.sendMsg("chppAuditClean", new String[]{pollId, voters, millis}, "&r&d", sender);
+        } else {
+            refs.sendMsg("chppAuditDrift", new String[]{pollId, voters, millis}, "&r&d", sender);
+            int[] drifted = audit.getDriftedOptions();
+            int shown = Math.min(drifted.length, OPTION_PAGE_SIZE);
+            for (int i = 0; i < shown; i++) {
+                int ordinal = drifted[i];
+                long drift = audit.getDrift(ordinal);
+                refs.sendMsg("chppAuditDriftLine", new String[]{
+                        audit.getOption(ordinal),
+                        String.valueOf(audit.getLive(ordinal)),
+                        String.valueOf(audit.getRecounted(ordinal)),
+                        (drift > 0 ? "+" : "") + drift
+                }, "&r&d", sender);
+            }
+            if (drifted.length > shown) {
+                refs.sendMsg("chppAuditDriftMore", String.valueOf(drifted.length - shown), "&r&d", sender);
+            }
+            if (audit.getBallotDrift() > 0) {
+                refs.sendMsg("chppAuditBallotDrift", new String[]{
+                        String.valueOf(audit.getBallotDrift()),
+                        String.valueOf(audit.getDriftedBallotCodes())
+                }, "&r&d", sender);
+            }
+            if (audit.isRepaired()) {
+                refs.sendMsg("chppAuditRepaired", sender);
+            } else {
+                refs.sendMsg("chppAuditRepairHint", pollId, "&r&d", sender);
+            }
+        }
+        if (audit.getInvalidEntries() > 0) {
+            refs.sendMsg("chppAuditInvalid", String.valueOf(audit.getInvalidEntries()), "&r&d", sender);
+        }
+    }
+
     // ----------------------------------------------------------------------
     //  VOTE
     // ----------------------------------------------------------------------
@@ -469,15 +679,13 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             refs.sendMsg(sender, usageMsg, false);
             return true;
         }
-        String pollId = args[1].trim();
+        String pollId = resolvePollId(args[1]);
 
-        Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-        if (userPolls == null || !userPolls.containsKey(pollId)) {
+        PollObject poll = main.getPollRegistry().get(pollId);
+        if (poll == null) {
             refs.sendMsg("chppVoteNotFound", new String[]{pollId}, "&r&d", sender);
             return true;
         }
-
-        PollObject poll = userPolls.get(pollId);
         if (!(poll instanceof BukkitPollObject)) {
             refs.debugMsg("Poll is not a BukkitPollObject? ID=" + pollId);
             refs.sendMsg("chppVoteFail", sender);
@@ -506,45 +714,44 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                     "&r&d",
                     sender
             );
-            if (bukkitPoll.getPollType() == PollType.RANKED) {
+            if (bukkitPoll.getPollType().isRanked()) {
                 List<String> ranking = bukkitPoll.getRankedVotes(playerUuid);
                 if (ranking != null) {
                     refs.sendMsg("chppVoteInfoVoted", String.join(" > ", ranking), "&r&d", sender);
                 } else {
                     refs.sendMsg("chppRankedVoteInfo", sender);
-                    for (String opt : bukkitPoll.getOptions()) {
-                        refs.sendMsg("chppVoteInfoOption", opt, "&r&d", sender);
-                    }
+                    sendOptionLines(bukkitPoll, pollId);
                 }
             } else {
-                String playerVote = bukkitPoll.getPlayerVote(playerUuid);
+                String playerVote = describeVote(bukkitPoll, playerUuid);
                 if (playerVote != null) {
                     refs.sendMsg("chppVoteInfoVoted", playerVote, "&r&d", sender);
-                } else {
-                    for (String opt : bukkitPoll.getOptions()) {
-                        refs.sendMsg("chppVoteInfoOption", opt, "&r&d", sender);
-                    }
+                }
+                if (bukkitPoll.getPollType().isMultiSelect()) {
+                    refs.sendMsg("chppSelectionVoteInfo", sender);
+                    sendOptionLines(bukkitPoll, pollId);
+                } else if (playerVote == null) {
+                    sendOptionLines(bukkitPoll, pollId);
                 }
             }
             return true;
         }
 
         // Handle ranked or regular voting
-        if (bukkitPoll.getPollType() == PollType.RANKED) {
+        if (bukkitPoll.getPollType().isRanked()) {
             // Parse comma-separated ranking
             List<String> ranking = Arrays.stream(args[2].split(","))
                 .map(String::trim)
+                .map(bukkitPoll::resolveOption)
                 .collect(Collectors.toList());
                 
             // Validate each option
-            for (String opt : ranking) {
-                if (!bukkitPoll.hasOption(opt)) {
-                    refs.sendMsg("chppInvalidOption", sender);
-                    return true;
-                }
+            if (ranking.contains(null)) {
+                refs.sendMsg("chppInvalidOption", sender);
+                return true;
             }
 
-            if (bukkitPoll.hasVoted(playerUuid)) {
+            if (bukkitPoll.hasVoted(playerUuid) && !bukkitPoll.isAllowVoteUndo()) {
                 refs.sendMsg("chppAlreadyVoted",
                         new String[]{String.join(" > ", ranking)},
                         "&r&d",
@@ -553,10 +760,15 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                 return true;
             }
 
+            if (main.getHotPolls().submit(pollId, bukkitPoll, VoteRequest.ranked(playerUuid, ranking))) {
+                // Acknowledged with the rest of this tick's votes
+                return true;
+            }
             if (!bukkitPoll.castRankedVote(playerUuid, ranking)) {
                 refs.sendMsg("chppVoteFail", sender);
                 return true;
             }
+            playPollSound(bukkitPoll.getOnVote(), CommonRefs.SoundType.VOTE_CAST);
 
             // Show the user's ranked choices
             refs.sendMsg("chppVoteSuccess", 
@@ -569,22 +781,60 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             if (bukkitPoll.hasEnded()) {
                 String winner = bukkitPoll.calculateRankedWinner();
                 if (winner != null) {
-                    refs.sendMsg("chppRankedWinner", 
+                    refs.sendMsg(rankedWinnerKey(bukkitPoll.getPollType()), 
                         new String[]{winner}, 
                         "&r&d", 
                         sender
                     );
                 }
             }
+        } else if (bukkitPoll.getPollType().isMultiSelect()) {
+            // Comma-separated selection, replacing any earlier one
+            List<String> selection = Arrays.stream(args[2].split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(bukkitPoll::resolveOption)
+                .distinct()
+                .collect(Collectors.toList());
+
+            if (selection.contains(null)) {
+                refs.sendMsg("chppInvalidOption", sender);
+                return true;
+            }
+
+            int maxSelections = bukkitPoll.getMaxVotesPerUser();
+            if (bukkitPoll.getPollType() == PollType.MULTIPLE && maxSelections > 0 && selection.size() > maxSelections) {
+                refs.sendMsg("chppTooManySelections", new String[]{String.valueOf(maxSelections)}, "&r&d", sender);
+                return true;
+            }
+
+            if (main.getHotPolls().submit(pollId, bukkitPoll, VoteRequest.selection(playerUuid, selection))) {
+                return true;
+            }
+            if (!bukkitPoll.castSelection(playerUuid, selection)) {
+                String previous = describeVote(bukkitPoll, playerUuid);
+                if (previous != null) {
+                    refs.sendMsg("chppAlreadyVoted", new String[]{previous}, "&r&d", sender);
+                } else {
+                    refs.sendMsg("chppVoteFail", sender);
+                }
+                return true;
+            }
+
+            playPollSound(bukkitPoll.getOnVote(), CommonRefs.SoundType.VOTE_CAST);
+            refs.sendMsg("chppVoteSuccess", new String[]{String.join(", ", selection), pollId}, "&r&d", sender);
+            sendTallyLines(bukkitPoll.getResults());
         } else {
             // Regular single-choice voting
-            String option = args[2].trim();
-            if (!bukkitPoll.hasOption(option)) {
+            // Typed in any case; resolved in O(1) however many options the poll has
+            String option = bukkitPoll.resolveOption(args[2].trim());
+            if (option == null) {
                 refs.sendMsg("chppInvalidOption", sender);
                 return true;
             }
 
-            if (bukkitPoll.hasVoted(playerUuid)) {
+            boolean changing = bukkitPoll.isAllowVoteUndo();
+            if (bukkitPoll.hasVoted(playerUuid) && !changing) {
                 refs.sendMsg("chppAlreadyVoted",
                         new String[]{bukkitPoll.getPlayerVote(playerUuid)},
                         "&r&d",
@@ -593,25 +843,65 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
                 return true;
             }
 
-            if (!bukkitPoll.castVote(playerUuid, option)) {
+            if (main.getHotPolls().submit(pollId, bukkitPoll, VoteRequest.single(playerUuid, option))) {
+                return true;
+            }
+            boolean stored = changing
+                    ? bukkitPoll.changeVote(playerUuid, option)
+                    : bukkitPoll.castVote(playerUuid, option);
+            if (!stored) {
                 refs.sendMsg("chppVoteFail", sender);
                 return true;
             }
+            playPollSound(bukkitPoll.getOnVote(), CommonRefs.SoundType.VOTE_CAST);
 
             // success => show tallies
             refs.sendMsg("chppVoteSuccess", new String[]{option, pollId}, "&r&d", sender);
-            Map<String, Integer> updatedVotes = bukkitPoll.getOptionVotes();
-            for (Map.Entry<String, Integer> e : updatedVotes.entrySet()) {
-                refs.sendMsg("chppVoteTallyLine",
-                        new String[]{e.getKey(), String.valueOf(e.getValue())},
-                        "&r&d",
-                        sender
-                );
-            }
+            sendTallyLines(bukkitPoll.getResults());
         }
         return true;
     }
 
+    // ----------------------------------------------------------------------
+    //  UNDO
+    // ----------------------------------------------------------------------
+    private boolean handleUndo(UUID playerUuid) {
+        if (args.length < 2) {
+            String usageMsg = refs.getPlainMsg("chppUndoUsage", sender)
+                    .replace("/chpp", "/chp");
+            refs.sendMsg(sender, usageMsg, false);
+            return true;
+        }
+        String pollId = resolvePollId(args[1]);
+
+        PollObject poll = main.getPollRegistry().get(pollId);
+        if (poll == null) {
+            refs.sendMsg("chppVoteNotFound", new String[]{pollId}, "&r&d", sender);
+            return true;
+        }
+
+        if (!poll.isAllowVoteUndo()) {
+            refs.sendMsg("chppUndoDisabled", sender);
+            return true;
+        }
+        if (poll.hasEnded()) {
+            refs.sendMsg("chppPollEnded", poll.getDateTimeEnd(), "&r&d", sender);
+            return true;
+        }
+        // Queued behind any vote of this player's still waiting in a hot poll's queue
+        if (main.getHotPolls().submit(pollId, poll, VoteRequest.undo(playerUuid))) {
+            return true;
+        }
+        if (!poll.undoVote(playerUuid)) {
+            refs.sendMsg("chppUndoNoVote", sender);
+            return true;
+        }
+
+        playPollSound(poll.getOnUndoVote(), CommonRefs.SoundType.VOTE_UNDO);
+        refs.sendMsg("chppUndoSuccess", new String[]{pollId}, "&r&d", sender);
+        return true;
+    }
+
     // ----------------------------------------------------------------------
     //  END
     // ----------------------------------------------------------------------
@@ -622,15 +912,15 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             refs.sendMsg(sender, usageMsg, false);
             return true;
         }
-        String pollId = args[1].trim();
+        String pollId = resolvePollId(args[1]);
 
-        Map<String, PollObject> userPolls = main.getPersonalPolls().get(playerUuid);
-        if (userPolls == null || !userPolls.containsKey(pollId)) {
+        PollRegistry registry = main.getPollRegistry();
+        PollObject poll = registry.get(pollId);
+        if (poll == null || !playerUuid.equals(registry.getCreator(pollId))) {
             refs.sendMsg("chppEndNotFound", new String[]{pollId}, "&r&d", sender);
             return true;
         }
 
-        PollObject poll = userPolls.get(pollId);
         if (!(poll instanceof BukkitPollObject)) {
             refs.debugMsg("Poll is not a BukkitPollObject? ID=" + pollId);
             return true;
@@ -642,41 +932,138 @@ public class CHPPersonalBukkit extends BasicCommand implements TabCompleter {
             return true;
         }
 
+        // Votes queued before the end still count
+        main.getHotPolls().flush(pollId);
         // Force end the poll by setting endTime to now
         bukkitPoll.forceEnd();
+        registry.reindex(pollId);
+        main.getLifecycleScheduler().reschedule(pollId);
+        main.getWarningBroadcaster().untrack(pollId);
 
         // Show results
         refs.sendMsg("chppEndSuccess", new String[]{pollId}, "&r&d", sender);
 
-        if (bukkitPoll.getPollType() == PollType.RANKED) {
-            String winner = bukkitPoll.calculateRankedWinner();
+        PollResultSnapshot finalResults = bukkitPoll.getResults();
+        if (bukkitPoll.getPollType().isRanked()) {
+            String winner = finalResults.getRankedWinner();
             if (winner != null) {
-                refs.sendMsg("chppRankedWinner", winner, "&r&d", sender);
+                refs.sendMsg(rankedWinnerKey(bukkitPoll.getPollType()), winner, "&r&d", sender);
+            } else if (finalResults.getRankedBallots() > 0) {
+                refs.sendMsg("chppRankedTie", sender);
             } else {
                 refs.sendMsg("chppEndNoVotes", sender);
             }
         } else {
-            Map<String, Integer> finalVotes = bukkitPoll.getOptionVotes();
-            if (finalVotes.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            if (finalResults.getTotalVotes() == 0) {
                 refs.sendMsg("chppEndNoVotes", sender);
             } else {
-                for (Map.Entry<String, Integer> e : finalVotes.entrySet()) {
-                    refs.sendMsg("chppVoteTallyLine",
-                            new String[]{e.getKey(), String.valueOf(e.getValue())},
-                            "&r&d",
-                            sender
-                    );
+                sendTallyLines(finalResults);
+            }
+        }
+
+        // The end is already journaled; a save can wait on an autosave and fsyncs, so keep it off the main thread
+        GenericRunnable save = new GenericRunnable() {
+            @Override
+            protected void execute() {
+                try {
+                    main.savePolls();
+                } catch (Exception e) {
+                    refs.debugMsg("Failed to save polls after ending: " + e.getMessage());
                 }
             }
+        };
+        save.setName("PollEndSave-" + pollId);
+        main.getHelper().runAsync(save, ASYNC, null);
+
+        return true;
+    }
+
+    // ----------------------------------------------------------------------
+    //  TALLIES
+    // ----------------------------------------------------------------------
+
+    /**
+     * Replacements for a tally line => [option, votes, percentage]
+     */
+    private String[] tallyLineArgs(PollResultSnapshot results, int ordinal) {
+        return new String[]{
+                results.getOptions().get(ordinal),
+                String.valueOf(results.getCount(ordinal)),
+                String.format("%.1f", results.getPercentage(ordinal))
+        };
+    }
+
+    private void sendTallyLines(PollResultSnapshot results) {
+        for (int i : tallyPage(results)) {
+            refs.sendMsg("chppVoteTallyLine", tallyLineArgs(results, i), "&r&d", sender);
         }
+        int total = results.getOptions().size();
+        if (total > OPTION_PAGE_SIZE) {
+            refs.sendMsg("chppTallyMore", new String[]{String.valueOf(OPTION_PAGE_SIZE), String.valueOf(total)}, "&r&d", sender);
+        }
+    }
 
-        // Save the polls
-        try {
-            main.savePolls();
-        } catch (Exception e) {
-            refs.debugMsg("Failed to save polls after ending: " + e.getMessage());
+    /**
+     * Every option in order for a short tally, otherwise only the leaders
+     */
+    private int[] tallyPage(PollResultSnapshot results) {
+        int total = results.getOptions().size();
+        if (total <= OPTION_PAGE_SIZE) {
+            int[] all = new int[total];
+            for (int i = 0; i < total; i++) {
+                all[i] = i;
+            }
+            return all;
         }
+        return results.ordinalsByVotes(0, OPTION_PAGE_SIZE);
+    }
 
-        return true;
+    /**
+     * Lists a poll's options, only the first page of a long list
+     */
+    private void sendOptionLines(PollObject poll, String pollId) {
+        List<String> options = poll.getOptions();
+        int shown = Math.min(options.size(), OPTION_PAGE_SIZE);
+        for (int i = 0; i < shown; i++) {
+            refs.sendMsg("chppVoteInfoOption", options.get(i), "&r&d", sender);
+        }
+        if (options.size() > shown) {
+            refs.sendMsg("chppOptionsMore", new String[]{String.valueOf(options.size() - shown), pollId}, "&r&d", sender);
+        }
+    }
+
+    /**
+     * The player's current vote on a single-choice, multiple-choice or approval poll, or null
+     */
+    private String describeVote(PollObject poll, UUID playerUuid) {
+        if (poll.getPollType().isMultiSelect()) {
+            List<String> selection = poll.getPlayerSelections(playerUuid);
+            return selection == null ? null : String.join(", ", selection);
+        }
+        return poll.getPlayerVote(playerUuid);
+    }
+
+    /**
+     * Plays a poll's own sound if it has one, otherwise the default for the action
+     */
+    private void playPollSound(Sound custom, CommonRefs.SoundType fallback) {
+        if (custom != null) {
+            main.adventure().sender(((BukkitCommandSender) sender).getBukkitSender()).playSound(custom);
+            return;
+        }
+        refs.playSound(fallback, sender);
+    }
+
+    /**
+     * Winner message for the poll's ranked counting method
+     */
+    private String rankedWinnerKey(PollType type) {
+        if (type == PollType.SCHULZE) {
+            return "chppSchulzeWinner";
+        }
+        if (type == PollType.BORDA) {
+            return "chppBordaWinner";
+        }
+        return "chppRankedWinner";
     }
 }
@@ -0,0 +1,108 @@
+package com.dominicfeliton.chatpolls.util;
+
+import com.dominicfeliton.chatpolls.ChatPolls;
+import net.kyori.adventure.sound.Sound;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Tells online Bukkit players what became of the votes they cast while a poll was hot.
+ */
+public class BukkitHotVoteAcknowledger implements HotPollDispatcher.Acknowledger {
+
+    private final ChatPolls main;
+    private final CommonRefs refs;
+
+    public BukkitHotVoteAcknowledger(ChatPolls main, CommonRefs refs) {
+        this.main = main;
+        this.refs = refs;
+    }
+
+    @Override
+    public void acknowledge(String pollId, PollObject poll, List<HotPollDispatcher.Ack> acks) {
+        Sound custom = poll.getOnVote();
+        for (HotPollDispatcher.Ack ack : acks) {
+            VoteRequest request = ack.getRequest();
+            Player player = Bukkit.getPlayer(request.getVoter());
+            if (player == null) continue;
+            BukkitCommandSender target = new BukkitCommandSender(player);
+            if (request.isUndo()) {
+                acknowledgeUndo(pollId, poll, ack.getResult(), player, target);
+                continue;
+            }
+
+            switch (ack.getResult()) {
+                case ACCEPTED:
+                    if (custom != null) {
+                        main.adventure().player(player).playSound(custom);
+                    } else {
+                        refs.playSound(CommonRefs.SoundType.VOTE_CAST, target);
+                    }
+                    refs.sendMsg("chppVoteSuccess", new String[]{describe(request), pollId}, "&r&d", target);
+                    break;
+                case ALREADY_VOTED:
+                    String previous = describeStored(poll, request);
+                    if (previous != null) {
+                        refs.sendMsg("chppAlreadyVoted", new String[]{previous}, "&r&d", target);
+                    } else {
+                        // Withdrawn again since the batch was applied
+                        refs.sendMsg("chppVoteFail", target);
+                    }
+                    break;
+                case INVALID_OPTION:
+                    refs.sendMsg("chppInvalidOption", target);
+                    break;
+                case POLL_CLOSED:
+                    refs.sendMsg("chppPollEnded", poll.getDateTimeEnd(), "&r&d", target);
+                    break;
+                default:
+                    refs.sendMsg("chppVoteFail", target);
+                    break;
+            }
+        }
+    }
+
+    private void acknowledgeUndo(String pollId, PollObject poll, VoteResult result, Player player, BukkitCommandSender target) {
+        switch (result) {
+            case ACCEPTED:
+                Sound custom = poll.getOnUndoVote();
+                if (custom != null) {
+                    main.adventure().player(player).playSound(custom);
+                } else {
+                    refs.playSound(CommonRefs.SoundType.VOTE_UNDO, target);
+                }
+                refs.sendMsg("chppUndoSuccess", new String[]{pollId}, "&r&d", target);
+                break;
+            case ALREADY_VOTED:
+                refs.sendMsg("chppUndoDisabled", target);
+                break;
+            case POLL_CLOSED:
+                refs.sendMsg("chppPollEnded", poll.getDateTimeEnd(), "&r&d", target);
+                break;
+            default:
+                refs.sendMsg("chppUndoNoVote", target);
+                break;
+        }
+    }
+
+    private static String describeStored(PollObject poll, VoteRequest request) {
+        List<String> stored;
+        if (poll.getPollType().isRanked()) {
+            stored = poll.getRankedVotes(request.getVoter());
+            return stored == null ? null : String.join(" > ", stored);
+        }
+        if (poll.getPollType().isMultiSelect()) {
+            stored = poll.getPlayerSelections(request.getVoter());
+            return stored == null ? null : String.join(", ", stored);
+        }
+        return poll.getPlayerVote(request.getVoter());
+    }
+
+    private static String describe(VoteRequest request) {
+        if (request.isRanked()) return String.join(" > ", request.getRanking());
+        if (request.isSelection()) return String.join(", ", request.getSelection());
+        return request.getOption();
+    }
+}
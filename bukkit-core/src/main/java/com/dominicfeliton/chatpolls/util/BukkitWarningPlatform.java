@@ -0,0 +1,73 @@
+package com.dominicfeliton.chatpolls.util;
+
+import com.dominicfeliton.chatpolls.ChatPolls;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Delivers expiration warnings to online Bukkit players.
+ */
+public class BukkitWarningPlatform implements ExpirationWarningBroadcaster.Platform<Player, Component> {
+
+    private final ChatPolls main;
+    private final CommonRefs refs;
+
+    public BukkitWarningPlatform(ChatPolls main, CommonRefs refs) {
+        this.main = main;
+        this.refs = refs;
+    }
+
+    @Override
+    public Collection<Player> resolveRecipients(Set<String> recipientIds) {
+        if (recipientIds.isEmpty()) {
+            return new ArrayList<>(Bukkit.getOnlinePlayers());
+        }
+        List<Player> players = new ArrayList<>(recipientIds.size());
+        for (String id : recipientIds) {
+            Player player;
+            try {
+                player = Bukkit.getPlayer(UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+
+    @Override
+    public String localeOf(Player recipient) {
+        // Players without a record use the server language, same as getCompMsg
+        PlayerRecord record = main.getPlayerRecord(recipient, false);
+        return record == null ? "" : record.getLocalizationCode();
+    }
+
+    @Override
+    public Component render(Player representative, String pollId, PollObject poll, long secondsLeft) {
+        return refs.getCompMsg("chppExpirationWarning",
+                new String[]{pollId, poll.getTitle(), formatSeconds(secondsLeft)},
+                "&r&e",
+                new BukkitCommandSender(representative));
+    }
+
+    @Override
+    public void send(Player recipient, Component message) {
+        refs.sendMsg(new BukkitCommandSender(recipient), message, true);
+    }
+
+    private static String formatSeconds(long seconds) {
+        if (seconds >= 86400 && seconds % 86400 == 0) return seconds / 86400 + "d";
+        if (seconds >= 3600 && seconds % 3600 == 0) return seconds / 3600 + "h";
+        if (seconds >= 60) return (seconds + 59) / 60 + "m";
+        return seconds + "s";
+    }
+}
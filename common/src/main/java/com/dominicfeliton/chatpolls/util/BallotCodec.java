@@ -0,0 +1,138 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes ranked ballots as small dense integer codes.
+ *
+ * <p>A ranked ballot is an ordered selection of distinct option ordinals (a partial
+ * permutation). For a poll with {@code n} options every such ballot maps to a unique code
+ * in {@code [0, codeCount())}: code 0 is the empty ballot, followed by every one-choice
+ * ballot, every two-choice ballot, and so on in lexicographic order. With the 5-option
+ * cap there are only 326 codes, so a ballot fits comfortably in a short.
+ *
+ * <p>Codecs are immutable and shared per option count.
+ */
+public final class BallotCodec {
+
+    /**
+     * Largest number of options a ranked poll may have.
+     */
+    public static final int MAX_OPTIONS = 5;
+
+    private static final BallotCodec[] CODECS = new BallotCodec[MAX_OPTIONS + 1];
+
+    static {
+        for (int n = 0; n <= MAX_OPTIONS; n++) {
+            CODECS[n] = new BallotCodec(n);
+        }
+    }
+
+    private final int optionCount;
+    // perms[k][i] = number of ordered selections of i items out of the k still unused
+    private final int[][] perms;
+    // offsets[len] = first code used by ballots of this length
+    private final int[] offsets;
+    private final byte[][] decoded;
+
+    private BallotCodec(int optionCount) {
+        this.optionCount = optionCount;
+
+        perms = new int[optionCount + 1][optionCount + 1];
+        for (int k = 0; k <= optionCount; k++) {
+            perms[k][0] = 1;
+            for (int i = 1; i <= k; i++) {
+                perms[k][i] = perms[k][i - 1] * (k - i + 1);
+            }
+        }
+
+        offsets = new int[optionCount + 2];
+        for (int len = 0; len <= optionCount; len++) {
+            offsets[len + 1] = offsets[len] + perms[optionCount][len];
+        }
+
+        decoded = new byte[offsets[optionCount + 1]][];
+        fill(new byte[optionCount], 0, 0);
+    }
+
+    private void fill(byte[] prefix, int len, int usedMask) {
+        byte[] ballot = new byte[len];
+        System.arraycopy(prefix, 0, ballot, 0, len);
+        decoded[encode(ballot, len)] = ballot;
+        if (len == optionCount) return;
+        for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+            if ((usedMask & (1 << ordinal)) == 0) {
+                prefix[len] = (byte) ordinal;
+                fill(prefix, len + 1, usedMask | (1 << ordinal));
+            }
+        }
+    }
+
+    /**
+     * @param optionCount Number of options in the poll
+     * @return The shared codec for that option count
+     * @throws IllegalArgumentException if the count exceeds {@link #MAX_OPTIONS}
+     */
+    public static BallotCodec forOptions(int optionCount) {
+        if (optionCount < 0 || optionCount > MAX_OPTIONS) {
+            throw new IllegalArgumentException("Ranked polls support at most " + MAX_OPTIONS + " options, got " + optionCount);
+        }
+        return CODECS[optionCount];
+    }
+
+    public int getOptionCount() {
+        return optionCount;
+    }
+
+    /**
+     * @return The number of distinct ballot codes
+     */
+    public int codeCount() {
+        return decoded.length;
+    }
+
+    /**
+     * Encodes a ballot of option ordinals.
+     *
+     * @param ordinals Distinct option ordinals, most preferred first
+     * @param len      Number of ordinals to read from the array
+     * @return The ballot code
+     */
+    public int encode(byte[] ordinals, int len) {
+        int rank = 0;
+        int usedMask = 0;
+        for (int i = 0; i < len; i++) {
+            int ordinal = ordinals[i];
+            // Unused options with a smaller ordinal come first lexicographically
+            int smaller = Integer.bitCount(~usedMask & ((1 << ordinal) - 1));
+            rank += smaller * perms[optionCount - i - 1][len - i - 1];
+            usedMask |= 1 << ordinal;
+        }
+        return offsets[len] + rank;
+    }
+
+    /**
+     * @param code A ballot code
+     * @return The option ordinals of that ballot, most preferred first. Do not modify.
+     */
+    public byte[] decode(int code) {
+        return decoded[code];
+    }
+
+    /**
+     * Resolves a ballot code back to option names.
+     *
+     * @param code  A ballot code
+     * @param tally The tally that owns the option ordinals
+     * @return A new list of option names, most preferred first
+     */
+    public List<String> decode(int code, OptionTally tally) {
+        byte[] ballot = decoded[code];
+        List<String> out = new ArrayList<>(ballot.length);
+        for (byte ordinal : ballot) {
+            out.add(tally.optionAt(ordinal));
+        }
+        return out;
+    }
+}
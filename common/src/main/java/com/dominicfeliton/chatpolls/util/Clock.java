@@ -1,7 +1,37 @@
 package com.dominicfeliton.chatpolls.util;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
 
 public interface Clock {
     LocalDateTime getCurrentDateTime();
+
+    /**
+     * Primitive, allocation-free time source for hot checks. Implementations that only
+     * provide {@link #getCurrentDateTime()} fall back to converting it.
+     *
+     * @return Milliseconds since the epoch
+     */
+    default long currentTimeMillis() {
+        return toEpochMillis(getCurrentDateTime());
+    }
+
+    /**
+     * Only meaningful as a difference between two calls, like {@link System#nanoTime()}.
+     *
+     * @return A monotonic nanosecond timestamp
+     */
+    default long nanoTime() {
+        return TimeUnit.MILLISECONDS.toNanos(currentTimeMillis());
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
 }
@@ -15,7 +15,7 @@ import java.util.*;
  */
 public abstract class CommonRefs {
     /* Important variables */
-    public static final String messagesConfigVersion = "022425-1";
+    public static final String messagesConfigVersion = "101726-9";
 
     // Supported Minecraft Versions
     public static final String[] supportedMCVersions = {
@@ -353,6 +353,10 @@ public abstract class CommonRefs {
         STATS_SUCCESS("STATS_SUCCESS", "ITEM_BOOK_PAGE_TURN", 1.0f, 1.0f),
         STATS_FAIL("STATS_FAIL", "BLOCK_NOTE_BLOCK_BASS", 1.0f, 1.0f),
         CHP_VERSION("CHP_VERSION", "ENTITY_PLAYER_LEVELUP", 1.0f, 1.0f),
+        VOTE_CAST("VOTE_CAST", "BLOCK_NOTE_BLOCK_PLING", 1.0f, 1.0f),
+        VOTE_UNDO("VOTE_UNDO", "BLOCK_NOTE_BLOCK_BASS", 1.0f, 0.8f),
+        POLL_BEGIN("POLL_BEGIN", "BLOCK_NOTE_BLOCK_BELL", 1.0f, 1.0f),
+        POLL_END("POLL_END", "BLOCK_NOTE_BLOCK_CHIME", 1.0f, 1.0f),
         PENDING_RELOAD("PENDING_RELOAD", "BLOCK_NOTE_BLOCK_XYLOPHONE", 1.0f, 1.0f);
 
         private final String alias;         // Your internal name (e.g. "SUBMENU_TOGGLE_ON")
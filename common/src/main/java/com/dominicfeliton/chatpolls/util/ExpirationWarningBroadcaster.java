@@ -0,0 +1,243 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sends each poll's expiration warnings ({@link PollObject#getWarningThresholdsInSeconds()}).
+ *
+ * <p>Every pending warning of every poll sits in one deadline index sorted by due time, so a
+ * tick only looks at the warnings that are actually due. Due warnings are grouped by
+ * recipient set: each set is resolved once and split by locale, and each warning is
+ * rendered once per locale rather than once per player. The resulting deliveries are
+ * queued and sent at most {@code sendsPerTick} at a time, so crossing a threshold on a
+ * poll with thousands of recipients is spread over several ticks instead of stalling one.
+ *
+ * @param <R> The platform's recipient type
+ * @param <M> The platform's rendered message type
+ */
+public class ExpirationWarningBroadcaster<R, M> {
+
+    public static final int DEFAULT_SENDS_PER_TICK = 200;
+
+    /**
+     * Platform hooks for finding, rendering for and messaging recipients.
+     */
+    public interface Platform<R, M> {
+        /**
+         * @param recipientIds Player UUIDs, or an empty set for everyone online
+         */
+        Collection<R> resolveRecipients(Set<String> recipientIds);
+
+        String localeOf(R recipient);
+
+        /**
+         * Renders a warning in the locale of {@code representative}.
+         */
+        M render(R representative, String pollId, PollObject poll, long secondsLeft);
+
+        void send(R recipient, M message);
+    }
+
+    private final Platform<R, M> platform;
+    private final int sendsPerTick;
+    private final ConcurrentSkipListSet<Deadline> deadlines = new ConcurrentSkipListSet<>();
+    // Every warning queued per poll, for untrack; entries that already fired are harmless
+    private final Map<String, List<Deadline>> byPoll = new ConcurrentHashMap<>();
+    // Only touched under the tick lock
+    private final ArrayDeque<Delivery<R, M>> outbox = new ArrayDeque<>();
+
+    public ExpirationWarningBroadcaster(Platform<R, M> platform) {
+        this(platform, DEFAULT_SENDS_PER_TICK);
+    }
+
+    public ExpirationWarningBroadcaster(Platform<R, M> platform, int sendsPerTick) {
+        this.platform = platform;
+        this.sendsPerTick = Math.max(1, sendsPerTick);
+    }
+
+    /**
+     * Queues a poll's upcoming warnings, replacing any it already had. Thresholds that have
+     * already passed are skipped.
+     */
+    public void track(String pollId, PollObject poll) {
+        untrack(pollId);
+        if (!poll.isSendExpirationWarning()) return;
+
+        long now = poll.getClock().currentTimeMillis();
+        long endMillis = poll.getEffectiveEndMillis();
+        List<Deadline> queued = new ArrayList<>();
+        for (int threshold : new HashSet<>(poll.getWarningThresholdsInSeconds())) {
+            long dueMillis = endMillis - threshold * 1000L;
+            if (threshold <= 0 || dueMillis <= now) continue;
+            queued.add(new Deadline(dueMillis, pollId, threshold, endMillis, poll));
+        }
+        if (queued.isEmpty()) return;
+        byPoll.put(pollId, queued);
+        deadlines.addAll(queued);
+    }
+
+    /**
+     * Drops a poll's pending warnings, e.g. when it is deleted or ended, including any
+     * already rendered but not yet sent to everyone.
+     */
+    public void untrack(String pollId) {
+        List<Deadline> queued = byPoll.remove(pollId);
+        if (queued != null) {
+            deadlines.removeAll(queued);
+        }
+        synchronized (this) {
+            outbox.removeIf(delivery -> delivery.pollId.equals(pollId));
+        }
+    }
+
+    /**
+     * @return Warnings waiting for their deadline
+     */
+    public int pendingWarnings() {
+        return deadlines.size();
+    }
+
+    /**
+     * @return Messages rendered but not sent yet
+     */
+    public synchronized int pendingSends() {
+        int total = 0;
+        for (Delivery<R, M> delivery : outbox) {
+            total += delivery.recipients.size() - delivery.sent;
+        }
+        return total;
+    }
+
+    /**
+     * Renders every warning due by {@code nowMillis}, then sends up to the per-tick budget.
+     *
+     * @param nowMillis The current time in epoch millis
+     * @return How many messages were sent
+     */
+    public synchronized int tick(long nowMillis) {
+        List<Deadline> due = pollDue(nowMillis);
+        if (!due.isEmpty()) {
+            render(due, nowMillis);
+        }
+        return drain();
+    }
+
+    private List<Deadline> pollDue(long nowMillis) {
+        // One warning per poll: if several thresholds passed at once, only the latest matters
+        Map<String, Deadline> latest = new LinkedHashMap<>();
+        Iterator<Deadline> it = deadlines.iterator();
+        while (it.hasNext()) {
+            Deadline head = it.next();
+            if (head.dueMillis > nowMillis) break;
+            if (!deadlines.remove(head)) continue;
+            // Skip warnings for polls that ended early or already closed
+            if (head.poll.getEffectiveEndMillis() != head.endMillis || head.poll.hasEnded(nowMillis)) continue;
+            Deadline previous = latest.get(head.pollId);
+            if (previous == null || head.thresholdSec < previous.thresholdSec) {
+                latest.put(head.pollId, head);
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private void render(List<Deadline> due, long nowMillis) {
+        // Polls with the same recipient set share one lookup and one locale split
+        Map<Set<String>, List<Deadline>> byRecipients = new LinkedHashMap<>();
+        for (Deadline deadline : due) {
+            byRecipients.computeIfAbsent(new HashSet<>(deadline.poll.getRecipients()), k -> new ArrayList<>())
+                    .add(deadline);
+        }
+
+        for (Map.Entry<Set<String>, List<Deadline>> group : byRecipients.entrySet()) {
+            Map<String, List<R>> byLocale = new HashMap<>();
+            for (R recipient : platform.resolveRecipients(group.getKey())) {
+                byLocale.computeIfAbsent(platform.localeOf(recipient), k -> new ArrayList<>()).add(recipient);
+            }
+            if (byLocale.isEmpty()) continue;
+
+            for (Deadline deadline : group.getValue()) {
+                long secondsLeft = Math.max(1, (deadline.endMillis - nowMillis + 999) / 1000);
+                for (List<R> recipients : byLocale.values()) {
+                    M message = platform.render(recipients.get(0), deadline.pollId, deadline.poll, secondsLeft);
+                    outbox.add(new Delivery<>(deadline.pollId, message, recipients));
+                }
+            }
+        }
+    }
+
+    private int drain() {
+        int budget = sendsPerTick;
+        while (budget > 0 && !outbox.isEmpty()) {
+            Delivery<R, M> delivery = outbox.peek();
+            int end = Math.min(delivery.recipients.size(), delivery.sent + budget);
+            for (int i = delivery.sent; i < end; i++) {
+                platform.send(delivery.recipients.get(i), delivery.message);
+            }
+            budget -= end - delivery.sent;
+            delivery.sent = end;
+            if (delivery.sent == delivery.recipients.size()) {
+                outbox.poll();
+            }
+        }
+        return sendsPerTick - budget;
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long dueMillis;
+        private final String pollId;
+        private final int thresholdSec;
+        // The poll's end when this was queued; a forced end makes the warning stale
+        private final long endMillis;
+        private final PollObject poll;
+
+        Deadline(long dueMillis, String pollId, int thresholdSec, long endMillis, PollObject poll) {
+            this.dueMillis = dueMillis;
+            this.pollId = pollId;
+            this.thresholdSec = thresholdSec;
+            this.endMillis = endMillis;
+            this.poll = poll;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            int cmp = Long.compare(dueMillis, other.dueMillis);
+            if (cmp != 0) return cmp;
+            cmp = pollId.compareTo(other.pollId);
+            return cmp != 0 ? cmp : Integer.compare(thresholdSec, other.thresholdSec);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Deadline && compareTo((Deadline) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(dueMillis) * 31 + pollId.hashCode()) * 31 + thresholdSec;
+        }
+    }
+
+    private static final class Delivery<R, M> {
+        private final String pollId;
+        private final M message;
+        private final List<R> recipients;
+        private int sent;
+
+        Delivery(String pollId, M message, List<R> recipients) {
+            this.pollId = pollId;
+            this.message = message;
+            this.recipients = recipients;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Switches busy polls to a single-writer mode.
+ *
+ * <p>Normally every vote command updates the poll directly. That scales until one poll gets
+ * thousands of votes within a few ticks, e.g. a server-wide event poll, when every vote
+ * retries on the same few counters. Every submitted vote is counted per poll, and once a poll
+ * reaches {@code hotVotesPerSecond} its votes are instead queued in an {@link MpscRing} and
+ * applied by {@link #drain(long)} through {@link PollObject#castVotes(java.util.Collection)}.
+ * That is one thread summing each batch locally and touching each counter once. The poll
+ * switches back when its rate falls under half the threshold, so it does not flap around it.
+ *
+ * <p>Voters hear back through the {@link Acknowledger} once per poll per drain rather than
+ * once per vote. A voter with several votes in one batch gets a single acknowledgement, plus
+ * one for any withdrawal. Withdrawals of a hot poll's votes go through the same queue, so
+ * they never overtake a vote still waiting in it.
+ */
+public class HotPollDispatcher {
+
+    public static final int DEFAULT_HOT_VOTES_PER_SECOND = 200;
+    public static final int DEFAULT_RING_CAPACITY = 8192;
+
+    private static final long WINDOW_MILLIS = 1000;
+
+    /**
+     * Platform hook for telling voters what became of their queued votes.
+     */
+    public interface Acknowledger {
+        /**
+         * Called on the draining thread with one entry per voter whose vote was applied
+         * from the poll's queue in this drain.
+         */
+        void acknowledge(String pollId, PollObject poll, List<Ack> acks);
+    }
+
+    /**
+     * A queued vote and what became of it.
+     */
+    public static final class Ack {
+        private final VoteRequest request;
+        private final VoteResult result;
+
+        Ack(VoteRequest request, VoteResult result) {
+            this.request = request;
+            this.result = result;
+        }
+
+        public VoteRequest getRequest() {
+            return request;
+        }
+
+        public VoteResult getResult() {
+            return result;
+        }
+    }
+
+    private final Acknowledger acknowledger;
+    private final long hotVotesPerSecond;
+    private final int ringCapacity;
+    private final Map<String, PollState> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param hotVotesPerSecond Votes per second at which a poll switches to queued votes, or 0 to never switch
+     */
+    public HotPollDispatcher(Acknowledger acknowledger, int hotVotesPerSecond) {
+        this(acknowledger, hotVotesPerSecond, DEFAULT_RING_CAPACITY);
+    }
+
+    public HotPollDispatcher(Acknowledger acknowledger, int hotVotesPerSecond, int ringCapacity) {
+        this.acknowledger = acknowledger;
+        this.hotVotesPerSecond = Math.max(0, hotVotesPerSecond);
+        this.ringCapacity = ringCapacity;
+    }
+
+    /**
+     * Counts a vote towards the poll's rate and queues it if the poll is hot.
+     *
+     * @return True if the vote was queued and will be acknowledged later; false if the
+     *         caller should apply it directly
+     */
+    public boolean submit(String pollId, PollObject poll, VoteRequest request) {
+        if (hotVotesPerSecond == 0) return false;
+        PollState state = states.computeIfAbsent(pollId, id -> new PollState(poll, poll.getClock().currentTimeMillis()));
+        state.recent.increment();
+        if (!state.hot || state.poll != poll) return false;
+        // A full ring falls back to a direct vote rather than waiting
+        return state.ring.offer(request);
+    }
+
+    /**
+     * Applies every queued vote, acknowledges them and re-measures each poll's rate once its
+     * window has passed. Only one thread may drain at a time.
+     *
+     * @param nowMillis The current time in epoch millis
+     * @return How many queued votes were applied
+     */
+    public synchronized int drain(long nowMillis) {
+        int applied = 0;
+        List<VoteRequest> batch = new ArrayList<>();
+        for (Map.Entry<String, PollState> entry : states.entrySet()) {
+            PollState state = entry.getValue();
+            MpscRing<VoteRequest> ring = state.ring;
+            applied += apply(entry.getKey(), state, batch);
+
+            long elapsed = nowMillis - state.windowStart;
+            if (elapsed < WINDOW_MILLIS) continue;
+            long rate = state.recent.sumThenReset() * 1000 / elapsed;
+            state.windowStart = nowMillis;
+            if (!state.hot && rate >= hotVotesPerSecond) {
+                if (state.ring == null) {
+                    state.ring = new MpscRing<>(ringCapacity);
+                }
+                state.hot = true;
+            } else if (state.hot && rate * 2 < hotVotesPerSecond) {
+                // Votes that slip in after this are still drained next time
+                state.hot = false;
+            } else if (!state.hot && rate == 0 && (ring == null || ring.isEmpty())) {
+                states.remove(entry.getKey(), state);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies and acknowledges one poll's queued votes.
+     *
+     * @param batch An empty list to drain into; left empty
+     * @return How many queued votes were applied
+     */
+    private int apply(String pollId, PollState state, List<VoteRequest> batch) {
+        MpscRing<VoteRequest> ring = state.ring;
+        if (ring == null || ring.drainTo(batch, ring.capacity()) == 0) return 0;
+        int applied = batch.size();
+        acknowledge(pollId, state.poll, batch, state.poll.castVotes(batch));
+        batch.clear();
+        return applied;
+    }
+
+    private void acknowledge(String pollId, PollObject poll, List<VoteRequest> batch, VoteResult[] results) {
+        // One acknowledgement per voter for votes and one for withdrawals; an accepted
+        // request outranks any rejection of a repeat
+        Map<UUID, Ack> votes = new LinkedHashMap<>();
+        Map<UUID, Ack> undos = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            Ack ack = new Ack(batch.get(i), results[i]);
+            Map<UUID, Ack> byVoter = ack.request.isUndo() ? undos : votes;
+            Ack earlier = byVoter.get(ack.request.getVoter());
+            if (earlier == null || ack.result.isAccepted() || !earlier.result.isAccepted()) {
+                byVoter.put(ack.request.getVoter(), ack);
+            }
+        }
+        List<Ack> acks = new ArrayList<>(votes.values());
+        acks.addAll(undos.values());
+        acknowledger.acknowledge(pollId, poll, acks);
+    }
+
+    /**
+     * Applies and acknowledges a poll's queued votes now, e.g. right before it is ended, so
+     * votes queued while it was open are not rejected as closed.
+     *
+     * @return How many queued votes were applied
+     */
+    public synchronized int flush(String pollId) {
+        PollState state = states.get(pollId);
+        return state == null ? 0 : apply(pollId, state, new ArrayList<>());
+    }
+
+    /**
+     * @return Whether the poll's votes are currently queued
+     */
+    public boolean isHot(String pollId) {
+        PollState state = states.get(pollId);
+        return state != null && state.hot;
+    }
+
+    /**
+     * @return Votes queued and not applied yet, over every poll
+     */
+    public int pendingVotes() {
+        int total = 0;
+        for (PollState state : states.values()) {
+            MpscRing<VoteRequest> ring = state.ring;
+            if (ring != null) {
+                total += ring.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Stops tracking a poll, e.g. right before it is deleted. Votes still queued for it are
+     * applied and acknowledged first.
+     */
+    public synchronized void forget(String pollId) {
+        PollState state = states.remove(pollId);
+        if (state != null) {
+            apply(pollId, state, new ArrayList<>());
+        }
+    }
+
+    private static final class PollState {
+        private final PollObject poll;
+        private final LongAdder recent = new LongAdder();
+        // Only changed by the draining thread
+        private volatile boolean hot;
+        private volatile MpscRing<VoteRequest> ring;
+        private long windowStart;
+
+        PollState(PollObject poll, long windowStart) {
+            this.poll = poll;
+            this.windowStart = windowStart;
+        }
+    }
+}
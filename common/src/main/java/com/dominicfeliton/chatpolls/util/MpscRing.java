@@ -0,0 +1,103 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue for many producers and a single consumer.
+ *
+ * <p>Each slot carries a sequence number telling whose turn it is: a producer claims the next
+ * slot with one compare-and-set on the tail and publishes its element by advancing the slot's
+ * sequence, and the consumer takes slots in order once they are published. Producers never
+ * wait for each other or for the consumer; when the ring is full {@link #offer(Object)} fails
+ * at once and the caller decides what to do with the element.
+ *
+ * <p>Only one thread may call {@link #drainTo(List, int)} at a time.
+ *
+ * @param <E> The element type
+ */
+public class MpscRing<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    // Slot i is free for position p when sequence == p, and holds position p when sequence == p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer
+    private volatile long head;
+
+    /**
+     * @param capacity The most elements held at once, rounded up to a power of two
+     */
+    public MpscRing(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return False if the ring is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long pos = tail.get();
+            int slot = (int) (pos & mask);
+            long diff = sequences.get(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(slot, element);
+                    sequences.set(slot, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The consumer has not freed this slot from the previous lap yet
+                return false;
+            }
+            // Another producer took pos; retry at the new tail
+        }
+    }
+
+    /**
+     * Moves published elements to {@code out} in the order they were offered.
+     *
+     * @param max The most elements to move
+     * @return How many elements were moved
+     */
+    public int drainTo(List<? super E> out, int max) {
+        long pos = head;
+        int moved = 0;
+        while (moved < max) {
+            int slot = (int) (pos & mask);
+            // A claimed slot whose element is not published yet ends the drain
+            if (sequences.get(slot) != pos + 1) break;
+            out.add(slots.get(slot));
+            slots.lazySet(slot, null);
+            sequences.set(slot, pos + mask + 1);
+            pos++;
+            moved++;
+        }
+        head = pos;
+        return moved;
+    }
+
+    /**
+     * @return An estimate of the elements waiting, exact when no producer is mid-offer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
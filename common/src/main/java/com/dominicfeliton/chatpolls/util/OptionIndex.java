@@ -0,0 +1,165 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Looks up a poll's options by name, exactly or ignoring case, and by prefix.
+ *
+ * <p>Each option's lowercase key is computed once when the index is built. Up to
+ * {@value #SCAN_LIMIT} options a linear scan is fastest and needs no extra memory. Larger
+ * polls get hash maps for exact and case-insensitive lookups, so validating a vote costs the
+ * same with five options or five hundred. They also get the lowercase keys in sorted order,
+ * so a prefix is found by binary search and completion only touches the options it returns.
+ */
+public class OptionIndex {
+
+    // Up to this many options, a scan beats hashing and saves the maps
+    static final int SCAN_LIMIT = 8;
+
+    // Marks a lowercase key shared by options that differ only in case
+    private static final int AMBIGUOUS = -2;
+
+    private final List<String> options;
+    private final String[] lowerKeys;
+    // The maps and sorted keys are null when options are scanned
+    private final Map<String, Integer> exact;
+    private final Map<String, Integer> folded;
+    private final String[] sortedKeys;
+    private final int[] sortedOrdinals;
+
+    /**
+     * @param options Distinct option names, indexed by ordinal
+     */
+    public OptionIndex(List<String> options) {
+        this.options = List.copyOf(options);
+        int size = this.options.size();
+        this.lowerKeys = new String[size];
+        for (int i = 0; i < size; i++) {
+            lowerKeys[i] = this.options.get(i).toLowerCase(Locale.ROOT);
+        }
+        if (size <= SCAN_LIMIT) {
+            this.exact = null;
+            this.folded = null;
+            this.sortedKeys = null;
+            this.sortedOrdinals = null;
+            return;
+        }
+
+        this.exact = new HashMap<>(size * 2);
+        this.folded = new HashMap<>(size * 2);
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            exact.put(this.options.get(i), i);
+            folded.merge(lowerKeys[i], i, (a, b) -> AMBIGUOUS);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byKey = lowerKeys[a].compareTo(lowerKeys[b]);
+            return byKey != 0 ? byKey : Integer.compare(a, b);
+        });
+        this.sortedKeys = new String[size];
+        this.sortedOrdinals = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedKeys[i] = lowerKeys[order[i]];
+            sortedOrdinals[i] = order[i];
+        }
+    }
+
+    /**
+     * @param option An option name, matching case
+     * @return The option's ordinal, or -1 if there is no such option
+     */
+    public int ordinalOf(String option) {
+        if (option == null) return -1;
+        if (exact == null) {
+            for (int i = 0; i < lowerKeys.length; i++) {
+                if (options.get(i).equals(option)) return i;
+            }
+            return -1;
+        }
+        Integer ordinal = exact.get(option);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Finds an option as a player typed it. An exact match wins; otherwise the option must be
+     * the only one with that name ignoring case.
+     *
+     * @return The option's ordinal, or -1 if there is no such option or the name is ambiguous
+     */
+    public int ordinalOfIgnoreCase(String typed) {
+        int ordinal = ordinalOf(typed);
+        if (ordinal >= 0 || typed == null) return ordinal;
+        String key = typed.toLowerCase(Locale.ROOT);
+        if (folded == null) {
+            for (int i = 0; i < lowerKeys.length; i++) {
+                if (lowerKeys[i].equals(key)) {
+                    if (ordinal >= 0) return -1;
+                    ordinal = i;
+                }
+            }
+            return ordinal;
+        }
+        Integer found = folded.get(key);
+        return found == null || found == AMBIGUOUS ? -1 : found;
+    }
+
+    /**
+     * @param prefix A prefix, ignoring case, or an empty string for every option
+     * @param limit  The most options to return
+     * @return Options starting with the prefix; in option order for small polls, sorted
+     *         ignoring case for large ones
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        String key = prefix.toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>(Math.min(limit, lowerKeys.length));
+        if (sortedKeys == null) {
+            for (int i = 0; i < lowerKeys.length && out.size() < limit; i++) {
+                if (lowerKeys[i].startsWith(key)) {
+                    out.add(options.get(i));
+                }
+            }
+            return out;
+        }
+        // Keys starting with the prefix sort directly after the prefix itself
+        int at = Arrays.binarySearch(sortedKeys, key);
+        if (at < 0) {
+            at = -at - 1;
+        } else {
+            while (at > 0 && sortedKeys[at - 1].equals(key)) at--;
+        }
+        for (int i = at; i < sortedKeys.length && out.size() < limit && sortedKeys[i].startsWith(key); i++) {
+            out.add(options.get(sortedOrdinals[i]));
+        }
+        return out;
+    }
+
+    public String optionAt(int ordinal) {
+        return options.get(ordinal);
+    }
+
+    /**
+     * @return The option's name in lowercase
+     */
+    public String lowerKeyAt(int ordinal) {
+        return lowerKeys[ordinal];
+    }
+
+    /**
+     * @return The options, indexed by ordinal
+     */
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public int size() {
+        return lowerKeys.length;
+    }
+}
@@ -0,0 +1,106 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-option vote counters for a single poll.
+ *
+ * <p>Every distinct option is given a dense ordinal when the tally is built, and each
+ * ordinal owns a {@link LongAdder}. Concurrent votes therefore land in striped cells
+ * instead of queueing on a shared lock, and no boxed Integers are allocated per vote.
+ *
+ * <p>Names are resolved through an {@link OptionIndex}, which scans small polls and hashes
+ * large ones.
+ */
+public class OptionTally {
+
+    private final OptionIndex index;
+    private final LongAdder[] counters;
+
+    public OptionTally(List<String> options) {
+        List<String> distinct = new ArrayList<>(options.size());
+        Set<String> seen = new HashSet<>();
+        for (String opt : options) {
+            if (seen.add(opt)) {
+                distinct.add(opt);
+            }
+        }
+
+        // Reuse the caller's list when it has no duplicates, e.g. the poll's own options
+        this.index = new OptionIndex(distinct.size() == options.size() ? options : distinct);
+        this.counters = new LongAdder[distinct.size()];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param option An option name
+     * @return The dense ordinal of the option, or -1 if it is not part of this tally
+     */
+    public int ordinalOf(String option) {
+        return index.ordinalOf(option);
+    }
+
+    /**
+     * @return The index used to look up options by name
+     */
+    public OptionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param ordinal A dense option ordinal
+     * @return The option name at that ordinal
+     */
+    public String optionAt(int ordinal) {
+        return index.optionAt(ordinal);
+    }
+
+    /**
+     * @return The distinct options, indexed by ordinal
+     */
+    public List<String> getOptions() {
+        return index.getOptions();
+    }
+
+    /**
+     * @return The number of distinct options in this tally
+     */
+    public int size() {
+        return counters.length;
+    }
+
+    public void increment(int ordinal) {
+        counters[ordinal].increment();
+    }
+
+    public void add(int ordinal, long delta) {
+        counters[ordinal].add(delta);
+    }
+
+    /**
+     * Overwrites the count for an ordinal. Only meant for restoring saved state,
+     * never for concurrent use alongside live votes.
+     */
+    public void reset(int ordinal, long value) {
+        counters[ordinal].reset();
+        counters[ordinal].add(value);
+    }
+
+    public long count(int ordinal) {
+        return counters[ordinal].sum();
+    }
+
+    public long total() {
+        long sum = 0;
+        for (LongAdder counter : counters) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,167 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves the ballots of polls that ended a while ago out of the heap.
+ *
+ * <p>An archived poll keeps only its tallies (option counters and, for ranked polls, the
+ * ballot histogram) in memory. Its voter tables are written to a gzip-compressed segment
+ * file and cleared, and are read back the first time an accessor such as
+ * {@link PollObject#getRankedVotes(UUID)} needs them. A rehydrated poll is archived again
+ * once it has gone unused for the same delay.
+ *
+ * <p>Segment layout: magic, format version, option count, the ranked histogram, then the
+ * single-choice, ranked and selection tables as a count followed by (msb, lsb, value)
+ * entries. The histogram comes first so loading an archived poll only reads the header.
+ */
+public class PollArchiver {
+
+    private static final int MAGIC = 0x43485041; // "CHPA"
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path directory;
+    private final long archiveAfterMillis;
+
+    /**
+     * @param directory          Where segment files are kept
+     * @param archiveAfterMillis How long a poll must have been ended, or unused since it was
+     *                           last rehydrated, before it is archived; 0 or less disables archiving
+     */
+    public PollArchiver(Path directory, long archiveAfterMillis) {
+        this.directory = directory;
+        this.archiveAfterMillis = archiveAfterMillis;
+    }
+
+    public Path fileFor(PollObject poll) {
+        return directory.resolve(poll.getUuid() + ".seg");
+    }
+
+    /**
+     * Connects a freshly loaded poll to its segment and restores an archived poll's ranked
+     * histogram from the segment header.
+     */
+    public void attach(PollObject poll) throws IOException {
+        poll.attachArchive(fileFor(poll));
+    }
+
+    /**
+     * Archives a poll if it has been ended, and unused, for long enough.
+     *
+     * @return Whether the poll was archived by this call
+     */
+    public boolean archiveIfCold(PollObject poll, long nowMillis) throws IOException {
+        if (archiveAfterMillis <= 0 || poll.isArchived() || !poll.hasEnded(nowMillis)) return false;
+        if (nowMillis - poll.getEffectiveEndMillis() < archiveAfterMillis) return false;
+        if (nowMillis - poll.getLastRehydratedMillis() < archiveAfterMillis) return false;
+        Files.createDirectories(directory);
+        return poll.archiveTo(fileFor(poll));
+    }
+
+    /**
+     * Deletes a poll's segment, e.g. when the poll is deleted.
+     */
+    public void delete(PollObject poll) throws IOException {
+        Files.deleteIfExists(fileFor(poll));
+    }
+
+    static void write(Path file, int optionCount, long[] histogram, VoterTable... tables) throws IOException {
+        // Written beside the target, forced to disk and moved into place, so a crash never
+        // leaves half a segment; the poll drops its ballots from memory once this returns
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(optionCount);
+            out.writeInt(histogram.length);
+            for (long bucket : histogram) {
+                out.writeLong(bucket);
+            }
+            for (VoterTable table : tables) {
+                writeTable(out, table);
+            }
+            out.flush();
+            gzip.finish();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SnapshotFile.syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    private static void writeTable(DataOutputStream out, VoterTable table) throws IOException {
+        int expected = table.size();
+        out.writeInt(expected);
+        int[] written = {0};
+        IOException[] failure = {null};
+        table.forEach((msb, lsb, value) -> {
+            if (failure[0] != null) return;
+            try {
+                out.writeLong(msb);
+                out.writeLong(lsb);
+                out.writeInt(value);
+                written[0]++;
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        if (written[0] != expected) {
+            throw new IOException("Ballots changed while archiving");
+        }
+    }
+
+    static long[] readHistogram(Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            return readHeader(in);
+        }
+    }
+
+    static void readBallots(Path file, VoterTable... tables) throws IOException {
+        try (DataInputStream in = open(file)) {
+            readHeader(in);
+            for (VoterTable table : tables) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long msb = in.readLong();
+                    long lsb = in.readLong();
+                    table.put(new UUID(msb, lsb), in.readInt());
+                }
+            }
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))));
+    }
+
+    private static long[] readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a poll archive segment");
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) throw new IOException("Unsupported archive version " + version);
+        in.readInt(); // Option count, for inspection only
+        long[] histogram = new long[in.readInt()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = in.readLong();
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,145 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.List;
+
+/**
+ * The outcome of {@link PollObject#audit(boolean)}: the option counters and ranked ballot
+ * histogram recounted from the stored votes, compared against the live counters.
+ *
+ * <p>Drift is live minus recounted. It is only reported when two recounts that no vote
+ * interrupted agree on it; an audit that never got such a recount is not
+ * {@linkplain #isSettled() settled} and reports no drift.
+ */
+public final class PollAudit {
+
+    private final List<String> options;
+    private final long[] recounted;
+    private final long[] live;
+    private final long[] drift;
+    private final long ballotDrift;
+    private final int driftedBallotCodes;
+    private final long voters;
+    private final long invalidEntries;
+    private final boolean settled;
+    private final boolean repaired;
+    private final long durationMillis;
+
+    PollAudit(List<String> options, long[] recounted, long[] live, long[] drift, long[] histogramDrift,
+              long voters, long invalidEntries, boolean settled, boolean repaired, long durationMillis) {
+        this.options = options;
+        this.recounted = recounted;
+        this.live = live;
+        this.drift = drift;
+        long ballots = 0;
+        int codes = 0;
+        for (long delta : histogramDrift) {
+            if (delta != 0) {
+                ballots += Math.abs(delta);
+                codes++;
+            }
+        }
+        this.ballotDrift = ballots;
+        this.driftedBallotCodes = codes;
+        this.voters = voters;
+        this.invalidEntries = invalidEntries;
+        this.settled = settled;
+        this.repaired = repaired;
+        this.durationMillis = durationMillis;
+    }
+
+    public int getOptionCount() {
+        return options.size();
+    }
+
+    public String getOption(int ordinal) {
+        return options.get(ordinal);
+    }
+
+    /**
+     * @return The option's votes counted from the stored votes
+     */
+    public long getRecounted(int ordinal) {
+        return recounted[ordinal];
+    }
+
+    /**
+     * @return The option's live counter when it was audited, before any repair
+     */
+    public long getLive(int ordinal) {
+        return live[ordinal];
+    }
+
+    /**
+     * @return How many votes the live counter was ahead of the recount (negative if behind)
+     */
+    public long getDrift(int ordinal) {
+        return drift[ordinal];
+    }
+
+    /**
+     * @return The ordinals of options whose counter drifted, in option order
+     */
+    public int[] getDriftedOptions() {
+        int count = 0;
+        for (long delta : drift) {
+            if (delta != 0) count++;
+        }
+        int[] out = new int[count];
+        int at = 0;
+        for (int ordinal = 0; ordinal < drift.length; ordinal++) {
+            if (drift[ordinal] != 0) out[at++] = ordinal;
+        }
+        return out;
+    }
+
+    /**
+     * @return Ranked ballots the histogram was off by, summed over every ballot code
+     */
+    public long getBallotDrift() {
+        return ballotDrift;
+    }
+
+    /**
+     * @return How many ballot codes of the histogram drifted
+     */
+    public int getDriftedBallotCodes() {
+        return driftedBallotCodes;
+    }
+
+    /**
+     * @return Voters with a stored vote, selection or ballot
+     */
+    public long getVoters() {
+        return voters;
+    }
+
+    /**
+     * @return Stored votes naming no option or ballot of the poll. These are reported only;
+     *         a repair never removes votes.
+     */
+    public long getInvalidEntries() {
+        return invalidEntries;
+    }
+
+    public boolean hasDrift() {
+        return ballotDrift != 0 || getDriftedOptions().length != 0;
+    }
+
+    /**
+     * @return False if votes kept changing during every recount, so nothing could be compared
+     */
+    public boolean isSettled() {
+        return settled;
+    }
+
+    /**
+     * @return Whether the drift was subtracted from the live counters
+     */
+    public boolean isRepaired() {
+        return repaired;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,357 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The settings of a poll: what it asks, when it runs and how it is counted.
+ *
+ * <p>A definition never changes once built. {@link PollObject} holds its current definition
+ * in one volatile field and publishes a changed copy ({@link #toBuilder()}) with a single
+ * compare-and-set, so a reader on any thread sees either every setting from before a change
+ * or every setting after it, without taking a lock.
+ */
+public final class PollDefinition {
+
+    private final String title;
+    private final String description;
+    private final List<String> options;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final long startMillis;
+    private final long endMillis;
+    private final LocalDateTime creationDate;
+
+    private final PollType pollType;
+    private final boolean active;
+    private final boolean anonymousVoting;
+    private final boolean allowMultipleChoices;
+    private final boolean autoTieBreaker;
+    private final boolean showResultsDuringPoll;
+    private final boolean allowVoteUndo;
+    // Selection cap for MULTIPLE polls, 0 for no cap
+    private final int maxVotesPerUser;
+
+    private final boolean sendExpirationWarning;
+    private final List<Integer> warningThresholdsInSeconds;
+
+    private final String templateUuid;
+    private final String creatorUuid;
+    private final Set<String> requiredPerms;
+    private final Set<String> recipients;
+    private final Set<String> tags;
+    private final List<RewardObject> rewards;
+
+    private PollDefinition(Builder builder) {
+        this.title = builder.title;
+        this.description = builder.description;
+        this.options = List.copyOf(builder.options);
+        this.startTime = builder.startTime;
+        this.endTime = builder.endTime;
+        this.startMillis = Clock.toEpochMillis(builder.startTime);
+        this.endMillis = Clock.toEpochMillis(builder.endTime);
+        this.creationDate = builder.creationDate;
+        this.pollType = builder.pollType;
+        this.active = builder.active;
+        this.anonymousVoting = builder.anonymousVoting;
+        this.allowMultipleChoices = builder.allowMultipleChoices;
+        this.autoTieBreaker = builder.autoTieBreaker;
+        this.showResultsDuringPoll = builder.showResultsDuringPoll;
+        this.allowVoteUndo = builder.allowVoteUndo;
+        this.maxVotesPerUser = builder.maxVotesPerUser;
+        this.sendExpirationWarning = builder.sendExpirationWarning;
+        // copyOf returns shared instances for empty and already-immutable collections
+        this.warningThresholdsInSeconds = List.copyOf(builder.warningThresholdsInSeconds);
+        this.templateUuid = builder.templateUuid;
+        this.creatorUuid = builder.creatorUuid;
+        this.requiredPerms = Set.copyOf(builder.requiredPerms);
+        this.recipients = Set.copyOf(builder.recipients);
+        this.tags = Set.copyOf(builder.tags);
+        this.rewards = List.copyOf(builder.rewards);
+    }
+
+    /**
+     * @param title       The poll title
+     * @param options     The options, in display order
+     * @param description A description of the poll
+     * @param startTime   When voting opens
+     * @param endTime     When voting closes
+     * @return A builder with every other setting at its default
+     */
+    public static Builder builder(String title, List<String> options, String description,
+                                  LocalDateTime startTime, LocalDateTime endTime) {
+        Builder builder = new Builder();
+        builder.title = title;
+        builder.options = options;
+        builder.description = description;
+        builder.startTime = startTime;
+        builder.endTime = endTime;
+        builder.creationDate = startTime;
+        return builder;
+    }
+
+    /**
+     * @return A builder holding every setting of this definition
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.title = title;
+        builder.description = description;
+        builder.options = options;
+        builder.startTime = startTime;
+        builder.endTime = endTime;
+        builder.creationDate = creationDate;
+        builder.pollType = pollType;
+        builder.active = active;
+        builder.anonymousVoting = anonymousVoting;
+        builder.allowMultipleChoices = allowMultipleChoices;
+        builder.autoTieBreaker = autoTieBreaker;
+        builder.showResultsDuringPoll = showResultsDuringPoll;
+        builder.allowVoteUndo = allowVoteUndo;
+        builder.maxVotesPerUser = maxVotesPerUser;
+        builder.sendExpirationWarning = sendExpirationWarning;
+        builder.warningThresholdsInSeconds = warningThresholdsInSeconds;
+        builder.templateUuid = templateUuid;
+        builder.creatorUuid = creatorUuid;
+        builder.requiredPerms = requiredPerms;
+        builder.recipients = recipients;
+        builder.tags = tags;
+        builder.rewards = rewards;
+        return builder;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return The scheduled end in epoch millis, ignoring any forced end
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public PollType getPollType() {
+        return pollType;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isAnonymousVoting() {
+        return anonymousVoting;
+    }
+
+    public boolean isAllowMultipleChoices() {
+        return allowMultipleChoices;
+    }
+
+    public boolean isAutoTieBreaker() {
+        return autoTieBreaker;
+    }
+
+    public boolean isShowResultsDuringPoll() {
+        return showResultsDuringPoll;
+    }
+
+    public boolean isAllowVoteUndo() {
+        return allowVoteUndo;
+    }
+
+    public int getMaxVotesPerUser() {
+        return maxVotesPerUser;
+    }
+
+    public boolean isSendExpirationWarning() {
+        return sendExpirationWarning;
+    }
+
+    public List<Integer> getWarningThresholdsInSeconds() {
+        return warningThresholdsInSeconds;
+    }
+
+    public String getTemplateUuid() {
+        return templateUuid;
+    }
+
+    public String getCreatorUuid() {
+        return creatorUuid;
+    }
+
+    public Set<String> getRequiredPerms() {
+        return requiredPerms;
+    }
+
+    /**
+     * @return Player UUIDs the poll is broadcast to; empty for everyone
+     */
+    public Set<String> getRecipients() {
+        return recipients;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public List<RewardObject> getRewards() {
+        return rewards;
+    }
+
+    /**
+     * Collects changed settings for a new {@link PollDefinition}. Not thread-safe; build it
+     * on one thread and publish the result.
+     */
+    public static final class Builder {
+        private String title;
+        private String description;
+        private List<String> options;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private LocalDateTime creationDate;
+        private PollType pollType = PollType.SINGLE;
+        private boolean active;
+        private boolean anonymousVoting;
+        private boolean allowMultipleChoices;
+        private boolean autoTieBreaker;
+        private boolean showResultsDuringPoll;
+        private boolean allowVoteUndo;
+        private int maxVotesPerUser;
+        private boolean sendExpirationWarning;
+        private Collection<Integer> warningThresholdsInSeconds = List.of();
+        private String templateUuid;
+        private String creatorUuid;
+        private Collection<String> requiredPerms = Set.of();
+        private Collection<String> recipients = Set.of();
+        private Collection<String> tags = Set.of();
+        private Collection<RewardObject> rewards = List.of();
+
+        private Builder() {
+        }
+
+        public Builder startTime(LocalDateTime startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        public Builder endTime(LocalDateTime endTime) {
+            this.endTime = endTime;
+            return this;
+        }
+
+        public Builder creationDate(LocalDateTime creationDate) {
+            this.creationDate = creationDate;
+            return this;
+        }
+
+        public Builder pollType(PollType pollType) {
+            this.pollType = pollType;
+            return this;
+        }
+
+        public Builder active(boolean active) {
+            this.active = active;
+            return this;
+        }
+
+        public Builder anonymousVoting(boolean anonymousVoting) {
+            this.anonymousVoting = anonymousVoting;
+            return this;
+        }
+
+        public Builder allowMultipleChoices(boolean allowMultipleChoices) {
+            this.allowMultipleChoices = allowMultipleChoices;
+            return this;
+        }
+
+        public Builder autoTieBreaker(boolean autoTieBreaker) {
+            this.autoTieBreaker = autoTieBreaker;
+            return this;
+        }
+
+        public Builder showResultsDuringPoll(boolean showResultsDuringPoll) {
+            this.showResultsDuringPoll = showResultsDuringPoll;
+            return this;
+        }
+
+        public Builder allowVoteUndo(boolean allowVoteUndo) {
+            this.allowVoteUndo = allowVoteUndo;
+            return this;
+        }
+
+        public Builder maxVotesPerUser(int maxVotesPerUser) {
+            this.maxVotesPerUser = maxVotesPerUser;
+            return this;
+        }
+
+        public Builder sendExpirationWarning(boolean sendExpirationWarning) {
+            this.sendExpirationWarning = sendExpirationWarning;
+            return this;
+        }
+
+        public Builder warningThresholdsInSeconds(Collection<Integer> thresholds) {
+            this.warningThresholdsInSeconds = thresholds;
+            return this;
+        }
+
+        public Builder templateUuid(String templateUuid) {
+            this.templateUuid = templateUuid;
+            return this;
+        }
+
+        public Builder creatorUuid(String creatorUuid) {
+            this.creatorUuid = creatorUuid;
+            return this;
+        }
+
+        public Builder requiredPerms(Collection<String> requiredPerms) {
+            this.requiredPerms = requiredPerms;
+            return this;
+        }
+
+        public Builder recipients(Collection<String> recipients) {
+            this.recipients = recipients;
+            return this;
+        }
+
+        public Builder tags(Collection<String> tags) {
+            this.tags = tags;
+            return this;
+        }
+
+        public Builder rewards(Collection<RewardObject> rewards) {
+            this.rewards = rewards;
+            return this;
+        }
+
+        public PollDefinition build() {
+            return new PollDefinition(this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Hands out short, never-repeating poll IDs.
+ *
+ * <p>An ID is a sequence number, optionally followed by a node id in its low bits, written
+ * in base 36: the first polls get IDs like {@code "1"}, {@code "a2"}, and a million polls
+ * still fit in four characters. Servers sharing one poll store each set a different node
+ * id, so their IDs can never meet.
+ *
+ * <p>The sequence survives restarts through a small state file. Rather than writing it on
+ * every allocation, the allocator reserves a block of {@value #RESERVE_BLOCK} numbers at a
+ * time and records the end of the block; after a crash it resumes past the reserved block,
+ * skipping at most a block of unused IDs. If the file cannot be written, IDs keep coming
+ * from memory and uniqueness is left to the registry's collision check.
+ */
+public class PollIdAllocator {
+
+    public static final int NODE_BITS = 10;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int RESERVE_BLOCK = 64;
+
+    private final Path stateFile;
+    // Negative when IDs carry no node id
+    private final int nodeId;
+    private long next;
+    private long reservedUpTo;
+
+    /**
+     * Creates an allocator whose sequence starts over on every restart.
+     *
+     * @param nodeId This server's node id (0 to {@value #MAX_NODE_ID}), or -1 on a single server
+     */
+    public PollIdAllocator(int nodeId) {
+        this.stateFile = null;
+        this.nodeId = checkNodeId(nodeId);
+        this.next = 1;
+        this.reservedUpTo = 1;
+    }
+
+    /**
+     * @param stateFile Where the sequence is kept
+     * @param nodeId    This server's node id (0 to {@value #MAX_NODE_ID}), or -1 on a single server
+     */
+    public PollIdAllocator(Path stateFile, int nodeId) throws IOException {
+        this.stateFile = stateFile;
+        this.nodeId = checkNodeId(nodeId);
+        long start = 1;
+        if (Files.exists(stateFile)) {
+            String saved = new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8).trim();
+            try {
+                start = Math.max(1, Long.parseLong(saved));
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt poll ID state in " + stateFile + ": " + saved);
+            }
+        }
+        this.next = start;
+        this.reservedUpTo = start;
+    }
+
+    private static int checkNodeId(int nodeId) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be at most " + MAX_NODE_ID);
+        }
+        return nodeId < 0 ? -1 : nodeId;
+    }
+
+    /**
+     * @return A new poll ID
+     */
+    public synchronized String next() {
+        if (next >= reservedUpTo) {
+            reserve(next + RESERVE_BLOCK);
+        }
+        long seq = next++;
+        long value = nodeId < 0 ? seq : (seq << NODE_BITS) | nodeId;
+        return Long.toString(value, Character.MAX_RADIX);
+    }
+
+    private void reserve(long upTo) {
+        reservedUpTo = upTo;
+        if (stateFile == null) return;
+        try {
+            Path parent = stateFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            Files.write(temp, Long.toString(upTo).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Keep allocating from memory; the registry still rejects a repeated ID
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * A trie of poll IDs for prefix lookups, case-insensitive.
+ *
+ * <p>Finding the node for a prefix walks one edge per character, so it costs
+ * O(prefix length) whatever the number of polls. Each node counts the IDs below it, which
+ * lets {@link #resolve(String)} tell a unique prefix from an ambiguous one without
+ * collecting matches. Children are kept in small sorted arrays, since poll IDs only use a
+ * few dozen distinct characters.
+ */
+public class PollIdIndex {
+
+    private final Node root = new Node();
+
+    /**
+     * @return False if the ID was already present
+     */
+    public synchronized boolean add(String pollId) {
+        String key = pollId.toLowerCase(Locale.ROOT);
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        if (node.pollId != null) return false;
+        node.pollId = pollId;
+
+        node = root;
+        node.count++;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            node.count++;
+        }
+        return true;
+    }
+
+    /**
+     * @return False if the ID was not present
+     */
+    public synchronized boolean remove(String pollId) {
+        String key = pollId.toLowerCase(Locale.ROOT);
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) return false;
+        }
+        Node last = path[key.length()];
+        if (last.pollId == null) return false;
+        last.pollId = null;
+
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].count--;
+            // Prune branches that no longer lead to an ID
+            if (i > 0 && path[i].count == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return root.count;
+    }
+
+    /**
+     * @return How many IDs start with the prefix
+     */
+    public synchronized int countPrefix(String prefix) {
+        Node node = find(prefix);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * @param prefix A prefix, or an empty string for every ID
+     * @param limit  The most IDs to return
+     * @return IDs starting with the prefix, in character order
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        return findByPrefix(prefix, limit, id -> true);
+    }
+
+    /**
+     * @param prefix A prefix, or an empty string for every ID
+     * @param limit  The most IDs to return
+     * @param filter Which matching IDs to keep; IDs it rejects do not count towards the limit
+     * @return IDs starting with the prefix that pass the filter, in character order
+     */
+    public synchronized List<String> findByPrefix(String prefix, int limit, Predicate<String> filter) {
+        Node start = find(prefix);
+        if (start == null || limit <= 0) return Collections.emptyList();
+
+        List<String> out = new ArrayList<>(Math.min(limit, start.count));
+        // Depth-first so shorter IDs come before their extensions
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty() && out.size() < limit) {
+            Node node = stack.pop();
+            if (node.pollId != null && filter.test(node.pollId)) {
+                out.add(node.pollId);
+            }
+            for (int i = node.size - 1; i >= 0; i--) {
+                stack.push(node.children[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Resolves a typed ID: an exact match wins, otherwise the prefix must match exactly one ID.
+     *
+     * @return The matching ID, or null if there is none or the prefix is ambiguous
+     */
+    public synchronized String resolve(String prefix) {
+        Node node = find(prefix);
+        if (node == null) return null;
+        if (node.pollId != null) return node.pollId;
+        if (node.count != 1) return null;
+        while (node.pollId == null) {
+            node = node.children[0];
+        }
+        return node.pollId;
+    }
+
+    private Node find(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final char[] NO_KEYS = new char[0];
+
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int size;
+        // IDs ending at or below this node
+        private int count;
+        // Set if an ID ends here, in its original case
+        private String pollId;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            if (size == keys.length) {
+                int grown = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, grown);
+                children = Arrays.copyOf(children, grown);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(children, at, children, at + 1, size - at);
+            Node created = new Node();
+            keys[at] = c;
+            children[at] = created;
+            size++;
+            return created;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            if (i < 0) return;
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(children, i + 1, children, i, size - i - 1);
+            size--;
+            children[size] = null;
+        }
+    }
+}
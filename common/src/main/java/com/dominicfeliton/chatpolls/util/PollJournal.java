@@ -0,0 +1,684 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of the poll changes made since polls were last saved.
+ *
+ * <p>Poll files are only written every few minutes. Every create, vote, undo, end and delete
+ * is also appended here as a small checksummed record, so a crash loses at most the last
+ * {@code fsyncIntervalMillis} of changes rather than everything since the last save. Callers
+ * never touch the disk: records are queued in an {@link MpscRing} and a single writer thread
+ * writes whatever has queued up in one go (group commit), forcing it to disk at most once per
+ * interval.
+ *
+ * <p>Vote records hold the voter's resulting entry rather than the command, so replaying a
+ * record the saved files already contain changes nothing. Startup replays every segment on
+ * top of the saved files. Records of different polls never affect each other, so each poll's
+ * records can be {@linkplain #prepareReplay(PollRegistry, Listener) replayed} in order as soon
+ * as that poll is loaded. A save first {@linkplain #rollOver() starts a new
+ * segment}; once it has written every changed poll, the older segments are folded into it and
+ * are {@linkplain #deleteSegmentsBefore(long) deleted}.
+ */
+public class PollJournal {
+
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    // Which voter table a vote record sets
+    static final byte VOTES = 0;
+    static final byte SELECTIONS = 1;
+    static final byte BALLOTS = 2;
+
+    private static final byte CREATE = 1;
+    private static final byte VOTE = 2;
+    private static final byte END = 3;
+    private static final byte DELETE = 4;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    // A length past this can only be a torn or corrupt tail
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_RING_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Turns polls into bytes for create records and back.
+     */
+    public interface Codec {
+        byte[] encode(PollObject poll) throws IOException;
+
+        PollObject decode(byte[] data) throws IOException;
+    }
+
+    /**
+     * Platform hook for setting up polls that replay adds or removes.
+     */
+    public interface Listener {
+        /**
+         * A poll created after the last save was registered again.
+         */
+        void restored(String pollId, PollObject poll);
+
+        /**
+         * A poll deleted after the last save was unregistered again.
+         */
+        void deleted(String pollId, PollObject poll);
+
+        /**
+         * A record could not be applied, e.g. a created poll that no longer decodes, and
+         * replay moved on to the next one.
+         */
+        void skipped(Path segment, Exception e);
+    }
+
+    /**
+     * What a poll journals through: the journal and the poll's ID.
+     */
+    static final class Handle {
+        private final PollJournal journal;
+        private final String pollId;
+
+        private Handle(PollJournal journal, String pollId) {
+            this.journal = journal;
+            this.pollId = pollId;
+        }
+
+        void logVote(byte kind, UUID voter, int value) {
+            journal.logVote(pollId, kind, voter, value);
+        }
+
+        void logEnd(long endMillis) {
+            journal.logEnd(pollId, endMillis);
+        }
+    }
+
+    /**
+     * Queued in place of a record to make the writer switch segments.
+     */
+    private static final class Roll {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private long segment = -1;
+    }
+
+    private final Path dir;
+    private final Codec codec;
+    private final long fsyncIntervalMillis;
+    private final MpscRing<Object> queue = new MpscRing<>(RING_CAPACITY);
+
+    private volatile boolean running;
+    private volatile Thread writer;
+    private volatile IOException failure;
+    private final AtomicInteger skippedRecords = new AtomicInteger();
+
+    // Only used by the writer thread once open
+    private long segment;
+    private FileOutputStream file;
+    private BufferedOutputStream out;
+    private long lastSyncMillis;
+    private boolean unsynced;
+
+    /**
+     * @param dir                 Directory holding the segments
+     * @param fsyncIntervalMillis How often written records are forced to disk: 0 after every
+     *                            batch, or negative to leave it to the operating system
+     */
+    public PollJournal(Path dir, Codec codec, long fsyncIntervalMillis) {
+        this.dir = dir;
+        this.codec = codec;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    // ----------------------------------------------------------------------
+    //  Appending
+    // ----------------------------------------------------------------------
+
+    /**
+     * Journals a poll's votes and forced end from now on.
+     */
+    public void attach(String pollId, PollObject poll) {
+        poll.setJournal(new Handle(this, pollId));
+    }
+
+    public void detach(PollObject poll) {
+        poll.setJournal(null);
+    }
+
+    public void logCreate(String pollId, UUID creator, PollObject poll) {
+        if (!running) return;
+        try {
+            byte[] data = codec.encode(poll);
+            RecordWriter record = new RecordWriter(CREATE, 32 + data.length);
+            record.data.writeUTF(pollId);
+            record.data.writeLong(creator.getMostSignificantBits());
+            record.data.writeLong(creator.getLeastSignificantBits());
+            record.data.writeInt(data.length);
+            record.data.write(data);
+            enqueue(record.frame());
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    public void logDelete(String pollId) {
+        if (!running) return;
+        try {
+            RecordWriter record = new RecordWriter(DELETE, 16);
+            record.data.writeUTF(pollId);
+            enqueue(record.frame());
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * @param kind  The voter table that changed
+     * @param value The voter's entry now, or {@link VoterTable#NO_VALUE} if withdrawn
+     */
+    void logVote(String pollId, byte kind, UUID voter, int value) {
+        if (!running) return;
+        try {
+            RecordWriter record = new RecordWriter(VOTE, 64);
+            record.data.writeUTF(pollId);
+            record.data.writeByte(kind);
+            record.data.writeLong(voter.getMostSignificantBits());
+            record.data.writeLong(voter.getLeastSignificantBits());
+            record.data.writeInt(value);
+            enqueue(record.frame());
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    void logEnd(String pollId, long endMillis) {
+        if (!running) return;
+        try {
+            RecordWriter record = new RecordWriter(END, 48);
+            record.data.writeUTF(pollId);
+            record.data.writeLong(endMillis);
+            enqueue(record.frame());
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void enqueue(Object item) {
+        // A full ring means the disk is behind; wait for room rather than lose the record
+        while (!queue.offer(item)) {
+            if (!running) return;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_RING_NANOS);
+        }
+    }
+
+    /**
+     * Builds one framed record: payload length, CRC-32 of the payload, then the payload.
+     */
+    private static final class RecordWriter {
+        private final ByteArrayOutputStream bytes;
+        private final DataOutputStream data;
+
+        RecordWriter(byte type, int sizeHint) throws IOException {
+            this.bytes = new ByteArrayOutputStream(sizeHint);
+            this.data = new DataOutputStream(bytes);
+            data.writeByte(type);
+        }
+
+        byte[] frame() {
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            return ByteBuffer.allocate(8 + payload.length)
+                    .putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .put(payload)
+                    .array();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    //  Writer
+    // ----------------------------------------------------------------------
+
+    /**
+     * Starts the writer thread on a new segment after every existing one.
+     */
+    public synchronized void open() throws IOException {
+        if (running) return;
+        Files.createDirectories(dir);
+        List<Long> existing = new ArrayList<>(listSegments().keySet());
+        openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+        running = true;
+        Thread thread = new Thread(this::writeLoop, "ChatPolls-PollJournal");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            if (queue.drainTo(batch, MAX_BATCH) == 0) {
+                syncIfDue(System.currentTimeMillis());
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                for (Object item : batch) {
+                    if (item instanceof Roll) {
+                        roll((Roll) item);
+                    } else {
+                        out.write((byte[]) item);
+                        unsynced = true;
+                    }
+                }
+                // One write for the whole batch
+                out.flush();
+                syncIfDue(System.currentTimeMillis());
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                for (Object item : batch) {
+                    if (item instanceof Roll) {
+                        ((Roll) item).done.countDown();
+                    }
+                }
+                batch.clear();
+            }
+        }
+        try {
+            sync();
+            out.close();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void syncIfDue(long nowMillis) {
+        if (!unsynced || fsyncIntervalMillis < 0 || nowMillis - lastSyncMillis < fsyncIntervalMillis) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            failure = e;
+        }
+        lastSyncMillis = nowMillis;
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        if (unsynced && fsyncIntervalMillis >= 0) {
+            file.getChannel().force(false);
+        }
+        unsynced = false;
+    }
+
+    private void roll(Roll roll) throws IOException {
+        sync();
+        out.close();
+        openSegment(segment + 1);
+        roll.segment = segment;
+    }
+
+    private void openSegment(long next) throws IOException {
+        file = new FileOutputStream(segmentPath(next).toFile(), true);
+        out = new BufferedOutputStream(file, 1 << 16);
+        segment = next;
+    }
+
+    /**
+     * Starts a new segment once every record queued before this call is written. Every
+     * older segment then only holds changes made before this call.
+     *
+     * @return The new segment, or -1 if the journal is not open
+     */
+    public long rollOver() throws InterruptedException {
+        if (!running) return -1;
+        Roll roll = new Roll();
+        enqueue(roll);
+        LockSupport.unpark(writer);
+        roll.done.await();
+        return roll.segment;
+    }
+
+    /**
+     * Deletes the segments older than {@code segment}, e.g. once a save has folded them in.
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (Map.Entry<Long, Path> entry : listSegments().entrySet()) {
+            if (entry.getKey() < segment) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes every queued record, forces it to disk and stops the writer.
+     */
+    public void close() throws InterruptedException {
+        Thread thread = writer;
+        if (!running || thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    /**
+     * @return The last write or encoding error, or null; clears it
+     */
+    public IOException takeFailure() {
+        IOException last = failure;
+        failure = null;
+        return last;
+    }
+
+    /**
+     * @return Records queued and not written yet
+     */
+    public int pendingRecords() {
+        return queue.size();
+    }
+
+    // ----------------------------------------------------------------------
+    //  Replay
+    // ----------------------------------------------------------------------
+
+    /**
+     * Applies every segment on top of the polls loaded from the last save, each poll's
+     * records in the order they were written. Call before {@link #open()}.
+     *
+     * @return How many records were applied
+     * @throws IOException if a segment could not be read
+     * @see #prepareReplay(PollRegistry, Listener)
+     */
+    public int replay(PollRegistry registry, Listener listener) throws IOException {
+        Replay replay = prepareReplay(registry, listener);
+        replay.replayRemaining();
+        return replay.getApplied();
+    }
+
+    /**
+     * Reads every segment, oldest first, and groups the records by poll, to be applied as
+     * the polls are loaded. Reading a segment stops at the first torn or corrupt record,
+     * which can only be the last one being written when the server went down. A record that
+     * passes its checksum but cannot be applied only costs that record; see
+     * {@link #getSkippedRecords()}. Call before {@link #open()}.
+     *
+     * @param registry Where polls created or deleted since the last save are registered or unregistered
+     * @throws IOException if a segment could not be read
+     */
+    public Replay prepareReplay(PollRegistry registry, Listener listener) throws IOException {
+        Replay replay = new Replay(registry, listener);
+        for (Path path : listSegments().values()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                byte[] payload;
+                while ((payload = readRecord(in)) != null) {
+                    replay.add(path, payload);
+                }
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * @return Records replay could not apply and skipped, over every replay so far
+     */
+    public int getSkippedRecords() {
+        return skippedRecords.get();
+    }
+
+    /**
+     * Journaled records grouped by poll. Each poll's records are applied once, by whichever
+     * method claims them first; methods may be called from several threads at once.
+     */
+    public final class Replay {
+        private final PollRegistry registry;
+        private final Listener listener;
+        // pollId => its records, oldest first, in order of each poll's first record
+        private final Map<String, List<Record>> byPoll = new LinkedHashMap<>();
+        // creator => polls journaled as created by them
+        private final Map<UUID, List<String>> created = new HashMap<>();
+        private final AtomicInteger applied = new AtomicInteger();
+
+        private Replay(PollRegistry registry, Listener listener) {
+            this.registry = registry;
+            this.listener = listener;
+        }
+
+        private void add(Path segment, byte[] payload) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = in.readByte();
+                String pollId = in.readUTF();
+                if (type == CREATE) {
+                    created.computeIfAbsent(new UUID(in.readLong(), in.readLong()), c -> new ArrayList<>()).add(pollId);
+                }
+                byPoll.computeIfAbsent(pollId, id -> new ArrayList<>()).add(new Record(segment, payload));
+            } catch (IOException e) {
+                skip(segment, e);
+            }
+        }
+
+        private synchronized List<Record> claim(String pollId) {
+            return byPoll.remove(pollId);
+        }
+
+        /**
+         * Applies a loaded poll's records to it before it is registered.
+         *
+         * @return How many records changed the poll, or {@link PollLoader#DELETED} if it
+         *         was deleted since it was saved
+         */
+        public int replayInto(String pollId, PollObject poll) {
+            List<Record> records = claim(pollId);
+            if (records == null) return 0;
+            int changed = 0;
+            for (Record record : records) {
+                try {
+                    DataInputStream in = record.open();
+                    byte type = in.readByte();
+                    in.readUTF();
+                    if (type == DELETE) {
+                        applied.incrementAndGet();
+                        return PollLoader.DELETED;
+                    }
+                    if (applyChange(type, in, poll)) {
+                        changed++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    skip(record.segment, e);
+                }
+            }
+            applied.addAndGet(changed);
+            return changed;
+        }
+
+        /**
+         * Registers the polls a player created since the last save, with their later records.
+         * Call once the player's own file, if any, is loaded.
+         */
+        public void replayCreated(UUID creator) {
+            List<String> pollIds;
+            synchronized (this) {
+                pollIds = created.remove(creator);
+            }
+            if (pollIds == null) return;
+            for (String pollId : pollIds) {
+                applyAll(claim(pollId));
+            }
+        }
+
+        /**
+         * Applies every record not applied yet, e.g. once every file is loaded.
+         */
+        public void replayRemaining() {
+            List<String> pollIds;
+            synchronized (this) {
+                pollIds = new ArrayList<>(byPoll.keySet());
+                created.clear();
+            }
+            for (String pollId : pollIds) {
+                applyAll(claim(pollId));
+            }
+        }
+
+        private void applyAll(List<Record> records) {
+            if (records == null) return;
+            for (Record record : records) {
+                try {
+                    if (apply(record.open(), registry, listener)) {
+                        applied.incrementAndGet();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    skip(record.segment, e);
+                }
+            }
+        }
+
+        private void skip(Path segment, Exception e) {
+            skippedRecords.incrementAndGet();
+            listener.skipped(segment, e);
+        }
+
+        /**
+         * @return Players who created polls since the last save, whose records are not applied yet
+         */
+        public synchronized Set<UUID> getCreators() {
+            return new HashSet<>(created.keySet());
+        }
+
+        /**
+         * @return How many records changed something so far
+         */
+        public int getApplied() {
+            return applied.get();
+        }
+    }
+
+    private static final class Record {
+        private final Path segment;
+        private final byte[] payload;
+
+        Record(Path segment, byte[] payload) {
+            this.segment = segment;
+            this.payload = payload;
+        }
+
+        DataInputStream open() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+
+    /**
+     * @return The next record's payload, or null at the end of the segment or a bad record
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES) return null;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private boolean apply(DataInputStream in, PollRegistry registry, Listener listener) throws IOException {
+        byte type = in.readByte();
+        if (type == CREATE) {
+            String pollId = in.readUTF();
+            UUID creator = new UUID(in.readLong(), in.readLong());
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            // Created before the last save
+            if (registry.contains(pollId)) return false;
+            PollObject poll = codec.decode(data);
+            if (!registry.register(pollId, creator, poll)) return false;
+            listener.restored(pollId, poll);
+            return true;
+        }
+        if (type == DELETE) {
+            String pollId = in.readUTF();
+            PollObject removed = registry.unregister(pollId);
+            if (removed == null) return false;
+            listener.deleted(pollId, removed);
+            return true;
+        }
+
+        String pollId = in.readUTF();
+        PollObject poll = registry.get(pollId);
+        // Deleted since
+        if (poll == null) return false;
+        if (!applyChange(type, in, poll)) return false;
+        if (type == END) {
+            registry.reindex(pollId);
+        }
+        return true;
+    }
+
+    /**
+     * Applies a vote or end record, positioned after its poll ID, to the poll.
+     */
+    private static boolean applyChange(byte type, DataInputStream in, PollObject poll) throws IOException {
+        if (type == VOTE) {
+            byte kind = in.readByte();
+            UUID voter = new UUID(in.readLong(), in.readLong());
+            return poll.replayVote(kind, voter, in.readInt());
+        }
+        if (type == END) {
+            return poll.replayEnd(in.readLong());
+        }
+        return false;
+    }
+
+    private Map<Long, Path> listSegments() throws IOException {
+        Map<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(dir)) return segments;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,310 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fires every poll's SCHEDULED → ACTIVE → ENDED transitions from one hierarchical timing
+ * wheel.
+ *
+ * <p>Each poll has at most one pending timer: its next transition. A timer due within one
+ * revolution sits in the bucket of the tick it is due on. One due further out sits on a
+ * coarser level whose buckets each span a whole revolution of the level below, and moves
+ * down a level when its bucket comes round. Scheduling and cancelling are O(1), and a timer
+ * is touched once per level it passes through, so a poll a day out is moved twice before
+ * it fires. A single repeating task calling {@link #tick(long)} once per tick drives every
+ * poll.
+ *
+ * <p>The last fired transition is kept on the poll ({@link PollObject#getLifecycleStatus()})
+ * and saved with it, so after a restart {@link #schedule} restores the pending timer, and
+ * a transition that came due while the server was down fires once on the first tick.
+ */
+public class PollLifecycleScheduler {
+
+    public static final long DEFAULT_TICK_MILLIS = 1000L;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Notified after a poll changes status. Called on the thread that runs {@link #tick(long)},
+     * outside the scheduler's lock.
+     */
+    public interface Listener {
+        void onTransition(String pollId, PollObject poll, PollStatus status);
+    }
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    // Level 0 holds one tick per bucket; each bucket of level n spans all of level n - 1
+    private final Timer[][] levels;
+    private final Map<String, Timer> pending = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Every bucket up to and including this tick has been processed; -1 before the first tick
+    private long lastTick = -1;
+
+    public PollLifecycleScheduler() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickMillis How often {@link #tick(long)} will be called, in millis
+     * @param wheelSize  Buckets in the wheel; rounded up to a power of two
+     */
+    public PollLifecycleScheduler(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(size);
+        this.mask = size - 1;
+        // Enough levels to place any tick a long can hold
+        this.levels = new Timer[(62 + bits) / bits][size];
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Starts tracking a poll, replacing any timer it already had. A poll seen for the first
+     * time takes its current status silently; only later transitions are fired.
+     */
+    public void schedule(String pollId, PollObject poll) {
+        if (poll.getLifecycleStatus() == null) {
+            // A loader racing this call may have set it first; either status is current
+            poll.advanceLifecycle(poll.statusAt(poll.getClock().currentTimeMillis()));
+        }
+        synchronized (this) {
+            cancelLocked(pollId);
+            scheduleNextLocked(pollId, poll);
+        }
+    }
+
+    /**
+     * Re-reads a poll's times after they changed, e.g. when it was force-ended.
+     */
+    public synchronized void reschedule(String pollId) {
+        Timer timer = pending.get(pollId);
+        if (timer == null) return;
+        cancelLocked(pollId);
+        scheduleNextLocked(pollId, timer.poll);
+    }
+
+    /**
+     * Stops tracking a poll, e.g. when it is deleted.
+     */
+    public synchronized void cancel(String pollId) {
+        cancelLocked(pollId);
+    }
+
+    /**
+     * @return Polls that still have a transition to fire
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Fires every transition due at or before {@code nowMillis} and notifies listeners.
+     *
+     * @param nowMillis The current time in epoch millis
+     * @return How many transitions fired
+     */
+    public int tick(long nowMillis) {
+        List<Timer> fired = new ArrayList<>();
+        synchronized (this) {
+            long nowTick = Math.floorDiv(nowMillis, tickMillis);
+            if (lastTick < 0 || nowTick - lastTick > mask) {
+                // First tick or a long stall: one pass over every timer catches up
+                rebuildLocked(nowTick, fired);
+            } else {
+                for (long tick = lastTick + 1; tick <= nowTick; tick++) {
+                    cascadeLocked(tick);
+                    expireLocked(levels[0], (int) (tick & mask), nowTick, fired);
+                }
+            }
+            lastTick = Math.max(lastTick, nowTick);
+
+            // Advance each poll and queue its next transition; one that is already due
+            // (e.g. a poll that both started and ended while the server was down) fires now too
+            for (int i = 0; i < fired.size(); i++) {
+                Timer timer = fired.get(i);
+                if (!timer.poll.advanceLifecycle(timer.target)) {
+                    // Cancelled since the timer was queued; nothing left to announce
+                    fired.remove(i--);
+                    continue;
+                }
+                Timer next = scheduleNextLocked(timer.pollId, timer.poll);
+                if (next != null && next.dueMillis <= nowMillis) {
+                    unlinkLocked(next);
+                    pending.remove(next.pollId);
+                    fired.add(next);
+                }
+            }
+        }
+
+        for (Timer timer : fired) {
+            for (Listener listener : listeners) {
+                listener.onTransition(timer.pollId, timer.poll, timer.target);
+            }
+        }
+        return fired.size();
+    }
+
+    // Moves every timer in one bucket that is due by nowTick to fired
+    private void expireLocked(Timer[] level, int bucket, long nowTick, List<Timer> fired) {
+        Timer timer = level[bucket];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.dueTick <= nowTick) {
+                unlinkLocked(timer);
+                pending.remove(timer.pollId);
+                fired.add(timer);
+            }
+            timer = next;
+        }
+    }
+
+    // When a tick starts a new span of a coarser level, moves that span's timers down
+    private void cascadeLocked(long tick) {
+        for (int level = 1; level < levels.length; level++) {
+            int shift = level * bits;
+            if (shift >= Long.SIZE - 1 || (tick & ((1L << shift) - 1)) != 0) return;
+            Timer[] buckets = levels[level];
+            int bucket = (int) ((tick >>> shift) & mask);
+            Timer timer = buckets[bucket];
+            buckets[bucket] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.prev = null;
+                timer.next = null;
+                placeLocked(timer, tick);
+                timer = next;
+            }
+        }
+    }
+
+    // Re-files every timer against nowTick, firing those already due
+    private void rebuildLocked(long nowTick, List<Timer> fired) {
+        List<Timer> timers = new ArrayList<>(pending.values());
+        for (Timer[] buckets : levels) {
+            Arrays.fill(buckets, null);
+        }
+        for (Timer timer : timers) {
+            timer.prev = null;
+            timer.next = null;
+            if (timer.dueTick <= nowTick) {
+                pending.remove(timer.pollId);
+                fired.add(timer);
+            } else {
+                placeLocked(timer, nowTick);
+            }
+        }
+    }
+
+    /**
+     * Links a timer into the finest level whose horizon, counted from {@code cursor}, reaches
+     * its due tick. Before the first tick there is no cursor yet; timers go to level 0 and the
+     * first tick re-files them all.
+     */
+    private void placeLocked(Timer timer, long cursor) {
+        int level = 0;
+        if (cursor >= 0) {
+            while (level < levels.length - 1) {
+                int shift = level * bits;
+                if ((timer.dueTick >>> shift) - (cursor >>> shift) <= mask) break;
+                level++;
+            }
+        }
+        Timer[] buckets = levels[level];
+        int bucket = (int) ((timer.dueTick >>> (level * bits)) & mask);
+        timer.level = level;
+        timer.next = buckets[bucket];
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+        buckets[bucket] = timer;
+    }
+
+    /**
+     * Queues the transition after the poll's last fired status.
+     *
+     * @return The new timer, or null if the poll has no transitions left
+     */
+    private Timer scheduleNextLocked(String pollId, PollObject poll) {
+        PollStatus status = poll.getLifecycleStatus();
+        PollStatus target;
+        long dueMillis;
+        if (status == PollStatus.SCHEDULED && poll.getEffectiveEndMillis() > poll.getStartMillis()) {
+            target = PollStatus.ACTIVE;
+            // hasStarted/hasEnded are strict, so the transition is due a millisecond after
+            dueMillis = poll.getStartMillis() + 1;
+        } else if (status == PollStatus.SCHEDULED || status == PollStatus.ACTIVE) {
+            // A poll force-ended before it started goes straight to ENDED
+            target = PollStatus.ENDED;
+            dueMillis = poll.getEffectiveEndMillis() + 1;
+        } else {
+            return null;
+        }
+
+        // Round up so a timer never fires before its time
+        long dueTick = Math.floorDiv(dueMillis + tickMillis - 1, tickMillis);
+        if (lastTick >= 0 && dueTick <= lastTick) {
+            dueTick = lastTick + 1;
+        }
+        Timer timer = new Timer(pollId, poll, target, dueMillis, dueTick);
+        placeLocked(timer, lastTick);
+        pending.put(pollId, timer);
+        return timer;
+    }
+
+    private void cancelLocked(String pollId) {
+        Timer timer = pending.remove(pollId);
+        if (timer != null) {
+            unlinkLocked(timer);
+        }
+    }
+
+    private void unlinkLocked(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            levels[timer.level][(int) ((timer.dueTick >>> (timer.level * bits)) & mask)] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    private static final class Timer {
+        private final String pollId;
+        private final PollObject poll;
+        private final PollStatus target;
+        private final long dueMillis;
+        private final long dueTick;
+        private int level;
+        private Timer prev;
+        private Timer next;
+
+        Timer(String pollId, PollObject poll, PollStatus target, long dueMillis, long dueTick) {
+            this.pollId = pollId;
+            this.poll = poll;
+            this.target = target;
+            this.dueMillis = dueMillis;
+            this.dueTick = dueTick;
+        }
+    }
+}
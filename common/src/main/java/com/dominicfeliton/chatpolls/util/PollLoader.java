@@ -0,0 +1,263 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads players' save files on a bounded pool of daemon threads and registers each file's
+ * polls as soon as that file is read, so startup neither blocks the main thread nor waits
+ * for every file before the first polls are available.
+ *
+ * <p>A player counts as {@linkplain #isLoading(UUID) loading} until their file is done, so
+ * commands about their polls can wait for it. Files named as {@code first}, e.g. those with
+ * open polls, are read before the rest, and {@link #whenFirstLoaded()} completes once they
+ * are. A file that cannot be read or parsed is loaded from its
+ * {@linkplain SnapshotFile#backupOf(Path) backup}, and the player is marked dirty so the
+ * next save rewrites it.
+ */
+public class PollLoader {
+
+    public static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /**
+     * Returned by {@link Listener#replay(String, PollObject)} for a poll deleted since its
+     * file was saved.
+     */
+    public static final int DELETED = -1;
+
+    /**
+     * Parses one player's save file.
+     */
+    @FunctionalInterface
+    public interface Reader {
+        Map<String, ? extends PollObject> read(Path file) throws IOException;
+    }
+
+    /**
+     * Platform hooks, called on loader threads.
+     */
+    public interface Listener {
+        /**
+         * A poll was registered. Attach what changes its saved state, such as its archive,
+         * here; the poll counts as saved as it is after this call.
+         */
+        void prepare(String pollId, PollObject poll);
+
+        /**
+         * Applies what changed since the file was saved to a prepared poll, before anyone
+         * else can see it.
+         *
+         * @return How many changes were applied, or {@link #DELETED} to drop the poll
+         */
+        int replay(String pollId, PollObject poll);
+
+        /**
+         * A prepared poll was registered and can be scheduled.
+         */
+        void loaded(String pollId, PollObject poll);
+
+        /**
+         * Every poll in a player's file is registered; the player still counts as loading
+         * until this returns.
+         */
+        void fileLoaded(UUID creator);
+
+        /**
+         * A poll was not loaded because its ID is already in use.
+         */
+        void skipped(String pollId, Path file);
+
+        /**
+         * A file could not be read, from its backup either.
+         */
+        void failed(Path file, Exception e);
+
+        /**
+         * A file could not be read or parsed and its backup was loaded instead.
+         */
+        void restoredFromBackup(Path file, Exception e);
+    }
+
+    private final PollRegistry registry;
+    private final int threads;
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger polls = new AtomicInteger();
+    private final AtomicInteger files = new AtomicInteger();
+
+    private volatile ExecutorService pool;
+    private volatile CompletableFuture<Void> firstLoaded = CompletableFuture.completedFuture(null);
+    private volatile boolean cancelled;
+    private volatile long durationMillis = -1;
+
+    /**
+     * @param threads The most files read at once
+     */
+    public PollLoader(PollRegistry registry, int threads) {
+        this.registry = registry;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Starts loading and returns at once.
+     *
+     * @param saveFiles Each player's save file
+     * @param first     Players whose files are read before the rest
+     * @return Completes once every file is done, loaded or not
+     */
+    public CompletableFuture<Void> load(Map<UUID, Path> saveFiles, Set<UUID> first, Reader reader, Listener listener) {
+        long started = System.nanoTime();
+        loading.addAll(saveFiles.keySet());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, saveFiles.size())), task -> {
+            Thread thread = new Thread(task, "ChatPolls-PollLoader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool = executor;
+
+        // The pool takes tasks in order, so the first files are read before any other
+        List<Map.Entry<UUID, Path>> ordered = new ArrayList<>(saveFiles.entrySet());
+        ordered.sort((a, b) -> Boolean.compare(!first.contains(a.getKey()), !first.contains(b.getKey())));
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[ordered.size()];
+        List<CompletableFuture<?>> firstTasks = new ArrayList<>();
+        int at = 0;
+        for (Map.Entry<UUID, Path> entry : ordered) {
+            CompletableFuture<Void> task = CompletableFuture.runAsync(() -> loadFile(entry.getKey(), entry.getValue(), reader, listener), executor);
+            tasks[at++] = task;
+            if (first.contains(entry.getKey())) {
+                firstTasks.add(task);
+            }
+        }
+        firstLoaded = CompletableFuture.allOf(firstTasks.toArray(new CompletableFuture<?>[0]));
+        return CompletableFuture.allOf(tasks).whenComplete((done, error) -> {
+            executor.shutdown();
+            durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        });
+    }
+
+    private void loadFile(UUID creator, Path file, Reader reader, Listener listener) {
+        try {
+            boolean stale = false;
+            Map<String, ? extends PollObject> read;
+            try {
+                read = reader.read(file);
+            } catch (IOException | RuntimeException e) {
+                // A corrupt file can also fail to parse, e.g. an unknown enum name
+                Path backup = SnapshotFile.backupOf(file);
+                if (!Files.exists(backup)) throw e;
+                read = reader.read(backup);
+                listener.restoredFromBackup(file, e);
+                // Rewrite the broken file from the backup on the next save
+                stale = true;
+            }
+
+            Map<String, Long> stamps = new HashMap<>();
+            for (Map.Entry<String, ? extends PollObject> entry : read.entrySet()) {
+                if (cancelled) return;
+                String pollId = entry.getKey();
+                PollObject poll = entry.getValue();
+                if (registry.contains(pollId)) {
+                    listener.skipped(pollId, file);
+                    stale = true;
+                    continue;
+                }
+                listener.prepare(pollId, poll);
+                // As on disk; replayed changes, and starting or ending it on schedule, make it dirty again
+                long stamp = poll.getChangeStamp();
+                if (listener.replay(pollId, poll) == DELETED) {
+                    stale = true;
+                    continue;
+                }
+                if (!registry.register(pollId, creator, poll)) {
+                    listener.skipped(pollId, file);
+                    stale = true;
+                    continue;
+                }
+                stamps.put(pollId, stamp);
+                listener.loaded(pollId, poll);
+                polls.incrementAndGet();
+            }
+            registry.markLoaded(creator, stamps);
+            if (stale) {
+                registry.markDirty(creator);
+            }
+            listener.fileLoaded(creator);
+            files.incrementAndGet();
+        } catch (Exception e) {
+            listener.failed(file, e);
+        } finally {
+            // A cancelled load may have registered part of a file, which must not be saved
+            if (!cancelled) {
+                loading.remove(creator);
+            }
+        }
+    }
+
+    /**
+     * @return Completes once the files named as first are done, loaded or not
+     */
+    public CompletableFuture<Void> whenFirstLoaded() {
+        return firstLoaded;
+    }
+
+    /**
+     * Stops loading, e.g. on shutdown, and waits for files being read to stop. Players whose
+     * files were not finished stay loading.
+     *
+     * @return Whether every loader thread stopped in time
+     */
+    public boolean cancel(long timeoutMillis) throws InterruptedException {
+        cancelled = true;
+        ExecutorService executor = pool;
+        if (executor == null) return true;
+        executor.shutdownNow();
+        return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether every file is done, loaded or not
+     */
+    public boolean isDone() {
+        return durationMillis >= 0;
+    }
+
+    /**
+     * @return Whether the player's save file is yet to be loaded
+     */
+    public boolean isLoading(UUID creator) {
+        return loading.contains(creator);
+    }
+
+    /**
+     * @return Polls loaded so far
+     */
+    public int getPollCount() {
+        return polls.get();
+    }
+
+    /**
+     * @return Files loaded so far, from the file itself or its backup
+     */
+    public int getFileCount() {
+        return files.get();
+    }
+
+    /**
+     * @return How long loading every file took, or -1 while loading
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
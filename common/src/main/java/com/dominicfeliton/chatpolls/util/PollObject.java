@@ -1,342 +1,1672 @@
 package com.dominicfeliton.chatpolls.util;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import net.kyori.adventure.sound.Sound;
 import net.kyori.adventure.text.Component;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
 
+// "votes" was an unused per-option map in older saves, "votingLog" a list of strings
+// before events moved to the binary VotingLog
+@JsonIgnoreProperties({"votes", "votingLog"})
 public abstract class PollObject {
-    @JsonProperty("title")
-    // Basic poll properties
-    protected final String title;
-    @JsonProperty("description")
-    protected final String description;
-    @JsonProperty("options")
-    protected final List<String> options;
-    @JsonProperty("startTime")
-    protected final LocalDateTime startTime;
-    @JsonProperty("endTime")
-    protected final LocalDateTime endTime;
-    @JsonProperty("forcedEndTime")
-    protected LocalDateTime forcedEndTime;
 
-    // Vote tracking
-    @JsonProperty("optionVotes")
-    protected final ConcurrentMap<String, Integer> optionVotes = new ConcurrentHashMap<>();
-    
-    @JsonProperty("userVotes")
-    protected final ConcurrentMap<UUID, String> userVotes = new ConcurrentHashMap<>();
-    
-    @JsonProperty("userRankedVotes")
-    protected final ConcurrentMap<UUID, List<String>> userRankedVotes = new ConcurrentHashMap<>();
+    /**
+     * Largest number of options a multiple-choice or approval poll may have, since each
+     * selection is stored as a non-negative int bitmask.
+     */
+    public static final int MAX_SELECTION_OPTIONS = 31;
 
-    // Advanced settings (from original)
-    @JsonProperty("active")
-    private boolean active;
-    @JsonProperty("anonymousVoting")
-    private boolean anonymousVoting;
-    @JsonProperty("allowMultipleChoices")
-    private boolean allowMultipleChoices;
-    @JsonProperty("autoTieBreaker")
-    private boolean autoTieBreaker;
-    @JsonProperty("showResultsDuringPoll")
-    private boolean showResultsDuringPoll;
-    @JsonProperty("allowVoteUndo")
-    private boolean allowVoteUndo;
+    private static final int BALLOT_REJECTED = -2;
+    private static final int SELECTION_OVER_LIMIT = -3;
+    // Recounts before an audit of a poll that never stops changing gives up
+    private static final int MAX_AUDIT_PASSES = 20;
+    private static final long AUDIT_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
-    @JsonProperty("uuid")
-    private String uuid;
-    @JsonProperty("templateUuid")
-    private String templateUuid;
-    @JsonProperty("creatorUuid")
-    private String creatorUuid;
-    @JsonProperty("pollType")
-    private PollType pollType;
-    
-    @JsonIgnore // Complex type, handle separately if needed
-    private Component beginChatMessage;
-    @JsonIgnore // Complex type, handle separately if needed
-    private Component endChatMessage;
-    
-    @JsonProperty("creationDate")
-    private LocalDateTime creationDate;
-    private String cancellationReason;
-
-    @JsonProperty("sendExpirationWarning")
-    private boolean sendExpirationWarning;
-    @JsonProperty("warningThresholdsInSeconds")
-    private List<Integer> warningThresholdsInSeconds;
-
-    @JsonIgnore // Complex type, handle separately if needed
-    private Sound onBegin;
-    @JsonIgnore
-    private Sound onVote;
+    private static final VarHandle DEFINITION;
+    private static final VarHandle LIFECYCLE;
+    private static final VarHandle EDITS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            DEFINITION = lookup.findVarHandle(PollObject.class, "definition", PollDefinition.class);
+            LIFECYCLE = lookup.findVarHandle(PollObject.class, "lifecycleStatus", PollStatus.class);
+            EDITS = lookup.findVarHandle(PollObject.class, "edits", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Every setting, replaced as a whole on change; see PollDefinition
     @JsonIgnore
-    private Sound onUndoVote;
+    private volatile PollDefinition definition;
+
+    // Vote counters, ballots and cached results
     @JsonIgnore
-    private Sound onCancel;
+    protected final PollTally tally;
+
+    // Long.MAX_VALUE until the poll is force-ended
     @JsonIgnore
-    private Sound onEnd;
+    private volatile long forcedEndMillis = Long.MAX_VALUE;
 
-    @JsonProperty("requiredPerms")
-    private Set<String> requiredPerms;
-    @JsonProperty("recipients")
-    private Set<String> recipients;
-    @JsonProperty("tags")
-    private Set<String> tags;
-    @JsonProperty("rewards")
-    private List<RewardObject> rewards;
-    @JsonProperty("votingLog")
-    private Queue<String> votingLog;
+    @JsonProperty("uuid")
+    private String uuid;
+    // Last transition announced by PollLifecycleScheduler; null until first scheduled.
+    // Only moves forward, by compare-and-set; see PollStatus#canAdvanceTo
+    @JsonProperty("lifecycleStatus")
+    private volatile PollStatus lifecycleStatus;
+    private volatile String cancellationReason;
+
+    // Sounds and chat components, created on first write; see Presentation
+    @JsonIgnore
+    private volatile Presentation presentation;
 
-    @JsonIgnore // Complex key type (Component)
-    private Map<Component, String> cosmeticToInternal;
-    @JsonProperty("votes")
-    private Map<String, AtomicInteger> votes;
+    // Created on the first vote; replaced by a minimal log once the poll is archived
+    @JsonIgnore
+    private volatile VotingLog votingLog;
+    @JsonIgnore
+    private volatile Path votingLogFile;
 
-    @JsonProperty("maxVotesPerUser")
-    private int maxVotesPerUser;
+    // Whether the ballots were moved to an archive segment; see PollArchiver
+    @JsonProperty("archived")
+    private volatile boolean archived;
+    @JsonIgnore
+    private volatile Path archiveFile;
+    // Bumped whenever ballots move between memory and the archive
+    @JsonIgnore
+    private volatile long residencyEpoch;
+    // Saved changes other than votes; see getChangeStamp()
+    @JsonIgnore
+    private volatile long edits;
+    // Where votes and ends are journaled between saves; null if they are not
+    @JsonIgnore
+    private volatile PollJournal.Handle journal;
+    // Told about every change that moves the change stamp; null if nobody saves this poll
+    @JsonIgnore
+    private volatile Runnable changeListener;
+    @JsonIgnore
+    private volatile long lastRehydratedMillis;
+    @JsonIgnore
+    private final Object archiveLock = new Object();
+    @JsonIgnore
+    private final Object auditLock = new Object();
 
     private final Clock clock;
 
+    // Stateless, so every poll on the system clock shares one
+    private static final Clock SYSTEM_CLOCK = new SystemClock();
+
     protected PollObject(String title, List<String> options, String description, long delaySec, long durationSec) {
-        this(title, options, description, delaySec, durationSec, new SystemClock());
+        this(title, options, description, delaySec, durationSec, SYSTEM_CLOCK);
     }
 
     protected PollObject(String title, List<String> options, String description, long delaySec, long durationSec, Clock clock) {
-        // Store basic properties
-        this.title = title;
-        this.description = description;
-        this.options = Collections.unmodifiableList(new ArrayList<>(options));
         this.clock = clock;
-        
+        List<String> interned = internOptions(options);
+
         // Set times
-        LocalDateTime now = clock.getCurrentDateTime();
-        this.startTime = now.plusSeconds(delaySec);
-        this.endTime = startTime.plusSeconds(durationSec);
-        this.forcedEndTime = null;
-        
+        long now = clock.currentTimeMillis();
+        long startMillis = now + delaySec * 1000L;
+        this.definition = PollDefinition.builder(title, interned, description,
+                        Clock.toLocalDateTime(startMillis), Clock.toLocalDateTime(startMillis + durationSec * 1000L))
+                .creationDate(Clock.toLocalDateTime(now))
+                .build();
+
         // Initialize vote tracking
-        for (String opt : this.options) {
-            optionVotes.put(opt, 0);
+        this.tally = new PollTally(interned);
+        uuid = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Copies the options into a compact immutable list of canonical strings, so common
+     * options such as "Yes" and "No" are stored once however many polls use them.
+     */
+    private static List<String> internOptions(List<String> options) {
+        String[] interned = new String[options.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = options.get(i).intern();
         }
+        return List.of(interned);
+    }
 
-        // Initialize other fields
-        active = false;
-        uuid = UUID.randomUUID().toString();
-        pollType = PollType.SINGLE;
-        creationDate = now;
-        cancellationReason = null;
+    /**
+     * Optional cosmetics most polls never set. Kept out of PollObject so a plain poll
+     * pays one null reference for all of them.
+     */
+    private static final class Presentation {
+        private volatile Sound onBegin;
+        private volatile Sound onVote;
+        private volatile Sound onUndoVote;
+        private volatile Sound onCancel;
+        private volatile Sound onEnd;
+        private volatile Component beginChatMessage;
+        private volatile Component endChatMessage;
+        private final Map<Component, String> cosmeticToInternal = new ConcurrentHashMap<>();
+    }
+
+    private Presentation presentation() {
+        Presentation current = presentation;
+        if (current != null) return current;
+        synchronized (archiveLock) {
+            if (presentation == null) {
+                presentation = new Presentation();
+            }
+            return presentation;
+        }
+    }
+
+    /**
+     * @return The poll's current settings. Read once and keep the result to see a
+     *         consistent set of settings.
+     */
+    @JsonIgnore
+    public PollDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Publishes a copy of the definition with some settings changed. Concurrent changes are
+     * retried against each other, so none is lost.
+     */
+    private void updateDefinition(UnaryOperator<PollDefinition.Builder> change) {
+        while (true) {
+            PollDefinition current = definition;
+            PollDefinition next = change.apply(current.toBuilder()).build();
+            if (DEFINITION.compareAndSet(this, current, next)) {
+                markEdited();
+                return;
+            }
+        }
+    }
 
-        sendExpirationWarning = false;
-        warningThresholdsInSeconds = new CopyOnWriteArrayList<>();
+    /**
+     * @return A number that grows with every change to this poll that would be saved: votes,
+     *         settings, lifecycle and archiving. An unchanged stamp means the saved copy is
+     *         still current.
+     */
+    @JsonIgnore
+    public long getChangeStamp() {
+        return tally.getVersion() + edits;
+    }
 
-        onBegin = null;
-        onVote = null;
-        onUndoVote = null;
-        onCancel = null;
-        onEnd = null;
+    /**
+     * Records a saved change that is not a vote; votes are counted by the tally's version.
+     */
+    protected void markEdited() {
+        EDITS.getAndAdd(this, 1L);
+        notifyChanged();
+    }
 
-        requiredPerms = ConcurrentHashMap.newKeySet();
-        recipients = ConcurrentHashMap.newKeySet();
-        tags = ConcurrentHashMap.newKeySet();
-        rewards = new CopyOnWriteArrayList<>();
-        votingLog = new ConcurrentLinkedQueue<>();
+    private void notifyChanged() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
 
-        cosmeticToInternal = new ConcurrentHashMap<>();
-        votes = new ConcurrentHashMap<>();
+    /**
+     * @param listener Run after every change that moves {@link #getChangeStamp()}, on the
+     *                 changing thread, or null to stop; see {@link PollRegistry#register}
+     */
+    void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
     }
 
     // Common methods that work for all platforms
     public String getTitle() {
-        return title;
+        return definition.getTitle();
     }
 
     public String getDescription() {
-        return description;
+        return definition.getDescription();
     }
 
     public List<String> getOptions() {
-        return options;
+        return definition.getOptions();
     }
 
     @JsonIgnore
     public String getOptionsDisplay() {
-        return String.join(", ", options);
+        return String.join(", ", definition.getOptions());
     }
 
     @JsonIgnore
     public String getDateTimeStart() {
-        return startTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return definition.getStartTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
     @JsonIgnore
     public String getDateTimeEnd() {
-        return endTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return definition.getEndTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
     public String getCreationDate() {
-        return creationDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return definition.getCreationDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
     public void setCreationDate(LocalDateTime date) {
-        this.creationDate = date;
+        updateDefinition(b -> b.creationDate(date));
+    }
+
+    public LocalDateTime getStartTime() {
+        return definition.getStartTime();
+    }
+
+    @JsonProperty("startTime")
+    private void setStartTime(LocalDateTime time) {
+        updateDefinition(b -> b.startTime(time));
+    }
+
+    public LocalDateTime getEndTime() {
+        return definition.getEndTime();
+    }
+
+    @JsonProperty("endTime")
+    private void setEndTime(LocalDateTime time) {
+        updateDefinition(b -> b.endTime(time));
+    }
+
+    public LocalDateTime getForcedEndTime() {
+        long forced = forcedEndMillis;
+        return forced == Long.MAX_VALUE ? null : Clock.toLocalDateTime(forced);
+    }
+
+    @JsonProperty("forcedEndTime")
+    private void setForcedEndTime(LocalDateTime time) {
+        this.forcedEndMillis = time == null ? Long.MAX_VALUE : Clock.toEpochMillis(time);
+    }
+
+    /**
+     * @return When the poll was force-ended in epoch millis, or Long.MAX_VALUE if it was not
+     */
+    long getForcedEndMillis() {
+        return forcedEndMillis;
+    }
+
+    @JsonIgnore
+    public long getStartMillis() {
+        return definition.getStartMillis();
+    }
+
+    /**
+     * @return When the poll ends or ended, including a forced end, in epoch millis
+     */
+    @JsonIgnore
+    public long getEffectiveEndMillis() {
+        return Math.min(definition.getEndMillis(), forcedEndMillis);
     }
 
     public boolean hasStarted() {
-        return getCurrentDateTime().isAfter(startTime);
+        return hasStarted(clock.currentTimeMillis());
     }
 
     public boolean hasEnded() {
-        LocalDateTime now = getCurrentDateTime();
-        return now.isAfter(endTime) || (forcedEndTime != null && now.isAfter(forcedEndTime));
+        return hasEnded(clock.currentTimeMillis());
+    }
+
+    /**
+     * Allocation-free start check against a caller-supplied time, so a sweep over many
+     * polls can read the clock once.
+     *
+     * @param nowMillis The current time in epoch millis
+     */
+    public boolean hasStarted(long nowMillis) {
+        return nowMillis > definition.getStartMillis();
+    }
+
+    /**
+     * @param nowMillis The current time in epoch millis
+     * @return Whether the poll's time is up or it was cancelled
+     * @see #hasStarted(long)
+     */
+    public boolean hasEnded(long nowMillis) {
+        return nowMillis > definition.getEndMillis() || nowMillis > forcedEndMillis
+                || lifecycleStatus == PollStatus.CANCELLED;
+    }
+
+    /**
+     * @param nowMillis The current time in epoch millis
+     * @return Whether the poll accepts votes at that time
+     */
+    public boolean isOpen(long nowMillis) {
+        return hasStarted(nowMillis) && !hasEnded(nowMillis);
     }
 
     public void forceEnd() {
-        forcedEndTime = getCurrentDateTime();
+        long now = clock.currentTimeMillis();
+        forcedEndMillis = now;
+        markEdited();
+        PollJournal.Handle j = journal;
+        if (j != null) {
+            j.logEnd(now);
+        }
+    }
+
+    /**
+     * Restores a forced end from a journal.
+     *
+     * @return Whether the poll's end moved
+     */
+    boolean replayEnd(long endMillis) {
+        if (endMillis >= forcedEndMillis) return false;
+        forcedEndMillis = endMillis;
+        markEdited();
+        return true;
     }
 
+    /**
+     * @param nowMillis The current time in epoch millis
+     * @return What the poll's times say its status is at that time, or
+     *         {@link PollStatus#CANCELLED} once cancelled
+     */
+    public PollStatus statusAt(long nowMillis) {
+        if (lifecycleStatus == PollStatus.CANCELLED) return PollStatus.CANCELLED;
+        if (hasEnded(nowMillis)) return PollStatus.ENDED;
+        return hasStarted(nowMillis) ? PollStatus.ACTIVE : PollStatus.SCHEDULED;
+    }
+
+    public PollStatus getLifecycleStatus() {
+        return lifecycleStatus;
+    }
+
+    /**
+     * Sets the first lifecycle status of a poll that has none yet, when it is first
+     * scheduled or loaded. Later changes go through {@link #advanceLifecycle(PollStatus)}.
+     *
+     * @throws IllegalStateException If the poll already has a lifecycle status
+     */
+    @JsonProperty("lifecycleStatus")
+    public void setLifecycleStatus(PollStatus lifecycleStatus) {
+        if (!LIFECYCLE.compareAndSet(this, (PollStatus) null, lifecycleStatus)) {
+            throw new IllegalStateException("Poll " + uuid + " is already " + this.lifecycleStatus);
+        }
+        markEdited();
+    }
+
+    /**
+     * Moves the lifecycle forward. Racing callers agree on the outcome: exactly one of them
+     * makes each transition, and a poll never moves back or leaves a terminal status.
+     *
+     * @param target The status to move to
+     * @return Whether this call made the transition
+     */
+    public boolean advanceLifecycle(PollStatus target) {
+        while (true) {
+            PollStatus current = lifecycleStatus;
+            if (current != null && !current.canAdvanceTo(target)) return false;
+            if (LIFECYCLE.compareAndSet(this, current, target)) {
+                markEdited();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Cancels the poll: it closes to votes at once and its end is not announced as a
+     * normal result.
+     *
+     * @param reason Why the poll was cancelled, or null
+     * @return False if the poll had already ended or been cancelled
+     */
+    public boolean cancel(String reason) {
+        PollStatus current = lifecycleStatus;
+        if (current == null) {
+            LIFECYCLE.compareAndSet(this, (PollStatus) null, statusAt(clock.currentTimeMillis()));
+        }
+        if (!advanceLifecycle(PollStatus.CANCELLED)) return false;
+        cancellationReason = reason;
+        forceEnd();
+        return true;
+    }
+
+    /**
+     * @return Why the poll was cancelled, or null
+     */
+    @JsonProperty("cancellationReason")
+    public String getCancellationReason() {
+        return cancellationReason;
+    }
+
+    @JsonProperty("cancellationReason")
+    private void setCancellationReason(String reason) {
+        this.cancellationReason = reason;
+    }
+
+    @JsonIgnore
+    public Clock getClock() {
+        return clock;
+    }
+
+    @JsonProperty("optionVotes")
     public Map<String, Integer> getOptionVotes() {
-        return Collections.unmodifiableMap(optionVotes);
+        return getResults().asMap();
+    }
+
+    @JsonProperty("optionVotes")
+    private void setOptionVotes(Map<String, Integer> saved) {
+        OptionTally counters = tally.getCounters();
+        for (Map.Entry<String, Integer> entry : saved.entrySet()) {
+            int ordinal = counters.ordinalOf(entry.getKey());
+            if (ordinal >= 0 && entry.getValue() != null) {
+                counters.reset(ordinal, entry.getValue());
+            }
+        }
+        markChanged();
     }
 
     public boolean hasOption(String optionKey) {
-        return options.contains(optionKey);
+        return tally.ordinalOf(optionKey) >= 0;
+    }
+
+    /**
+     * Finds an option as a player typed it, ignoring case. Costs the same however many
+     * options the poll has.
+     *
+     * @return The option's exact name, or null if there is no such option or the name
+     *         matches several options ignoring case
+     */
+    public String resolveOption(String typed) {
+        OptionIndex index = tally.getCounters().getIndex();
+        int ordinal = index.ordinalOfIgnoreCase(typed);
+        return ordinal < 0 ? null : index.optionAt(ordinal);
+    }
+
+    /**
+     * @param prefix A prefix, ignoring case
+     * @param limit  The most options to return
+     * @return Options starting with the prefix, e.g. for tab completion
+     */
+    public List<String> findOptionsByPrefix(String prefix, int limit) {
+        return tally.getCounters().getIndex().findByPrefix(prefix, limit);
     }
 
     public boolean hasVoted(UUID playerUuid) {
-        if (pollType == PollType.RANKED) {
-            return userRankedVotes.containsKey(playerUuid);
+        PollType type = definition.getPollType();
+        if (type.isRanked()) {
+            return lookup(tally.ballots(), playerUuid) != VoterTable.NO_VALUE;
+        }
+        if (type.isMultiSelect()) {
+            return lookup(tally.selections(), playerUuid) != VoterTable.NO_VALUE;
         }
-        return userVotes.containsKey(playerUuid);
+        return lookup(tally.votes(), playerUuid) != VoterTable.NO_VALUE;
     }
 
     public String getPlayerVote(UUID playerUuid) {
-        return userVotes.get(playerUuid);
+        int ordinal = lookup(tally.votes(), playerUuid);
+        return ordinal == VoterTable.NO_VALUE ? null : tally.optionAt(ordinal);
     }
 
-    public boolean castVote(UUID playerUuid, String option) {
-        // Validate
-        if (!hasOption(option)) return false;
-        if (!hasStarted() || hasEnded()) return false;
-        if (hasVoted(playerUuid)) return false;
-        if (pollType == PollType.RANKED) return false; // Ranked polls use castRankedVote
+    /**
+     * @return The options a voter selected in a multiple-choice or approval poll, or null
+     */
+    public List<String> getPlayerSelections(UUID playerUuid) {
+        int mask = lookup(tally.selections(), playerUuid);
+        return mask == VoterTable.NO_VALUE ? null : Collections.unmodifiableList(decodeSelection(mask));
+    }
 
-        synchronized (this) {
-            userVotes.put(playerUuid, option);
-            int currentCount = optionVotes.getOrDefault(option, 0);
-            optionVotes.put(option, currentCount + 1);
-        }
-        return true;
+    public boolean isAllowVoteUndo() {
+        return definition.isAllowVoteUndo();
     }
 
-    public boolean castRankedVote(UUID voter, List<String> ranking) {
-        // Validate
-        if (!hasStarted() || hasEnded()) return false;
-        if (pollType != PollType.RANKED) return false;
-        if (userRankedVotes.containsKey(voter) && !allowVoteUndo) return false;
+    public void setAllowVoteUndo(boolean allowVoteUndo) {
+        updateDefinition(b -> b.allowVoteUndo(allowVoteUndo));
+    }
 
-        // Validate that each option in ranking is allowed and no duplicates
-        Set<String> seen = new HashSet<>();
-        for (String option : ranking) {
-            if (!options.contains(option)) return false;
-            if (!seen.add(option)) return false; // Duplicate found
-        }
+    @JsonIgnore
+    public Sound getOnVote() {
+        Presentation current = presentation;
+        return current == null ? null : current.onVote;
+    }
 
-        synchronized (this) {
-            userRankedVotes.put(voter, new ArrayList<>(ranking));
-        }
-        return true;
+    public void setOnVote(Sound onVote) {
+        if (onVote == null && presentation == null) return;
+        presentation().onVote = onVote;
     }
 
-    public String calculateRankedWinner() {
-        if (pollType != PollType.RANKED) return null;
+    /**
+     * @return The sound played when a voter withdraws their vote, or null for the default
+     */
+    @JsonIgnore
+    public Sound getOnUndoVote() {
+        Presentation current = presentation;
+        return current == null ? null : current.onUndoVote;
+    }
 
-        // Copy all ballots into a mutable list
-        List<List<String>> ballots = new ArrayList<>(userRankedVotes.values());
-        
-        // While there is more than one candidate remaining:
-        while (true) {
-            // Count first-choice votes:
-            Map<String, Integer> firstChoiceCounts = new HashMap<>();
-            for (List<String> ballot : ballots) {
-                if (!ballot.isEmpty()) {
-                    String firstChoice = ballot.get(0);
-                    firstChoiceCounts.put(firstChoice, 
-                        firstChoiceCounts.getOrDefault(firstChoice, 0) + 1);
-                }
-            }
-            
-            int totalVotes = ballots.size();
-            // Check for majority:
-            for (Map.Entry<String, Integer> entry : firstChoiceCounts.entrySet()) {
-                if (entry.getValue() > totalVotes / 2) {
-                    return entry.getKey(); // Winner found
-                }
-            }
-            
-            // If no votes remain, return null
-            if (firstChoiceCounts.isEmpty()) {
-                return null;
-            }
-            
-            // Identify candidate(s) with the fewest first-choice votes
-            int minVotes = Collections.min(firstChoiceCounts.values());
-            List<String> toEliminate = new ArrayList<>();
-            for (Map.Entry<String, Integer> entry : firstChoiceCounts.entrySet()) {
-                if (entry.getValue() == minVotes) {
-                    toEliminate.add(entry.getKey());
-                }
-            }
-            
-            // Eliminate the candidate(s) from every ballot
-            for (List<String> ballot : ballots) {
-                ballot.removeAll(toEliminate);
-            }
-            
-            // If only one candidate remains across all ballots, return it
-            Set<String> remaining = new HashSet<>();
-            for (List<String> ballot : ballots) {
-                if (!ballot.isEmpty()) {
-                    remaining.add(ballot.get(0));
+    public void setOnUndoVote(Sound onUndoVote) {
+        if (onUndoVote == null && presentation == null) return;
+        presentation().onUndoVote = onUndoVote;
+    }
+
+    /**
+     * @return The sound played when the poll opens, or null for the default
+     */
+    @JsonIgnore
+    public Sound getOnBegin() {
+        Presentation current = presentation;
+        return current == null ? null : current.onBegin;
+    }
+
+    public void setOnBegin(Sound onBegin) {
+        if (onBegin == null && presentation == null) return;
+        presentation().onBegin = onBegin;
+    }
+
+    /**
+     * @return The sound played when the poll ends, or null for the default
+     */
+    @JsonIgnore
+    public Sound getOnEnd() {
+        Presentation current = presentation;
+        return current == null ? null : current.onEnd;
+    }
+
+    public void setOnEnd(Sound onEnd) {
+        if (onEnd == null && presentation == null) return;
+        presentation().onEnd = onEnd;
+    }
+
+    /**
+     * @return The vote event log, capped in memory and optionally spilled to disk
+     */
+    @JsonIgnore
+    public VotingLog getVotingLog() {
+        VotingLog current = votingLog;
+        if (current != null) return current;
+        synchronized (archiveLock) {
+            if (votingLog == null) {
+                VotingLog created = new VotingLog(archived ? 2 : VotingLog.DEFAULT_CAPACITY);
+                Path file = votingLogFile;
+                if (file != null) {
+                    try {
+                        created.setSpillFile(file);
+                    } catch (IOException e) {
+                        // Without its file the log keeps the newest events in memory only
+                    }
                 }
+                votingLog = created;
             }
-            if (remaining.size() == 1) {
-                return remaining.iterator().next();
-            }
+            return votingLog;
         }
     }
 
     /**
-     * Retrieves the current date and time.
-     *
-     * @return The current LocalDateTime.
+     * Writes buffered vote events to the spill file, if this poll has logged any.
      */
-    @JsonIgnore
-    protected LocalDateTime getCurrentDateTime() {
-        return clock.getCurrentDateTime();
+    public void flushVotingLog() {
+        VotingLog current = votingLog;
+        if (current != null) {
+            current.flush();
+        }
     }
 
-    public void setPollType(PollType type) {
-        this.pollType = type;
+    /**
+     * Sets the file the voting log spills to, without creating the log before the first vote.
+     */
+    public void setVotingLogFile(Path file) throws IOException {
+        synchronized (archiveLock) {
+            votingLogFile = file;
+            VotingLog current = votingLog;
+            if (current != null) {
+                current.setSpillFile(file);
+            }
+        }
     }
 
-    public PollType getPollType() {
-        return this.pollType;
+    public String getUuid() {
+        return uuid;
     }
 
-    public List<String> getRankedVotes(UUID playerUuid) {
-        return userRankedVotes.get(playerUuid);
+    public String getCreatorUuid() {
+        return definition.getCreatorUuid();
+    }
+
+    public void setCreatorUuid(String creatorUuid) {
+        updateDefinition(b -> b.creatorUuid(creatorUuid));
+    }
+
+    /**
+     * @return A read-only view of this poll's tags. Change tags through {@link PollRegistry}
+     *         so its tag index stays in sync.
+     */
+    public Set<String> getTags() {
+        return definition.getTags();
+    }
+
+    @JsonProperty("tags")
+    private void setTags(Set<String> saved) {
+        updateDefinition(b -> b.tags(saved == null ? Set.of() : saved));
+    }
+
+    boolean addTag(String tag) {
+        while (true) {
+            PollDefinition current = definition;
+            if (current.getTags().contains(tag)) return false;
+            Set<String> tags = new HashSet<>(current.getTags());
+            tags.add(tag);
+            if (DEFINITION.compareAndSet(this, current, current.toBuilder().tags(tags).build())) {
+                markEdited();
+                return true;
+            }
+        }
+    }
+
+    boolean removeTag(String tag) {
+        while (true) {
+            PollDefinition current = definition;
+            if (!current.getTags().contains(tag)) return false;
+            Set<String> tags = new HashSet<>(current.getTags());
+            tags.remove(tag);
+            if (DEFINITION.compareAndSet(this, current, current.toBuilder().tags(tags).build())) {
+                markEdited();
+                return true;
+            }
+        }
+    }
+
+    @JsonProperty("requiredPerms")
+    private Set<String> getRequiredPerms() {
+        return definition.getRequiredPerms();
+    }
+
+    @JsonProperty("requiredPerms")
+    private void setRequiredPerms(Set<String> saved) {
+        updateDefinition(b -> b.requiredPerms(saved == null ? Set.of() : saved));
+    }
+
+    @JsonProperty("recipients")
+    private void setRecipients(Set<String> saved) {
+        updateDefinition(b -> b.recipients(saved == null ? Set.of() : saved));
+    }
+
+    @JsonProperty("rewards")
+    private List<RewardObject> getRewards() {
+        return definition.getRewards();
+    }
+
+    @JsonProperty("rewards")
+    private void setRewards(List<RewardObject> saved) {
+        updateDefinition(b -> b.rewards(saved == null ? List.of() : saved));
+    }
+
+    /**
+     * @return Player UUIDs this poll is broadcast to; empty for everyone
+     */
+    public Set<String> getRecipients() {
+        return definition.getRecipients();
+    }
+
+    public boolean isSendExpirationWarning() {
+        return definition.isSendExpirationWarning();
+    }
+
+    public void setSendExpirationWarning(boolean sendExpirationWarning) {
+        updateDefinition(b -> b.sendExpirationWarning(sendExpirationWarning));
+    }
+
+    /**
+     * @return How long before the end each expiration warning is sent, in seconds
+     */
+    public List<Integer> getWarningThresholdsInSeconds() {
+        return definition.getWarningThresholdsInSeconds();
+    }
+
+    public void setWarningThresholdsInSeconds(List<Integer> thresholds) {
+        updateDefinition(b -> b.warningThresholdsInSeconds(thresholds));
+    }
+
+    public int getMaxVotesPerUser() {
+        return definition.getMaxVotesPerUser();
+    }
+
+    public void setMaxVotesPerUser(int maxVotesPerUser) {
+        updateDefinition(b -> b.maxVotesPerUser(maxVotesPerUser));
+    }
+
+    // Settings without a public accessor, persisted under their old field names
+
+    @JsonProperty("active")
+    private boolean isActive() {
+        return definition.isActive();
+    }
+
+    @JsonProperty("active")
+    private void setActive(boolean active) {
+        updateDefinition(b -> b.active(active));
+    }
+
+    @JsonProperty("anonymousVoting")
+    private boolean isAnonymousVoting() {
+        return definition.isAnonymousVoting();
+    }
+
+    @JsonProperty("anonymousVoting")
+    private void setAnonymousVoting(boolean anonymousVoting) {
+        updateDefinition(b -> b.anonymousVoting(anonymousVoting));
+    }
+
+    @JsonProperty("allowMultipleChoices")
+    private boolean isAllowMultipleChoices() {
+        return definition.isAllowMultipleChoices();
+    }
+
+    @JsonProperty("allowMultipleChoices")
+    private void setAllowMultipleChoices(boolean allowMultipleChoices) {
+        updateDefinition(b -> b.allowMultipleChoices(allowMultipleChoices));
+    }
+
+    @JsonProperty("autoTieBreaker")
+    private boolean isAutoTieBreaker() {
+        return definition.isAutoTieBreaker();
+    }
+
+    @JsonProperty("autoTieBreaker")
+    private void setAutoTieBreaker(boolean autoTieBreaker) {
+        updateDefinition(b -> b.autoTieBreaker(autoTieBreaker));
+    }
+
+    @JsonProperty("showResultsDuringPoll")
+    private boolean isShowResultsDuringPoll() {
+        return definition.isShowResultsDuringPoll();
+    }
+
+    @JsonProperty("showResultsDuringPoll")
+    private void setShowResultsDuringPoll(boolean showResultsDuringPoll) {
+        updateDefinition(b -> b.showResultsDuringPoll(showResultsDuringPoll));
+    }
+
+    @JsonProperty("templateUuid")
+    private String getTemplateUuid() {
+        return definition.getTemplateUuid();
+    }
+
+    @JsonProperty("templateUuid")
+    private void setTemplateUuid(String templateUuid) {
+        updateDefinition(b -> b.templateUuid(templateUuid));
+    }
+
+    /**
+     * Casts a vote for one option. In multiple-choice and approval polls this adds the
+     * option to the voter's selection.
+     */
+    public boolean castVote(UUID playerUuid, String option) {
+        // Validate
+        int ordinal = tally.ordinalOf(option);
+        if (ordinal < 0) return false;
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) return false;
+        PollType type = definition.getPollType();
+        if (type.isRanked()) return false; // Ranked polls use castRankedVote
+        if (type.isMultiSelect()) {
+            int bit = selectionBit(ordinal);
+            if (bit < 0) return false;
+            int previous;
+            tally.beginWrite();
+            try {
+                previous = storeSelection(playerUuid, bit, true);
+                if (previous >= 0) {
+                    applySelectionDiff(previous, previous | bit, null);
+                }
+            } finally {
+                tally.endWrite();
+            }
+            if (previous < 0) return false;
+            markChanged();
+            getVotingLog().append(now, playerUuid, previous | bit, previous == 0 ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+            journalVote(PollJournal.SELECTIONS, playerUuid, previous | bit);
+            return true;
+        }
+
+        // putIfAbsent is the only gate; the counter itself needs no lock
+        tally.beginWrite();
+        try {
+            if (tally.votes().putIfAbsent(playerUuid, ordinal) != VoterTable.NO_VALUE) return false;
+            tally.getCounters().increment(ordinal);
+        } finally {
+            tally.endWrite();
+        }
+        markChanged();
+        getVotingLog().append(now, playerUuid, ordinal, VotingLog.Action.CAST);
+        journalVote(PollJournal.VOTES, playerUuid, ordinal);
+        return true;
+    }
+
+    public boolean castRankedVote(UUID voter, List<String> ranking) {
+        // Validate
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) return false;
+        if (!getPollType().isRanked()) return false;
+
+        // Validate that each option in ranking is allowed and no duplicates
+        int code = encodeBallot(ranking);
+        if (code < 0) return false;
+
+        // storeBallot both checks for an earlier ballot and stores this one atomically
+        RankedTally ranked = tally.rankedTally();
+        int previous;
+        tally.beginWrite();
+        try {
+            previous = storeBallot(voter, code);
+            if (previous == BALLOT_REJECTED) return false;
+            if (previous != VoterTable.NO_VALUE) {
+                ranked.remove(previous);
+            }
+            ranked.add(code);
+        } finally {
+            tally.endWrite();
+        }
+        markChanged();
+        getVotingLog().append(now, voter, code, previous == VoterTable.NO_VALUE ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+        journalVote(PollJournal.BALLOTS, voter, code);
+        return true;
+    }
+
+    /**
+     * Withdraws a voter's vote, ballot or selection. The stored entry is removed atomically
+     * and the returned previous value is subtracted from the counters, so each vote is
+     * withdrawn at most once even when undo and vote race for the same voter.
+     *
+     * @param voter The voting player
+     * @return Whether a vote was withdrawn
+     */
+    public boolean undoVote(UUID voter) {
+        PollDefinition d = definition;
+        if (!d.isAllowVoteUndo()) return false;
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) return false;
+
+        int removed;
+        byte kind;
+        tally.beginWrite();
+        try {
+            if (d.getPollType().isRanked()) {
+                removed = tally.ballots().remove(voter);
+                if (removed == VoterTable.NO_VALUE) return false;
+                tally.rankedTally().remove(removed);
+                kind = PollJournal.BALLOTS;
+            } else if (d.getPollType().isMultiSelect()) {
+                removed = tally.selections().remove(voter);
+                if (removed == VoterTable.NO_VALUE) return false;
+                applySelectionDiff(removed, 0, null);
+                kind = PollJournal.SELECTIONS;
+            } else {
+                removed = tally.votes().remove(voter);
+                if (removed == VoterTable.NO_VALUE) return false;
+                tally.getCounters().add(removed, -1);
+                kind = PollJournal.VOTES;
+            }
+        } finally {
+            tally.endWrite();
+        }
+        markChanged();
+        getVotingLog().append(now, voter, removed, VotingLog.Action.UNDO);
+        journalVote(kind, voter, VoterTable.NO_VALUE);
+        return true;
+    }
+
+    /**
+     * Journals a voter's entry after it changed, if this poll is journaled.
+     *
+     * @param value The voter's entry now, or {@link VoterTable#NO_VALUE} if withdrawn
+     */
+    private void journalVote(byte kind, UUID voter, int value) {
+        PollJournal.Handle j = journal;
+        if (j != null) {
+            j.logVote(kind, voter, value);
+        }
+    }
+
+    /**
+     * Sets a voter's entry to what a journal recorded and moves the counters by the
+     * difference, without checking whether the poll is open. Replaying an entry the poll
+     * already holds changes nothing.
+     *
+     * @param kind  The voter table the entry belongs to
+     * @param value The voter's entry, or {@link VoterTable#NO_VALUE} if withdrawn
+     * @return Whether anything changed
+     */
+    boolean replayVote(byte kind, UUID voter, int value) {
+        if (archived && !rehydrate()) return false;
+        VoterTable table;
+        if (kind == PollJournal.VOTES) {
+            if (value >= tally.size()) return false;
+            table = tally.votes();
+        } else if (kind == PollJournal.SELECTIONS) {
+            if (value != VoterTable.NO_VALUE && (value >>> Math.min(tally.size(), MAX_SELECTION_OPTIONS)) != 0) return false;
+            table = tally.selections();
+        } else if (kind == PollJournal.BALLOTS) {
+            if (value >= tally.ballotCodeCount()) return false;
+            table = tally.ballots();
+        } else {
+            return false;
+        }
+
+        tally.beginWrite();
+        try {
+            int previous = value == VoterTable.NO_VALUE ? table.remove(voter) : table.put(voter, value);
+            if (previous == value) return false;
+            if (kind == PollJournal.VOTES) {
+                if (previous != VoterTable.NO_VALUE) {
+                    tally.getCounters().add(previous, -1);
+                }
+                if (value != VoterTable.NO_VALUE) {
+                    tally.getCounters().increment(value);
+                }
+            } else if (kind == PollJournal.SELECTIONS) {
+                applySelectionDiff(previous == VoterTable.NO_VALUE ? 0 : previous, value == VoterTable.NO_VALUE ? 0 : value, null);
+            } else {
+                RankedTally ranked = tally.rankedTally();
+                if (previous != VoterTable.NO_VALUE) {
+                    ranked.remove(previous);
+                }
+                if (value != VoterTable.NO_VALUE) {
+                    ranked.add(value);
+                }
+            }
+        } finally {
+            tally.endWrite();
+        }
+        markChanged();
+        return true;
+    }
+
+    /**
+     * @param journal Where this poll's votes and forced end are journaled, or null to stop;
+     *                see {@link PollJournal#attach(String, PollObject)}
+     */
+    void setJournal(PollJournal.Handle journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replaces a voter's single-choice vote in one atomic swap, moving one count from the old
+     * option to the new one. Acts as a first vote if the voter has not voted yet.
+     *
+     * @param voter  The voting player
+     * @param option The new option
+     * @return Whether the vote was stored
+     */
+    public boolean changeVote(UUID voter, String option) {
+        PollDefinition d = definition;
+        if (!d.isAllowVoteUndo()) return false;
+        int ordinal = tally.ordinalOf(option);
+        if (ordinal < 0) return false;
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) return false;
+        if (d.getPollType() != PollType.SINGLE) return false;
+
+        int previous;
+        tally.beginWrite();
+        try {
+            previous = tally.votes().put(voter, ordinal);
+            if (previous == ordinal) return true;
+            if (previous != VoterTable.NO_VALUE) {
+                tally.getCounters().add(previous, -1);
+            }
+            tally.getCounters().increment(ordinal);
+        } finally {
+            tally.endWrite();
+        }
+        markChanged();
+        getVotingLog().append(now, voter, ordinal, previous == VoterTable.NO_VALUE ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+        journalVote(PollJournal.VOTES, voter, ordinal);
+        return true;
+    }
+
+    /**
+     * Replaces a voter's ranked ballot or multiple-choice/approval selection in one atomic
+     * swap, adjusting only the affected histogram buckets or option counters.
+     *
+     * @param voter   The voting player
+     * @param options The new ranking or selection
+     * @return Whether the ballot was stored
+     */
+    public boolean changeVote(UUID voter, List<String> options) {
+        PollDefinition d = definition;
+        if (!d.isAllowVoteUndo()) return false;
+        if (d.getPollType().isRanked()) {
+            return castRankedVote(voter, options);
+        }
+        return castSelection(voter, options);
+    }
+
+    /**
+     * Sets a voter's full selection in a multiple-choice or approval poll. Replacing an earlier
+     * selection only touches the counters of options that were added or dropped. Dropping
+     * options requires vote undo to be allowed.
+     *
+     * @param voter     The voting player
+     * @param selection Every option the voter selects
+     * @return Whether the selection was stored
+     */
+    public boolean castSelection(UUID voter, Collection<String> selection) {
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) return false;
+        if (!getPollType().isMultiSelect()) return false;
+
+        int mask = encodeSelection(selection);
+        if (mask < 0) return false;
+        int previous;
+        tally.beginWrite();
+        try {
+            previous = storeSelection(voter, mask, false);
+            if (previous >= 0) {
+                applySelectionDiff(previous, mask, null);
+            }
+        } finally {
+            tally.endWrite();
+        }
+        if (previous < 0) return false;
+        markChanged();
+        getVotingLog().append(now, voter, mask, previous == 0 ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+        journalVote(PollJournal.SELECTIONS, voter, mask);
+        return true;
+    }
+
+    /**
+     * Atomically updates a voter's selection mask.
+     *
+     * @param merge Whether to add {@code mask} to the current selection instead of replacing it
+     * @return The previous mask (0 for a first selection), {@link #BALLOT_REJECTED} if nothing
+     *         would change or options would be dropped without vote undo, or
+     *         {@link #SELECTION_OVER_LIMIT} if the result exceeds {@link #getMaxVotesPerUser()}
+     */
+    private int storeSelection(UUID voter, int mask, boolean merge) {
+        PollDefinition d = definition;
+        int limit = d.getPollType() == PollType.MULTIPLE ? d.getMaxVotesPerUser() : 0;
+        while (true) {
+            int stored = tally.selections().get(voter);
+            int previous = stored == VoterTable.NO_VALUE ? 0 : stored;
+            int target = merge ? previous | mask : mask;
+            if (stored != VoterTable.NO_VALUE && target == previous) return BALLOT_REJECTED;
+            if (!d.isAllowVoteUndo() && (previous & ~target) != 0) return BALLOT_REJECTED;
+            if (limit > 0 && Integer.bitCount(target) > limit) {
+                return SELECTION_OVER_LIMIT;
+            }
+            boolean swapped = stored == VoterTable.NO_VALUE
+                    ? tally.selections().putIfAbsent(voter, target) == VoterTable.NO_VALUE
+                    : tally.selections().replace(voter, stored, target);
+            if (swapped) return previous;
+            // Lost a race with another update for this voter; retry against the new mask
+        }
+    }
+
+    /**
+     * Moves the counters from one selection to another in O(options), touching only the
+     * options whose bit differs.
+     *
+     * @param deltas Batch deltas to accumulate into, or null to update the counters directly
+     */
+    private void applySelectionDiff(int oldMask, int newMask, long[] deltas) {
+        for (int bits = oldMask & ~newMask; bits != 0; bits &= bits - 1) {
+            int ordinal = Integer.numberOfTrailingZeros(bits);
+            if (deltas == null) {
+                tally.getCounters().add(ordinal, -1);
+            } else {
+                deltas[ordinal]--;
+            }
+        }
+        for (int bits = newMask & ~oldMask; bits != 0; bits &= bits - 1) {
+            int ordinal = Integer.numberOfTrailingZeros(bits);
+            if (deltas == null) {
+                tally.getCounters().increment(ordinal);
+            } else {
+                deltas[ordinal]++;
+            }
+        }
+    }
+
+    /**
+     * @return The bit for an option ordinal, or -1 if it cannot be part of a selection
+     */
+    private static int selectionBit(int ordinal) {
+        return ordinal < 0 || ordinal >= MAX_SELECTION_OPTIONS ? -1 : 1 << ordinal;
+    }
+
+    /**
+     * @return The selection as a bitmask, or -1 if it is empty or has unknown options
+     */
+    private int encodeSelection(Collection<String> selection) {
+        if (selection.isEmpty()) return -1;
+        int mask = 0;
+        for (String option : selection) {
+            int bit = selectionBit(tally.ordinalOf(option));
+            if (bit < 0) return -1;
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    private List<String> decodeSelection(int mask) {
+        List<String> out = new ArrayList<>(Integer.bitCount(mask));
+        for (int bits = mask; bits != 0; bits &= bits - 1) {
+            out.add(tally.optionAt(Integer.numberOfTrailingZeros(bits)));
+        }
+        return out;
+    }
+
+    /**
+     * Stores a ranked ballot, replacing an earlier one only if vote undo is allowed.
+     *
+     * @return The replaced ballot code, {@link VoterTable#NO_VALUE} for a first ballot,
+     *         or {@link #BALLOT_REJECTED} if the voter may not vote again
+     */
+    private int storeBallot(UUID voter, int code) {
+        if (isAllowVoteUndo()) {
+            return tally.ballots().put(voter, code);
+        }
+        return tally.ballots().putIfAbsent(voter, code) == VoterTable.NO_VALUE ? VoterTable.NO_VALUE : BALLOT_REJECTED;
+    }
+
+    /**
+     * Stores a single-choice vote, replacing an earlier one only if {@code replace} is set.
+     *
+     * @return The previous ordinal, {@link VoterTable#NO_VALUE} for a first vote, or
+     *         {@link #BALLOT_REJECTED} if the voter already voted and may not change it
+     */
+    private int storeVote(UUID voter, int ordinal, boolean replace) {
+        if (replace) {
+            return tally.votes().put(voter, ordinal);
+        }
+        return tally.votes().putIfAbsent(voter, ordinal) == VoterTable.NO_VALUE ? VoterTable.NO_VALUE : BALLOT_REJECTED;
+    }
+
+    /**
+     * Applies many votes at once. The voting window and poll type are checked once for the
+     * whole batch, counter changes are summed locally and applied per option, and the
+     * cached results are invalidated a single time at the end. As with the single-vote
+     * methods, a voter may only replace or {@linkplain VoteRequest#undo(UUID) withdraw} an
+     * earlier vote if vote undo is allowed.
+     *
+     * @param requests Votes to apply, in order
+     * @return One result per request, in iteration order
+     */
+    public VoteResult[] castVotes(Collection<VoteRequest> requests) {
+        VoteResult[] out = new VoteResult[requests.size()];
+        long now = clock.currentTimeMillis();
+        if (!isOpen(now)) {
+            Arrays.fill(out, VoteResult.POLL_CLOSED);
+            return out;
+        }
+
+        PollDefinition d = definition;
+        PollType type = d.getPollType();
+        boolean changeable = d.isAllowVoteUndo();
+        boolean rankedPoll = type.isRanked();
+        long[] optionDeltas = rankedPoll ? null : new long[tally.size()];
+        long[] ballotDeltas = null;
+        if (rankedPoll && tally.size() <= BallotCodec.MAX_OPTIONS) {
+            ballotDeltas = new long[BallotCodec.forOptions(tally.size()).codeCount()];
+        }
+
+        long accepted = 0;
+        // Stored votes only reach the counters at the end, so the whole batch is one write
+        tally.beginWrite();
+        try {
+            int i = 0;
+            for (VoteRequest request : requests) {
+                VoteResult result;
+                if (request.isUndo()) {
+                    result = withdraw(request.getVoter(), now, changeable, optionDeltas, ballotDeltas);
+                } else if (request.isRanked() != rankedPoll || (request.isSelection() && !type.isMultiSelect())) {
+                    result = VoteResult.WRONG_POLL_TYPE;
+                } else if (type.isMultiSelect()) {
+                    boolean merge = !request.isSelection();
+                    int mask = merge
+                            ? selectionBit(tally.ordinalOf(request.getOption()))
+                            : encodeSelection(request.getSelection());
+                    int previous = mask < 0 ? SELECTION_OVER_LIMIT : storeSelection(request.getVoter(), mask, merge);
+                    if (previous == SELECTION_OVER_LIMIT) {
+                        result = VoteResult.INVALID_OPTION;
+                    } else if (previous == BALLOT_REJECTED) {
+                        result = VoteResult.ALREADY_VOTED;
+                    } else {
+                        int target = merge ? previous | mask : mask;
+                        applySelectionDiff(previous, target, optionDeltas);
+                        getVotingLog().append(now, request.getVoter(), target,
+                                previous == 0 ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+                        journalVote(PollJournal.SELECTIONS, request.getVoter(), target);
+                        result = VoteResult.ACCEPTED;
+                    }
+                } else if (rankedPoll) {
+                    int code = ballotDeltas == null ? -1 : encodeBallot(request.getRanking());
+                    int previous = code < 0 ? BALLOT_REJECTED : storeBallot(request.getVoter(), code);
+                    if (code < 0) {
+                        result = VoteResult.INVALID_OPTION;
+                    } else if (previous == BALLOT_REJECTED) {
+                        result = VoteResult.ALREADY_VOTED;
+                    } else {
+                        if (previous != VoterTable.NO_VALUE) {
+                            ballotDeltas[previous]--;
+                        }
+                        ballotDeltas[code]++;
+                        getVotingLog().append(now, request.getVoter(), code,
+                                previous == VoterTable.NO_VALUE ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+                        journalVote(PollJournal.BALLOTS, request.getVoter(), code);
+                        result = VoteResult.ACCEPTED;
+                    }
+                } else {
+                    int ordinal = tally.ordinalOf(request.getOption());
+                    int previous = ordinal < 0 ? VoterTable.NO_VALUE : storeVote(request.getVoter(), ordinal, changeable);
+                    if (ordinal < 0) {
+                        result = VoteResult.INVALID_OPTION;
+                    } else if (previous == BALLOT_REJECTED) {
+                        result = VoteResult.ALREADY_VOTED;
+                    } else {
+                        if (previous != ordinal) {
+                            if (previous != VoterTable.NO_VALUE) {
+                                optionDeltas[previous]--;
+                            }
+                            optionDeltas[ordinal]++;
+                            getVotingLog().append(now, request.getVoter(), ordinal,
+                                    previous == VoterTable.NO_VALUE ? VotingLog.Action.CAST : VotingLog.Action.CHANGE);
+                            journalVote(PollJournal.VOTES, request.getVoter(), ordinal);
+                        }
+                        result = VoteResult.ACCEPTED;
+                    }
+                }
+                if (result == VoteResult.ACCEPTED) {
+                    accepted++;
+                }
+                out[i++] = result;
+            }
+
+            if (accepted == 0) {
+                return out;
+            }
+            if (optionDeltas != null) {
+                for (int ordinal = 0; ordinal < optionDeltas.length; ordinal++) {
+                    if (optionDeltas[ordinal] != 0) {
+                        tally.getCounters().add(ordinal, optionDeltas[ordinal]);
+                    }
+                }
+            }
+            if (ballotDeltas != null) {
+                tally.rankedTally().addAll(ballotDeltas);
+            }
+        } finally {
+            tally.endWrite();
+        }
+        markChanged(accepted);
+        return out;
+    }
+
+    /**
+     * Withdraws a voter's entry for {@link #castVotes(Collection)}, accumulating the counter
+     * changes into its deltas.
+     */
+    private VoteResult withdraw(UUID voter, long now, boolean changeable, long[] optionDeltas, long[] ballotDeltas) {
+        PollType type = definition.getPollType();
+        byte kind = type.isRanked() ? PollJournal.BALLOTS : type.isMultiSelect() ? PollJournal.SELECTIONS : PollJournal.VOTES;
+        VoterTable table = type.isRanked() ? tally.ballots() : type.isMultiSelect() ? tally.selections() : tally.votes();
+        if (!changeable) {
+            return table.get(voter) == VoterTable.NO_VALUE ? VoteResult.NOT_VOTED : VoteResult.ALREADY_VOTED;
+        }
+        int removed = table.remove(voter);
+        if (removed == VoterTable.NO_VALUE) return VoteResult.NOT_VOTED;
+        if (type.isRanked()) {
+            // Ballots are only stored when there is a histogram for them
+            ballotDeltas[removed]--;
+        } else if (type.isMultiSelect()) {
+            applySelectionDiff(removed, 0, optionDeltas);
+        } else {
+            optionDeltas[removed]--;
+        }
+        getVotingLog().append(now, voter, removed, VotingLog.Action.UNDO);
+        journalVote(kind, voter, VoterTable.NO_VALUE);
+        return VoteResult.ACCEPTED;
+    }
+
+    /**
+     * Encodes a ranking as a ballot code.
+     *
+     * @param ranking Option names, most preferred first
+     * @return The ballot code, or -1 if the ranking has unknown or duplicate options
+     */
+    private int encodeBallot(List<String> ranking) {
+        if (tally.size() > BallotCodec.MAX_OPTIONS || ranking.size() > tally.size()) return -1;
+        byte[] ordinals = new byte[ranking.size()];
+        int seen = 0;
+        for (int i = 0; i < ordinals.length; i++) {
+            int ordinal = tally.ordinalOf(ranking.get(i));
+            if (ordinal < 0) return -1;
+            if ((seen & (1 << ordinal)) != 0) return -1; // Duplicate found
+            seen |= 1 << ordinal;
+            ordinals[i] = (byte) ordinal;
+        }
+        return BallotCodec.forOptions(tally.size()).encode(ordinals, ordinals.length);
+    }
+
+    public String calculateRankedWinner() {
+        if (!getPollType().isRanked()) return null;
+        return getResults().getRankedWinner();
+    }
+
+    /**
+     * @return A counter that increases every time this poll's votes change
+     */
+    @JsonIgnore
+    public long getVoteVersion() {
+        return tally.getVersion();
+    }
+
+    /**
+     * Returns the current results. When no vote has been cast since the last call this is
+     * a single volatile read; otherwise the snapshot is rebuilt once and shared.
+     *
+     * @return An immutable snapshot of the results
+     */
+    @JsonIgnore
+    public PollResultSnapshot getResults() {
+        return tally.getResults(definition.getPollType());
+    }
+
+    /**
+     * Records a change to the counters and invalidates the cached results.
+     */
+    protected void markChanged() {
+        tally.markChanged(1);
+        notifyChanged();
+    }
+
+    /**
+     * Records a batch of changes, publishing them with a single invalidation.
+     *
+     * @param changes How many votes changed
+     */
+    protected void markChanged(long changes) {
+        tally.markChanged(changes);
+        notifyChanged();
+    }
+
+    /**
+     * Recounts the votes from the stored votes, selections and ballots and compares them
+     * with the live counters. The recount runs in parallel on the common fork-join pool and
+     * voting carries on meanwhile, but this call blocks until it is done, so audit large
+     * polls off the main thread. Archived ballots are read back first.
+     *
+     * <p>A recount is only compared if no vote was in progress when it started and none
+     * began before it finished, since a vote lands in the voter tables before it reaches the
+     * counters; any drift it finds is then real. If votes never pause long enough the audit
+     * gives up and reports itself as not settled, without drift. Audits of one poll run one
+     * at a time, so two repairs never apply the same drift twice.
+     *
+     * @param repair Whether to subtract any drift found from the live counters
+     * @return What the recount found
+     * @throws IllegalStateException if the archived ballots could not be read
+     */
+    public PollAudit audit(boolean repair) {
+        synchronized (auditLock) {
+            long started = System.nanoTime();
+            TallyRecount counted = null;
+            long[] live = null;
+            for (int pass = 0; pass < MAX_AUDIT_PASSES; pass++) {
+                if (archived && !rehydrate()) {
+                    throw new IllegalStateException("Could not read the archived ballots of poll " + uuid);
+                }
+                long epoch = residencyEpoch;
+                long writes = tally.quiescentWrites();
+                if (writes < 0) {
+                    LockSupport.parkNanos(AUDIT_RETRY_NANOS);
+                    continue;
+                }
+                TallyRecount recount = tally.recount();
+                long[] liveNow = tally.liveCounts();
+                long[] liveHistogram = tally.liveHistogram();
+                // Archived mid-recount means the tables were emptied under us
+                if (tally.writesBegun() != writes || archived || residencyEpoch != epoch) {
+                    counted = recount;
+                    live = liveNow;
+                    LockSupport.parkNanos(AUDIT_RETRY_NANOS);
+                    continue;
+                }
+
+                long[] drift = drift(liveNow, recount.options);
+                long[] histogramDrift = drift(liveHistogram, recount.histogram);
+                boolean drifted = isNonZero(drift) || isNonZero(histogramDrift);
+                if (repair && drifted) {
+                    tally.correct(drift, histogramDrift);
+                    notifyChanged();
+                }
+                return new PollAudit(tally.getCounters().getOptions(), recount.options, liveNow, drift, histogramDrift,
+                        recount.voters, recount.invalid, true, repair && drifted, elapsedMillis(started));
+            }
+
+            int size = tally.size();
+            if (counted == null) {
+                counted = new TallyRecount(size, 0);
+                live = tally.liveCounts();
+            }
+            return new PollAudit(tally.getCounters().getOptions(), counted.options, live, new long[size], new long[0],
+                    counted.voters, counted.invalid, false, false, elapsedMillis(started));
+        }
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    private static long[] drift(long[] live, long[] counted) {
+        long[] out = new long[live.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = live[i] - counted[i];
+        }
+        return out;
+    }
+
+    private static boolean isNonZero(long[] values) {
+        for (long value : values) {
+            if (value != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a voter's entry, first reading archived ballots back from disk if needed.
+     */
+    private int lookup(VoterTable table, UUID voter) {
+        while (true) {
+            if (archived && !rehydrate()) return VoterTable.NO_VALUE;
+            long epoch = residencyEpoch;
+            int value = table.get(voter);
+            // A miss only counts if the ballots were not archived mid-read
+            if (value != VoterTable.NO_VALUE || (!archived && residencyEpoch == epoch)) return value;
+        }
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+
+    /**
+     * @return When the archived ballots were last read back, in epoch millis, or 0
+     */
+    @JsonIgnore
+    public long getLastRehydratedMillis() {
+        return lastRehydratedMillis;
+    }
+
+    /**
+     * Sets this poll's segment file and, if it was saved archived, restores the ranked
+     * histogram from the segment header.
+     */
+    void attachArchive(Path file) throws IOException {
+        synchronized (archiveLock) {
+            archiveFile = file;
+            if (archived && getPollType().isRanked() && tally.size() <= BallotCodec.MAX_OPTIONS) {
+                tally.rankedTally().addAll(PollArchiver.readHistogram(file));
+                markChanged();
+            }
+        }
+    }
+
+    /**
+     * Writes the ballots to {@code file} and drops them, and the poll's sounds and
+     * components, from memory. Only meant for polls that have ended.
+     *
+     * @return Whether the poll was archived
+     */
+    boolean archiveTo(Path file) throws IOException {
+        synchronized (archiveLock) {
+            if (archived) return false;
+            RankedTally ranked = tally.rankedTallyIfPresent();
+            PollArchiver.write(file, tally.size(), ranked == null ? new long[0] : ranked.snapshot(),
+                    tally.votes(), tally.ballots(), tally.selections());
+            archiveFile = file;
+            // Publish before clearing so readers that miss know to rehydrate
+            archived = true;
+            residencyEpoch++;
+            markEdited();
+            tally.votes().clear();
+            tally.ballots().clear();
+            tally.selections().clear();
+
+            presentation = null;
+
+            // Events are already on disk; the log is recreated small if anything is logged later
+            VotingLog log = votingLog;
+            if (log != null) {
+                log.flush();
+                votingLog = null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Restores what a binary snapshot saved onto a poll just constructed with the same
+     * options, before the poll is published; see {@link PollSnapshot}.
+     */
+    void restoreSnapshot(String uuid, PollDefinition definition, long forcedEndMillis,
+                         PollStatus lifecycleStatus, String cancellationReason, boolean archived) {
+        this.uuid = uuid;
+        this.definition = definition;
+        this.forcedEndMillis = forcedEndMillis;
+        this.lifecycleStatus = lifecycleStatus;
+        this.cancellationReason = cancellationReason;
+        this.archived = archived;
+    }
+
+    /**
+     * @return Whether the ballots are in memory
+     */
+    private boolean rehydrate() {
+        synchronized (archiveLock) {
+            if (!archived) return true;
+            Path file = archiveFile;
+            if (file == null) return false;
+            try {
+                PollArchiver.readBallots(file, tally.votes(), tally.ballots(), tally.selections());
+            } catch (IOException e) {
+                // Leave it archived; the tallies stay correct and reads report no vote
+                tally.votes().clear();
+                tally.ballots().clear();
+                tally.selections().clear();
+                return false;
+            }
+            lastRehydratedMillis = clock.currentTimeMillis();
+            archived = false;
+            residencyEpoch++;
+            markEdited();
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves the current date and time.
+     *
+     * @return The current LocalDateTime.
+     */
+    @JsonIgnore
+    protected LocalDateTime getCurrentDateTime() {
+        return clock.getCurrentDateTime();
+    }
+
+    /**
+     * Changes how the poll is counted. Voters see either the old type or the new one along
+     * with every other setting, never a mix.
+     */
+    public void setPollType(PollType type) {
+        updateDefinition(b -> b.pollType(type));
+        markChanged();
+    }
+
+    public PollType getPollType() {
+        return definition.getPollType();
+    }
+
+    public List<String> getRankedVotes(UUID playerUuid) {
+        int code = lookup(tally.ballots(), playerUuid);
+        if (code == VoterTable.NO_VALUE) return null;
+        return Collections.unmodifiableList(BallotCodec.forOptions(tally.size()).decode(code, tally.getCounters()));
+    }
+
+    @JsonProperty("userVotes")
+    private Map<UUID, String> getUserVotes() {
+        Map<UUID, String> out = new HashMap<>();
+        tally.votes().forEach((msb, lsb, ordinal) -> out.put(new UUID(msb, lsb), tally.optionAt(ordinal)));
+        return out;
+    }
+
+    @JsonProperty("userVotes")
+    private void setUserVotes(Map<UUID, String> saved) {
+        for (Map.Entry<UUID, String> entry : saved.entrySet()) {
+            int ordinal = tally.ordinalOf(entry.getValue());
+            if (ordinal >= 0) {
+                tally.votes().put(entry.getKey(), ordinal);
+            }
+        }
+    }
+
+    @JsonProperty("userSelections")
+    private Map<UUID, List<String>> getUserSelections() {
+        Map<UUID, List<String>> out = new HashMap<>();
+        tally.selections().forEach((msb, lsb, mask) -> out.put(new UUID(msb, lsb), decodeSelection(mask)));
+        return out;
+    }
+
+    @JsonProperty("userSelections")
+    private void setUserSelections(Map<UUID, List<String>> saved) {
+        for (Map.Entry<UUID, List<String>> entry : saved.entrySet()) {
+            int mask = encodeSelection(entry.getValue());
+            if (mask >= 0) {
+                tally.selections().put(entry.getKey(), mask);
+            }
+        }
+    }
+
+    @JsonProperty("userRankedVotes")
+    private Map<UUID, List<String>> getUserRankedVotes() {
+        Map<UUID, List<String>> out = new HashMap<>();
+        if (tally.ballots().isEmpty()) return out;
+        BallotCodec codec = BallotCodec.forOptions(tally.size());
+        tally.ballots().forEach((msb, lsb, code) -> out.put(new UUID(msb, lsb), codec.decode(code, tally.getCounters())));
+        return out;
+    }
+
+    @JsonProperty("userRankedVotes")
+    private void setUserRankedVotes(Map<UUID, List<String>> saved) {
+        for (Map.Entry<UUID, List<String>> entry : saved.entrySet()) {
+            int code = encodeBallot(entry.getValue());
+            if (code >= 0 && tally.ballots().put(entry.getKey(), code) == VoterTable.NO_VALUE) {
+                tally.rankedTally().add(code);
+            }
+        }
+        markChanged();
     }
 }
@@ -0,0 +1,490 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Central index of every poll on the server.
+ *
+ * <p>Polls are looked up by pollId in O(1). Secondary indexes by creator, tag, status and end
+ * time are kept in step on {@link #register}, {@link #unregister} and {@link #reindex}, so
+ * queries like "every active poll" or "every poll tagged event" only touch matching polls.
+ *
+ * <p>Status depends on the clock. {@link #advance(long)} pops only the polls whose start or
+ * end time has passed off two sorted time indexes, so it costs nothing when no poll is due.
+ * Status queries advance first.
+ *
+ * <p>IDs are also kept in a {@link PollIdIndex} trie, so tab completion and commands that
+ * take an ID prefix do not scan every poll.
+ *
+ * <p>Polls are saved in one file per creator. Every registered poll tells the registry when
+ * it changes, which flags its creator once until their next save, so a save only rewrites
+ * the files that changed without looking at the polls that did not. The
+ * {@linkplain PollObject#getChangeStamp() change stamp} each poll was saved at catches
+ * changes that race the save.
+ */
+public class PollRegistry {
+
+    private final Map<String, Registration> byId = new ConcurrentHashMap<>();
+    private final PollIdIndex idIndex = new PollIdIndex();
+    // Creators are kept even with no polls left, so their save file is rewritten empty
+    private final Map<UUID, Set<String>> byCreator = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byTag = new ConcurrentHashMap<>();
+    private final Map<PollStatus, Set<String>> byStatus = new EnumMap<>(PollStatus.class);
+    // Scheduled polls by start time, and polls that have not ended by effective end time
+    private final ConcurrentSkipListSet<TimeKey> pendingStarts = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<TimeKey> pendingEnds = new ConcurrentSkipListSet<>();
+    // Guards status and time index changes so a poll is never in two status sets
+    private final Object statusLock = new Object();
+    // Creators whose polls changed since their file was last written
+    private final Set<UUID> dirtyCreators = ConcurrentHashMap.newKeySet();
+
+    public PollRegistry() {
+        for (PollStatus status : PollStatus.values()) {
+            byStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Adds a poll to every index.
+     *
+     * @param pollId  The poll's ID, unique across all creators
+     * @param creator The player who created the poll
+     * @param poll    The poll
+     * @return False if another poll already uses that ID
+     */
+    public boolean register(String pollId, UUID creator, PollObject poll) {
+        Registration reg = new Registration(pollId, creator, poll);
+        if (byId.putIfAbsent(pollId, reg) != null) return false;
+        idIndex.add(pollId);
+
+        byCreator.computeIfAbsent(creator, k -> ConcurrentHashMap.newKeySet()).add(pollId);
+        dirtyCreators.add(creator);
+        poll.setChangeListener(() -> changed(reg));
+        indexTags(reg);
+        synchronized (statusLock) {
+            indexTimes(reg, poll.getClock().currentTimeMillis());
+        }
+        return true;
+    }
+
+    /**
+     * Removes a poll from every index.
+     *
+     * @return The removed poll, or null if there was none
+     */
+    public PollObject unregister(String pollId) {
+        Registration reg = byId.remove(pollId);
+        if (reg == null) return null;
+        idIndex.remove(pollId);
+        reg.poll.setChangeListener(null);
+
+        Set<String> creatorPolls = byCreator.get(reg.creator);
+        if (creatorPolls != null) {
+            creatorPolls.remove(pollId);
+        }
+        dirtyCreators.add(reg.creator);
+        unindexTags(reg);
+        synchronized (statusLock) {
+            unindexTimes(reg);
+        }
+        return reg.poll;
+    }
+
+    /**
+     * Re-reads a poll's times and tags, e.g. after it was force-ended.
+     */
+    public void reindex(String pollId) {
+        Registration reg = byId.get(pollId);
+        if (reg == null) return;
+        unindexTags(reg);
+        indexTags(reg);
+        synchronized (statusLock) {
+            unindexTimes(reg);
+            indexTimes(reg, reg.poll.getClock().currentTimeMillis());
+        }
+    }
+
+    public boolean addTag(String pollId, String tag) {
+        Registration reg = byId.get(pollId);
+        if (reg == null || !reg.poll.addTag(tag)) return false;
+        reindex(pollId);
+        return true;
+    }
+
+    public boolean removeTag(String pollId, String tag) {
+        Registration reg = byId.get(pollId);
+        if (reg == null || !reg.poll.removeTag(tag)) return false;
+        reindex(pollId);
+        return true;
+    }
+
+    public PollObject get(String pollId) {
+        Registration reg = byId.get(pollId);
+        return reg == null ? null : reg.poll;
+    }
+
+    public boolean contains(String pollId) {
+        return byId.containsKey(pollId);
+    }
+
+    /**
+     * Resolves what a player typed as a poll ID: the exact ID, or a prefix of exactly one ID,
+     * ignoring case.
+     *
+     * @return The poll ID, or null if nothing or more than one poll matches
+     */
+    public String resolveId(String typed) {
+        if (byId.containsKey(typed)) return typed;
+        String pollId = idIndex.resolve(typed);
+        // The index is updated just after byId, so double-check a poll being removed
+        return pollId != null && byId.containsKey(pollId) ? pollId : null;
+    }
+
+    /**
+     * @param prefix A prefix, matched ignoring case
+     * @param limit  The most IDs to return
+     * @return Poll IDs starting with the prefix, in character order
+     */
+    public List<String> findIdsByPrefix(String prefix, int limit) {
+        return idIndex.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * @param filter Which matching IDs to keep, e.g. by status or creator
+     * @see #findIdsByPrefix(String, int)
+     */
+    public List<String> findIdsByPrefix(String prefix, int limit, Predicate<String> filter) {
+        return idIndex.findByPrefix(prefix, limit, filter);
+    }
+
+    /**
+     * @return The creator of a poll, or null if it is not registered
+     */
+    public UUID getCreator(String pollId) {
+        Registration reg = byId.get(pollId);
+        return reg == null ? null : reg.creator;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Set<String> getPollIds() {
+        return Collections.unmodifiableSet(byId.keySet());
+    }
+
+    /**
+     * @return Every player that has created a poll since startup or load
+     */
+    public Set<UUID> getCreators() {
+        return Collections.unmodifiableSet(byCreator.keySet());
+    }
+
+    /**
+     * @return A new map of pollId to poll for one creator
+     */
+    public Map<String, PollObject> getByCreator(UUID creator) {
+        return resolve(byCreator.get(creator));
+    }
+
+    /**
+     * Returns every creator whose save file is out of date and clears their flags: creators
+     * who gained or lost a poll, and creators of a poll that changed since it was last
+     * saved. Only flagged creators are visited. Pass the stamps the polls are then saved at
+     * to {@link #markSaved(Map)}, or hand the creator back to {@link #markDirty(UUID)} if
+     * writing the file failed.
+     */
+    public Set<UUID> takeDirtyCreators() {
+        Set<UUID> out = new HashSet<>();
+        for (UUID creator : dirtyCreators) {
+            if (dirtyCreators.remove(creator)) {
+                out.add(creator);
+                // Changes from here on flag the creator again
+                rearm(creator);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Records that polls were saved as of the given change stamps. A poll that changed
+     * after its stamp was read stays dirty.
+     *
+     * @param stamps pollId to the change stamp read before the poll was serialized
+     */
+    public void markSaved(Map<String, Long> stamps) {
+        for (Map.Entry<String, Long> entry : stamps.entrySet()) {
+            Registration reg = byId.get(entry.getKey());
+            if (reg == null) continue;
+            reg.savedStamp = entry.getValue();
+            // Changed after the stamp was read but before the creator was re-armed
+            if (reg.poll.getChangeStamp() != reg.savedStamp) {
+                dirtyCreators.add(reg.creator);
+            }
+        }
+    }
+
+    /**
+     * Records that a creator's polls were just loaded from their save file as of the given
+     * change stamps, so registering them does not count as a change.
+     */
+    public void markLoaded(UUID creator, Map<String, Long> stamps) {
+        dirtyCreators.remove(creator);
+        rearm(creator);
+        markSaved(stamps);
+    }
+
+    // Runs on every vote, so only the first change after a save touches the shared set
+    private void changed(Registration reg) {
+        if (!reg.queued) {
+            reg.queued = true;
+            dirtyCreators.add(reg.creator);
+        }
+    }
+
+    private void rearm(UUID creator) {
+        Set<String> pollIds = byCreator.get(creator);
+        if (pollIds == null) return;
+        for (String pollId : pollIds) {
+            Registration reg = byId.get(pollId);
+            if (reg != null) {
+                reg.queued = false;
+            }
+        }
+    }
+
+    /**
+     * Flags a creator's save file as out of date, e.g. after writing it failed.
+     */
+    public void markDirty(UUID creator) {
+        dirtyCreators.add(creator);
+    }
+
+    /**
+     * @return A new map of pollId to poll for one tag, ignoring case
+     */
+    public Map<String, PollObject> getByTag(String tag) {
+        return resolve(byTag.get(tag.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * @param nowMillis The current time in epoch millis
+     * @return A new map of pollId to poll for every poll with that status
+     */
+    public Map<String, PollObject> getByStatus(PollStatus status, long nowMillis) {
+        advance(nowMillis);
+        return resolve(byStatus.get(status));
+    }
+
+    /**
+     * @return The status of a poll as of the last {@link #advance(long)}, or null if it is not registered
+     */
+    public PollStatus getStatus(String pollId) {
+        Registration reg = byId.get(pollId);
+        return reg == null ? null : reg.status;
+    }
+
+    /**
+     * @param millis A time in epoch millis
+     * @return IDs of polls that have not ended yet but will by {@code millis}, soonest first
+     */
+    public List<String> getEndingBefore(long millis) {
+        List<String> out = new ArrayList<>();
+        for (TimeKey key : pendingEnds.headSet(new TimeKey(millis, ""))) {
+            out.add(key.pollId);
+        }
+        return out;
+    }
+
+    /**
+     * @return When the next scheduled poll starts or active poll ends, or {@link Long#MAX_VALUE}
+     */
+    public long nextTransitionMillis() {
+        long next = Long.MAX_VALUE;
+        TimeKey start = firstOrNull(pendingStarts);
+        if (start != null) next = start.millis;
+        TimeKey end = firstOrNull(pendingEnds);
+        if (end != null) next = Math.min(next, end.millis);
+        return next;
+    }
+
+    /**
+     * Moves every poll whose start or end time has passed to its new status.
+     *
+     * @param nowMillis The current time in epoch millis
+     * @return IDs of the polls whose status changed
+     */
+    public List<String> advance(long nowMillis) {
+        List<String> changed = new ArrayList<>();
+        synchronized (statusLock) {
+            TimeKey key;
+            // Polls start and end strictly after their time, matching PollObject.hasStarted/hasEnded
+            while ((key = firstOrNull(pendingStarts)) != null && key.millis < nowMillis) {
+                pendingStarts.remove(key);
+                Registration reg = byId.get(key.pollId);
+                if (reg != null && reg.status == PollStatus.SCHEDULED) {
+                    setStatus(reg, PollStatus.ACTIVE);
+                    changed.add(key.pollId);
+                }
+            }
+            while ((key = firstOrNull(pendingEnds)) != null && key.millis < nowMillis) {
+                pendingEnds.remove(key);
+                Registration reg = byId.get(key.pollId);
+                if (reg != null && reg.status != PollStatus.ENDED && reg.status != PollStatus.CANCELLED) {
+                    setStatus(reg, PollStatus.ENDED);
+                    reg.endKey = null;
+                    if (!changed.contains(key.pollId)) {
+                        changed.add(key.pollId);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private Map<String, PollObject> resolve(Set<String> ids) {
+        Map<String, PollObject> out = new LinkedHashMap<>();
+        if (ids == null) return out;
+        for (String id : ids) {
+            Registration reg = byId.get(id);
+            if (reg != null) {
+                out.put(id, reg.poll);
+            }
+        }
+        return out;
+    }
+
+    private void indexTags(Registration reg) {
+        Set<String> tags = new HashSet<>();
+        for (String tag : reg.poll.getTags()) {
+            tags.add(tag.toLowerCase(Locale.ROOT));
+        }
+        for (String tag : tags) {
+            byTag.computeIfAbsent(tag, k -> ConcurrentHashMap.newKeySet()).add(reg.pollId);
+        }
+        reg.tags = tags;
+    }
+
+    private void unindexTags(Registration reg) {
+        for (String tag : reg.tags) {
+            Set<String> ids = byTag.get(tag);
+            if (ids != null) {
+                ids.remove(reg.pollId);
+            }
+        }
+        reg.tags = Collections.emptySet();
+    }
+
+    // Callers hold statusLock
+    private void indexTimes(Registration reg, long nowMillis) {
+        PollObject poll = reg.poll;
+        if (poll.getLifecycleStatus() == PollStatus.CANCELLED) {
+            setStatus(reg, PollStatus.CANCELLED);
+            return;
+        }
+        if (poll.hasEnded(nowMillis)) {
+            setStatus(reg, PollStatus.ENDED);
+            return;
+        }
+        reg.endKey = new TimeKey(poll.getEffectiveEndMillis(), reg.pollId);
+        pendingEnds.add(reg.endKey);
+        if (poll.hasStarted(nowMillis)) {
+            setStatus(reg, PollStatus.ACTIVE);
+        } else {
+            reg.startKey = new TimeKey(poll.getStartMillis(), reg.pollId);
+            pendingStarts.add(reg.startKey);
+            setStatus(reg, PollStatus.SCHEDULED);
+        }
+    }
+
+    // Callers hold statusLock
+    private void unindexTimes(Registration reg) {
+        if (reg.startKey != null) {
+            pendingStarts.remove(reg.startKey);
+            reg.startKey = null;
+        }
+        if (reg.endKey != null) {
+            pendingEnds.remove(reg.endKey);
+            reg.endKey = null;
+        }
+        if (reg.status != null) {
+            byStatus.get(reg.status).remove(reg.pollId);
+            reg.status = null;
+        }
+    }
+
+    private void setStatus(Registration reg, PollStatus status) {
+        if (reg.status != null) {
+            byStatus.get(reg.status).remove(reg.pollId);
+        }
+        byStatus.get(status).add(reg.pollId);
+        reg.status = status;
+    }
+
+    private static TimeKey firstOrNull(ConcurrentSkipListSet<TimeKey> set) {
+        return set.isEmpty() ? null : set.ceiling(TimeKey.MIN);
+    }
+
+    private static final class Registration {
+        private final String pollId;
+        private final UUID creator;
+        private final PollObject poll;
+        private volatile Set<String> tags = Collections.emptySet();
+        private volatile PollStatus status;
+        // The poll's change stamp when it was last saved; -1 if it never was
+        private volatile long savedStamp = -1;
+        // Whether a change already flagged the creator since their last save; starts set
+        // since registering flags them
+        private volatile boolean queued = true;
+        private TimeKey startKey;
+        private TimeKey endKey;
+
+        Registration(String pollId, UUID creator, PollObject poll) {
+            this.pollId = pollId;
+            this.creator = creator;
+            this.poll = poll;
+        }
+    }
+
+    private static final class TimeKey implements Comparable<TimeKey> {
+        static final TimeKey MIN = new TimeKey(Long.MIN_VALUE, "");
+
+        private final long millis;
+        private final String pollId;
+
+        TimeKey(long millis, String pollId) {
+            this.millis = millis;
+            this.pollId = pollId;
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(millis, other.millis);
+            return byTime != 0 ? byTime : pollId.compareTo(other.pollId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TimeKey)) return false;
+            TimeKey other = (TimeKey) o;
+            return millis == other.millis && pollId.equals(other.pollId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(millis) * 31 + pollId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of a poll's results at a given vote version.
+ *
+ * <p>Built by {@link PollObject#getResults()} only when votes have changed since the last
+ * snapshot, then shared by every reader until the next vote. Views that only some readers
+ * need, such as the name map and the ranking by votes, are built on first use.
+ */
+public final class PollResultSnapshot {
+
+    private final long version;
+    private final List<String> options;
+    private final long[] counts;
+    private final long totalVotes;
+    private volatile Map<String, Integer> countMap;
+    // Ordinals by descending count, ties in option order
+    private volatile int[] ranking;
+    private final RankedTally.Result rankedResult;
+    private final int rankedWinner;
+    private final long rankedBallots;
+    private final long[] bordaScores;
+
+    PollResultSnapshot(long version, List<String> options, long[] counts, RankedTally.Result rankedResult,
+                       int rankedWinner, long rankedBallots, long[] bordaScores) {
+        this.version = version;
+        this.options = options;
+        this.counts = counts;
+        this.rankedResult = rankedResult;
+        this.rankedWinner = rankedWinner;
+        this.rankedBallots = rankedBallots;
+        this.bordaScores = bordaScores;
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.totalVotes = total;
+    }
+
+    /**
+     * @return The vote version this snapshot was built from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public long getCount(int ordinal) {
+        return counts[ordinal];
+    }
+
+    /**
+     * @return Total single-choice votes across all options
+     */
+    public long getTotalVotes() {
+        return totalVotes;
+    }
+
+    /**
+     * @param ordinal An option ordinal
+     * @return The option's share of all votes, from 0 to 100
+     */
+    public double getPercentage(int ordinal) {
+        return totalVotes == 0 ? 0.0 : counts[ordinal] * 100.0 / totalVotes;
+    }
+
+    /**
+     * @return A read-only map of option name to vote count, in option order
+     */
+    public Map<String, Integer> asMap() {
+        Map<String, Integer> map = countMap;
+        if (map == null) {
+            Map<String, Integer> built = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                built.put(options.get(i), (int) counts[i]);
+            }
+            map = Collections.unmodifiableMap(built);
+            countMap = map;
+        }
+        return map;
+    }
+
+    /**
+     * The {@code k} options with the most votes, found without sorting every option.
+     *
+     * @return Up to {@code k} ordinals, most votes first, ties in option order
+     */
+    public int[] topOrdinals(int k) {
+        k = Math.min(Math.max(k, 0), counts.length);
+        int[] sorted = ranking;
+        if (sorted != null) {
+            return Arrays.copyOf(sorted, k);
+        }
+        // Insertion into a k-slot buffer; only options that beat the current k-th move anything
+        int[] top = new int[k];
+        int filled = 0;
+        for (int ordinal = 0; ordinal < counts.length && k > 0; ordinal++) {
+            if (filled == k && !ranksBefore(ordinal, top[k - 1])) continue;
+            int at = filled == k ? k - 1 : filled++;
+            while (at > 0 && ranksBefore(ordinal, top[at - 1])) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = ordinal;
+        }
+        return top;
+    }
+
+    /**
+     * One page of the options ordered by votes, for rendering long tallies a page at a time.
+     *
+     * @param page     The page, from 0
+     * @param pageSize Options per page
+     * @return The page's ordinals, most votes first; empty past the last page
+     */
+    public int[] ordinalsByVotes(int page, int pageSize) {
+        int from = page * pageSize;
+        if (page < 0 || pageSize <= 0 || from >= counts.length) return new int[0];
+        int to = Math.min(counts.length, from + pageSize);
+        if (ranking == null && to * 8 < counts.length) {
+            // Early pages of a long tally; cheaper than ranking every option
+            return Arrays.copyOfRange(topOrdinals(to), from, to);
+        }
+        return Arrays.copyOfRange(ranking(), from, to);
+    }
+
+    /**
+     * @return How many pages of {@code pageSize} options the tally has
+     */
+    public int pageCount(int pageSize) {
+        return pageSize <= 0 ? 0 : (counts.length + pageSize - 1) / pageSize;
+    }
+
+    private int[] ranking() {
+        int[] sorted = ranking;
+        if (sorted == null) {
+            Integer[] order = new Integer[counts.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> ranksBefore(a, b) ? -1 : ranksBefore(b, a) ? 1 : 0);
+            sorted = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = order[i];
+            }
+            ranking = sorted;
+        }
+        return sorted;
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        return counts[a] != counts[b] ? counts[a] > counts[b] : a < b;
+    }
+
+    /**
+     * @return The instant-runoff outcome, or null if this is not a {@link PollType#RANKED} poll
+     */
+    public RankedTally.Result getRankedResult() {
+        return rankedResult;
+    }
+
+    /**
+     * @return Number of ranked ballots, or 0 if this is not a ranked poll
+     */
+    public long getRankedBallots() {
+        return rankedBallots;
+    }
+
+    /**
+     * @param ordinal An option ordinal
+     * @return The option's Borda score, or 0 if this is not a {@link PollType#BORDA} poll
+     */
+    public long getBordaScore(int ordinal) {
+        return bordaScores == null ? 0 : bordaScores[ordinal];
+    }
+
+    /**
+     * @return The ranked winner under the poll's counting method, or null if there is none
+     */
+    public String getRankedWinner() {
+        return rankedWinner < 0 ? null : options.get(rankedWinner);
+    }
+}
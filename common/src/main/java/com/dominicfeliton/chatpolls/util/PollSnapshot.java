@@ -0,0 +1,433 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A binary save file holding one player's polls, as an alternative to the JSON save files.
+ *
+ * <p>Every string (titles, options, tags, statuses) is stored once in a string table and
+ * referred to by index. Voters are stored as their raw 16 UUID bytes and votes as the option
+ * ordinals, selection masks and {@link BallotCodec} codes the poll keeps in memory, so a vote
+ * costs 20 bytes however long its options are. Times are saved as epoch millis, including a
+ * forced end.
+ *
+ * <p>Layout: magic, format version, creator UUID, the string table as a count followed by
+ * length-prefixed UTF-8 strings, then the poll count and each poll as its ID, its body length
+ * and its body. Opening a file reads it into the heap and only parses the string offsets and
+ * the poll index; strings are decoded on first use and each poll's body only when it is
+ * {@linkplain #decode(int, Factory) decoded}. The file is not mapped, since a mapping cannot
+ * be released on demand and would keep the next save from replacing the file on Windows.
+ */
+public final class PollSnapshot {
+
+    private static final int MAGIC = 0x43485053; // "CHPS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int NONE = -1;
+
+    // Flag bits of the boolean settings
+    private static final int ACTIVE = 1;
+    private static final int ANONYMOUS_VOTING = 1 << 1;
+    private static final int ALLOW_MULTIPLE_CHOICES = 1 << 2;
+    private static final int AUTO_TIE_BREAKER = 1 << 3;
+    private static final int SHOW_RESULTS_DURING_POLL = 1 << 4;
+    private static final int ALLOW_VOTE_UNDO = 1 << 5;
+    private static final int SEND_EXPIRATION_WARNING = 1 << 6;
+    private static final int ARCHIVED = 1 << 7;
+
+    /**
+     * Constructs the platform's poll class for a poll being decoded.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        PollObject create(String title, List<String> options, String description);
+    }
+
+    private final ByteBuffer buffer;
+    private final UUID creator;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final int[] pollIds;
+    private final int[] bodyOffsets;
+
+    private PollSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a poll snapshot");
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        this.creator = new UUID(buffer.getLong(), buffer.getLong());
+
+        this.stringOffsets = new int[count(buffer, 4)];
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = buffer.position();
+            buffer.position(buffer.position() + 4 + length(buffer, buffer.getInt(buffer.position()), 4));
+        }
+        this.strings = new String[stringOffsets.length];
+
+        int pollCount = count(buffer, 8);
+        this.pollIds = new int[pollCount];
+        this.bodyOffsets = new int[pollCount];
+        for (int i = 0; i < pollCount; i++) {
+            pollIds[i] = buffer.getInt();
+            if (pollIds[i] < 0 || pollIds[i] >= stringOffsets.length) {
+                throw new IllegalArgumentException("Bad poll ID index " + pollIds[i]);
+            }
+            int length = length(buffer, buffer.getInt(), 0);
+            bodyOffsets[i] = buffer.position();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * Reads a snapshot and its index. The file is closed on return.
+     *
+     * @throws IOException If the file cannot be read or is not a complete snapshot
+     */
+    public static PollSnapshot open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) throw new IOException("Poll snapshot too large: " + file);
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full or the file turns out shorter than its size
+            }
+            buffer.flip();
+        }
+        try {
+            return new PollSnapshot(buffer);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt poll snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The player whose polls the snapshot holds
+     */
+    public UUID getCreator() {
+        return creator;
+    }
+
+    public int size() {
+        return pollIds.length;
+    }
+
+    public String getPollId(int index) {
+        return string(pollIds[index]);
+    }
+
+    /**
+     * Builds the poll at an index with its settings, times, lifecycle, counters and voters.
+     *
+     * @throws IOException If the poll's body is corrupt
+     */
+    public PollObject decode(int index, Factory factory) throws IOException {
+        try {
+            return decodeBody(buffer.duplicate().position(bodyOffsets[index]), factory);
+        } catch (RuntimeException e) {
+            // Bad indexes, counts and names alike; getPollId was checked by open
+            throw new IOException("Corrupt poll " + getPollId(index) + " in snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private PollObject decodeBody(ByteBuffer in, Factory factory) {
+        String uuid = string(in.getInt());
+        String title = string(in.getInt());
+        String description = string(in.getInt());
+        String creatorUuid = string(in.getInt());
+        String templateUuid = string(in.getInt());
+        PollType pollType = PollType.valueOf(string(in.getInt()));
+        String lifecycle = string(in.getInt());
+        String cancellationReason = string(in.getInt());
+        long startMillis = in.getLong();
+        long endMillis = in.getLong();
+        long creationMillis = in.getLong();
+        long forcedEndMillis = in.getLong();
+        int flags = in.getInt();
+        int maxVotesPerUser = in.getInt();
+
+        String[] options = new String[count(in, 12)];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = string(in.getInt());
+        }
+        long[] counters = new long[options.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.getLong();
+        }
+        List<Integer> thresholds = new ArrayList<>();
+        for (int i = count(in, 4); i > 0; i--) {
+            thresholds.add(in.getInt());
+        }
+        List<String> tags = strings(in);
+        List<String> requiredPerms = strings(in);
+        List<String> recipients = strings(in);
+
+        PollObject poll = factory.create(title, List.of(options), description);
+        // The poll's own interned options
+        PollDefinition definition = PollDefinition.builder(title, poll.getOptions(), description,
+                        Clock.toLocalDateTime(startMillis), Clock.toLocalDateTime(endMillis))
+                .creationDate(Clock.toLocalDateTime(creationMillis))
+                .pollType(pollType)
+                .active((flags & ACTIVE) != 0)
+                .anonymousVoting((flags & ANONYMOUS_VOTING) != 0)
+                .allowMultipleChoices((flags & ALLOW_MULTIPLE_CHOICES) != 0)
+                .autoTieBreaker((flags & AUTO_TIE_BREAKER) != 0)
+                .showResultsDuringPoll((flags & SHOW_RESULTS_DURING_POLL) != 0)
+                .allowVoteUndo((flags & ALLOW_VOTE_UNDO) != 0)
+                .sendExpirationWarning((flags & SEND_EXPIRATION_WARNING) != 0)
+                .maxVotesPerUser(maxVotesPerUser)
+                .warningThresholdsInSeconds(thresholds)
+                .templateUuid(templateUuid)
+                .creatorUuid(creatorUuid)
+                .tags(tags)
+                .requiredPerms(requiredPerms)
+                .recipients(recipients)
+                .build();
+        poll.restoreSnapshot(uuid, definition, forcedEndMillis,
+                lifecycle == null ? null : PollStatus.valueOf(lifecycle), cancellationReason, (flags & ARCHIVED) != 0);
+
+        PollTally tally = poll.tally;
+        for (int i = 0; i < counters.length; i++) {
+            tally.getCounters().reset(i, counters[i]);
+        }
+        readTable(in, tally.votes(), options.length);
+        int ballots = readTable(in, tally.ballots(), tally.ballotCodeCount());
+        readTable(in, tally.selections(), 1L << Math.min(options.length, PollObject.MAX_SELECTION_OPTIONS));
+        if (ballots > 0) {
+            RankedTally ranked = tally.rankedTally();
+            tally.ballots().forEach((msb, lsb, code) -> ranked.add(code));
+        }
+        poll.markChanged();
+        return poll;
+    }
+
+    /**
+     * Reads voters straight from the mapping, skipping values the poll has no room for.
+     *
+     * @param limit Values must be below this
+     * @return Voters stored
+     */
+    private static int readTable(ByteBuffer in, VoterTable table, long limit) {
+        int count = count(in, 20);
+        int stored = 0;
+        for (int i = 0; i < count; i++) {
+            long msb = in.getLong();
+            long lsb = in.getLong();
+            int value = in.getInt();
+            if (value >= 0 && value < limit) {
+                table.put(msb, lsb, value);
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    private List<String> strings(ByteBuffer in) {
+        String[] out = new String[count(in, 4)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = string(in.getInt());
+        }
+        return List.of(out);
+    }
+
+    /**
+     * Reads a count of entries that follow.
+     *
+     * @param entryBytes The smallest an entry can be
+     * @throws IllegalArgumentException if that many entries cannot fit in what is left
+     */
+    private static int count(ByteBuffer in, int entryBytes) {
+        int count = in.getInt();
+        if (count < 0 || (entryBytes > 0 && count > in.remaining() / entryBytes)) {
+            throw new IllegalArgumentException("Bad count " + count + " at " + (in.position() - 4));
+        }
+        return count;
+    }
+
+    /**
+     * @param skip Bytes between the current position and the data the length covers
+     * @throws IllegalArgumentException if the data does not fit in what is left
+     */
+    private static int length(ByteBuffer in, int length, int skip) {
+        if (length < 0 || length > in.remaining() - skip) {
+            throw new IllegalArgumentException("Bad length " + length + " at " + in.position());
+        }
+        return length;
+    }
+
+    private String string(int index) {
+        if (index == NONE) return null;
+        String cached = strings[index];
+        if (cached != null) return cached;
+        int offset = stringOffsets[index];
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.duplicate().position(offset + 4).get(bytes);
+        // Racing decoders build equal strings
+        String decoded = new String(bytes, StandardCharsets.UTF_8);
+        strings[index] = decoded;
+        return decoded;
+    }
+
+    // ----------------------------------------------------------------------
+    //  Writing
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return Whether a poll can be saved in this format. Rewards are not, since they are
+     *         platform objects.
+     */
+    public static boolean supports(PollObject poll) {
+        return poll.getDefinition().getRewards().isEmpty();
+    }
+
+    /**
+     * Writes a player's polls as a snapshot.
+     *
+     * @throws IOException If writing fails or a poll is not {@linkplain #supports supported}
+     */
+    public static void write(OutputStream out, UUID creator, Map<String, ? extends PollObject> polls) throws IOException {
+        StringTable table = new StringTable();
+        List<Integer> ids = new ArrayList<>(polls.size());
+        List<byte[]> bodies = new ArrayList<>(polls.size());
+        for (Map.Entry<String, ? extends PollObject> entry : polls.entrySet()) {
+            if (!supports(entry.getValue())) {
+                throw new IOException("Poll " + entry.getKey() + " has rewards, which snapshots cannot hold");
+            }
+            ids.add(table.indexOf(entry.getKey()));
+            bodies.add(encodeBody(entry.getValue(), table));
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(creator.getMostSignificantBits());
+        data.writeLong(creator.getLeastSignificantBits());
+        data.writeInt(table.strings.size());
+        for (String string : table.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        data.writeInt(bodies.size());
+        for (int i = 0; i < bodies.size(); i++) {
+            data.writeInt(ids.get(i));
+            data.writeInt(bodies.get(i).length);
+            data.write(bodies.get(i));
+        }
+        data.flush();
+    }
+
+    private static byte[] encodeBody(PollObject poll, StringTable table) throws IOException {
+        // One definition read, so the settings are consistent
+        PollDefinition d = poll.getDefinition();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(table.indexOf(poll.getUuid()));
+        out.writeInt(table.indexOf(d.getTitle()));
+        out.writeInt(table.indexOf(d.getDescription()));
+        out.writeInt(table.indexOf(d.getCreatorUuid()));
+        out.writeInt(table.indexOf(d.getTemplateUuid()));
+        out.writeInt(table.indexOf(d.getPollType().name()));
+        PollStatus lifecycle = poll.getLifecycleStatus();
+        out.writeInt(table.indexOf(lifecycle == null ? null : lifecycle.name()));
+        out.writeInt(table.indexOf(poll.getCancellationReason()));
+        out.writeLong(d.getStartMillis());
+        out.writeLong(d.getEndMillis());
+        out.writeLong(Clock.toEpochMillis(d.getCreationDate()));
+        out.writeLong(poll.getForcedEndMillis());
+        out.writeInt((d.isActive() ? ACTIVE : 0)
+                | (d.isAnonymousVoting() ? ANONYMOUS_VOTING : 0)
+                | (d.isAllowMultipleChoices() ? ALLOW_MULTIPLE_CHOICES : 0)
+                | (d.isAutoTieBreaker() ? AUTO_TIE_BREAKER : 0)
+                | (d.isShowResultsDuringPoll() ? SHOW_RESULTS_DURING_POLL : 0)
+                | (d.isAllowVoteUndo() ? ALLOW_VOTE_UNDO : 0)
+                | (d.isSendExpirationWarning() ? SEND_EXPIRATION_WARNING : 0)
+                | (poll.isArchived() ? ARCHIVED : 0));
+        out.writeInt(d.getMaxVotesPerUser());
+
+        List<String> options = d.getOptions();
+        out.writeInt(options.size());
+        for (String option : options) {
+            out.writeInt(table.indexOf(option));
+        }
+        OptionTally counters = poll.tally.getCounters();
+        for (int i = 0; i < options.size(); i++) {
+            out.writeLong(counters.count(i));
+        }
+        out.writeInt(d.getWarningThresholdsInSeconds().size());
+        for (int threshold : d.getWarningThresholdsInSeconds()) {
+            out.writeInt(threshold);
+        }
+        writeStrings(out, d.getTags(), table);
+        writeStrings(out, d.getRequiredPerms(), table);
+        writeStrings(out, d.getRecipients(), table);
+
+        writeTable(out, poll.tally.votes());
+        writeTable(out, poll.tally.ballots());
+        writeTable(out, poll.tally.selections());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings, StringTable table) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeInt(table.indexOf(string));
+        }
+    }
+
+    /**
+     * Writes a count and the entries. Voters may change while the table is read, so the
+     * entries are gathered first and counted as they come.
+     */
+    private static void writeTable(DataOutputStream out, VoterTable table) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(16, table.size() * 20));
+        DataOutputStream entries = new DataOutputStream(bytes);
+        int[] count = {0};
+        IOException[] failure = {null};
+        table.forEach((msb, lsb, value) -> {
+            if (failure[0] != null) return;
+            try {
+                entries.writeLong(msb);
+                entries.writeLong(lsb);
+                entries.writeInt(value);
+                count[0]++;
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        out.writeInt(count[0]);
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Assigns each distinct string an index, in first-seen order.
+     */
+    private static final class StringTable {
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        int indexOf(String string) {
+            if (string == null) return NONE;
+            Integer index = indexes.get(string);
+            if (index != null) return index;
+            indexes.put(string, strings.size());
+            strings.add(string);
+            return strings.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.dominicfeliton.chatpolls.util;
+
+public enum PollStatus {
+    SCHEDULED,   // Created, not started yet
+    ACTIVE,      // Accepting votes
+    ENDED,       // Ended on schedule or forced
+    CANCELLED;   // Called off; never reports results
+
+    /**
+     * @return Whether a poll in this status may move to {@code next}. Polls only move
+     *         forward, and ENDED and CANCELLED are final.
+     */
+    public boolean canAdvanceTo(PollStatus next) {
+        switch (this) {
+            case SCHEDULED:
+                return next != SCHEDULED;
+            case ACTIVE:
+                return next == ENDED || next == CANCELLED;
+            default:
+                return false;
+        }
+    }
+}
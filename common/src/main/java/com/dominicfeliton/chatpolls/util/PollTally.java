@@ -0,0 +1,293 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The mutable vote state of one poll: option counters, who voted for what, the ranked
+ * ballot histogram and the cached results built from them.
+ *
+ * <p>Everything here is safe for concurrent use without a poll-wide lock. Votes land in the
+ * {@link VoterTable}s and striped counters, and each change bumps a version that
+ * invalidates the cached {@link PollResultSnapshot}. A vote updates a voter table and the
+ * counters in two steps, so each write is bracketed by {@link #beginWrite()} and
+ * {@link #endWrite()}, letting a recount tell whether it saw both steps of every vote. The
+ * rules deciding whether a vote is allowed live in {@link PollObject}, which reads them
+ * from its {@link PollDefinition}.
+ */
+public class PollTally {
+
+    private final OptionTally counters;
+
+    // voter => option ordinal
+    private final VoterTable votes = new VoterTable();
+    // voter => BallotCodec code
+    private final VoterTable ballots = new VoterTable();
+    // voter => bitmask of selected option ordinals
+    private final VoterTable selections = new VoterTable();
+
+    private volatile RankedTally rankedTally;
+
+    // Bumped after every change to the counters; a snapshot is only valid for the version it was built at
+    private final LongAdder version = new LongAdder();
+    // Writes begun and finished; equal sums mean no vote is halfway between a voter table and the counters
+    private final LongAdder writesBegun = new LongAdder();
+    private final LongAdder writesEnded = new LongAdder();
+    // Null whenever votes changed since the last build
+    private volatile PollResultSnapshot results;
+    private final Object resultsLock = new Object();
+
+    public PollTally(List<String> options) {
+        this.counters = new OptionTally(options);
+    }
+
+    public int ordinalOf(String option) {
+        return counters.ordinalOf(option);
+    }
+
+    public String optionAt(int ordinal) {
+        return counters.optionAt(ordinal);
+    }
+
+    /**
+     * @return The number of distinct options
+     */
+    public int size() {
+        return counters.size();
+    }
+
+    public OptionTally getCounters() {
+        return counters;
+    }
+
+    VoterTable votes() {
+        return votes;
+    }
+
+    VoterTable ballots() {
+        return ballots;
+    }
+
+    VoterTable selections() {
+        return selections;
+    }
+
+    /**
+     * @return The ballot histogram, created on the first ranked ballot
+     */
+    RankedTally rankedTally() {
+        RankedTally ranked = rankedTally;
+        if (ranked == null) {
+            synchronized (resultsLock) {
+                ranked = rankedTally;
+                if (ranked == null) {
+                    ranked = new RankedTally(BallotCodec.forOptions(counters.size()));
+                    rankedTally = ranked;
+                }
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * @return The ballot histogram, or null if no ranked ballot was ever counted
+     */
+    RankedTally rankedTallyIfPresent() {
+        return rankedTally;
+    }
+
+    /**
+     * @return The number of ranked ballot codes, or 0 if the poll has too many options to rank
+     */
+    int ballotCodeCount() {
+        return counters.size() <= BallotCodec.MAX_OPTIONS ? BallotCodec.forOptions(counters.size()).codeCount() : 0;
+    }
+
+    /**
+     * Marks the start of a change to the voter tables and counters. Every call must be
+     * followed by {@link #endWrite()}, once the counters match the tables again.
+     */
+    void beginWrite() {
+        writesBegun.increment();
+    }
+
+    void endWrite() {
+        writesEnded.increment();
+    }
+
+    /**
+     * @return The number of writes begun so far if none is in progress, else -1. A recount
+     *         started now is consistent if {@link #writesBegun()} still returns this after it.
+     */
+    long quiescentWrites() {
+        long begun = writesBegun.sum();
+        return writesEnded.sum() == begun ? begun : -1;
+    }
+
+    /**
+     * @return The number of writes begun so far
+     */
+    long writesBegun() {
+        return writesBegun.sum();
+    }
+
+    /**
+     * Recounts every stored vote, one fork-join task per segment of each voter table. A task
+     * copies its segment's values before counting them, so voters writing to that segment
+     * only ever wait for the copy, not for the count.
+     */
+    TallyRecount recount() {
+        VoterTable[] tables = {votes, selections, ballots};
+        int segments = votes.segmentCount();
+        int codeCount = ballotCodeCount();
+        return IntStream.range(0, tables.length * segments).parallel()
+                .mapToObj(task -> {
+                    TallyRecount part = new TallyRecount(counters.size(), codeCount);
+                    int[] values = tables[task / segments].copyValues(task % segments);
+                    if (task / segments == 0) {
+                        part.countVotes(values);
+                    } else if (task / segments == 1) {
+                        part.countSelections(values);
+                    } else {
+                        part.countBallots(values);
+                    }
+                    return part;
+                })
+                .reduce(TallyRecount::merge)
+                .orElseGet(() -> new TallyRecount(counters.size(), codeCount));
+    }
+
+    /**
+     * @return The live option counters, indexed by ordinal
+     */
+    long[] liveCounts() {
+        long[] counts = new long[counters.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = counters.count(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return The live ballot histogram, indexed by code
+     */
+    long[] liveHistogram() {
+        RankedTally ranked = rankedTally;
+        return ranked == null ? new long[ballotCodeCount()] : ranked.snapshot();
+    }
+
+    /**
+     * Subtracts drift from the live counters. Drift is applied as deltas, so votes cast
+     * while correcting are kept. The correction counts as a write, so a recount running
+     * alongside it is retried rather than seeing it half applied.
+     *
+     * @param optionDrift    Live minus recounted votes, per option ordinal
+     * @param histogramDrift Live minus recounted ballots, per ballot code
+     * @return How many counters changed
+     */
+    long correct(long[] optionDrift, long[] histogramDrift) {
+        beginWrite();
+        try {
+            return applyCorrection(optionDrift, histogramDrift);
+        } finally {
+            endWrite();
+        }
+    }
+
+    private long applyCorrection(long[] optionDrift, long[] histogramDrift) {
+        long changes = 0;
+        for (int ordinal = 0; ordinal < optionDrift.length; ordinal++) {
+            if (optionDrift[ordinal] != 0) {
+                counters.add(ordinal, -optionDrift[ordinal]);
+                changes++;
+            }
+        }
+        long[] deltas = new long[histogramDrift.length];
+        boolean ballotsDrifted = false;
+        for (int code = 0; code < histogramDrift.length; code++) {
+            if (histogramDrift[code] != 0) {
+                deltas[code] = -histogramDrift[code];
+                ballotsDrifted = true;
+                changes++;
+            }
+        }
+        if (ballotsDrifted) {
+            rankedTally().addAll(deltas);
+        }
+        if (changes > 0) {
+            markChanged(changes);
+        }
+        return changes;
+    }
+
+    /**
+     * @return A counter that increases every time the votes change
+     */
+    public long getVersion() {
+        return version.sum();
+    }
+
+    /**
+     * Records a batch of changes, publishing them with a single invalidation.
+     *
+     * @param changes How many votes changed
+     */
+    void markChanged(long changes) {
+        version.add(changes);
+        if (results != null) {
+            results = null;
+        }
+    }
+
+    /**
+     * Returns the current results. When no vote has been cast since the last call this is
+     * a single volatile read; otherwise the snapshot is rebuilt once and shared.
+     *
+     * @param type How the poll is counted
+     * @return An immutable snapshot of the results
+     */
+    public PollResultSnapshot getResults(PollType type) {
+        PollResultSnapshot snapshot = results;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (resultsLock) {
+            snapshot = results;
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long built = version.sum();
+            long[] counts = new long[counters.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = counters.count(i);
+            }
+            RankedTally.Result runoff = null;
+            int rankedWinner = -1;
+            long rankedBallots = 0;
+            long[] bordaScores = null;
+            if (type.isRanked() && counters.size() <= BallotCodec.MAX_OPTIONS) {
+                RankedTally ranked = rankedTally();
+                rankedBallots = ranked.total();
+                if (type == PollType.SCHULZE) {
+                    rankedWinner = ranked.schulzeWinner();
+                } else if (type == PollType.BORDA) {
+                    bordaScores = ranked.bordaScores();
+                    rankedWinner = ranked.bordaWinner();
+                } else {
+                    runoff = ranked.instantRunoff();
+                    rankedWinner = runoff.getWinner();
+                }
+            }
+            snapshot = new PollResultSnapshot(built, counters.getOptions(), counts,
+                    runoff, rankedWinner, rankedBallots, bordaScores);
+            results = snapshot;
+            // A vote that landed mid-build either sees the published snapshot and clears it,
+            // or bumped the version before this check
+            if (version.sum() != built) {
+                results = null;
+            }
+            return snapshot;
+        }
+    }
+}
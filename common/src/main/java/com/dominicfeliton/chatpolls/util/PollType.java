@@ -2,6 +2,23 @@ package com.dominicfeliton.chatpolls.util;
 
 public enum PollType {
     SINGLE,      // Single-choice poll
-    MULTIPLE,    // Multiple-choice poll
-    RANKED;      // Ranked-choice poll
+    MULTIPLE,    // Multiple-choice poll, up to maxVotesPerUser options
+    RANKED,      // Ranked-choice poll, winner by instant runoff
+    APPROVAL,    // Approval poll, any number of options
+    SCHULZE,     // Ranked ballots, Condorcet winner by the Schulze method
+    BORDA;       // Ranked ballots, winner by Borda count
+
+    /**
+     * @return Whether voters submit ranked ballots
+     */
+    public boolean isRanked() {
+        return this == RANKED || this == SCHULZE || this == BORDA;
+    }
+
+    /**
+     * @return Whether voters may select more than one option
+     */
+    public boolean isMultiSelect() {
+        return this == MULTIPLE || this == APPROVAL;
+    }
 }
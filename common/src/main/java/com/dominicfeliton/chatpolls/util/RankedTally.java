@@ -0,0 +1,329 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ranked-choice tally kept as a histogram of {@link BallotCodec} codes.
+ *
+ * <p>Casting or withdrawing a ballot touches a single histogram bucket. Instant-runoff
+ * rounds then walk at most {@link BallotCodec#codeCount()} buckets (326 with 5 options)
+ * instead of every ballot, so resolving a winner costs the same for 10 ballots or 100k.
+ *
+ * <p>Each ballot also updates an options-by-options pairwise preference matrix and a Borda
+ * score vector in O(options²), so Schulze and Borda winners are read straight from those
+ * without looking at any ballot.
+ */
+public class RankedTally {
+
+    private final BallotCodec codec;
+    private final int optionCount;
+    private final AtomicLongArray histogram;
+    // pairwise[a * optionCount + b] = ballots that prefer a over b
+    private final AtomicLongArray pairwise;
+    private final AtomicLongArray borda;
+
+    public RankedTally(BallotCodec codec) {
+        this.codec = codec;
+        this.optionCount = codec.getOptionCount();
+        this.histogram = new AtomicLongArray(codec.codeCount());
+        this.pairwise = new AtomicLongArray(optionCount * optionCount);
+        this.borda = new AtomicLongArray(optionCount);
+    }
+
+    public BallotCodec getCodec() {
+        return codec;
+    }
+
+    public void add(int code) {
+        apply(code, 1);
+    }
+
+    public void remove(int code) {
+        apply(code, -1);
+    }
+
+    /**
+     * Applies per-code deltas, e.g. from a batch of ballots.
+     *
+     * @param deltas Change per ballot code, indexed by code
+     */
+    public void addAll(long[] deltas) {
+        for (int code = 0; code < deltas.length; code++) {
+            if (deltas[code] != 0) {
+                apply(code, deltas[code]);
+            }
+        }
+    }
+
+    /**
+     * Adds {@code delta} copies of a ballot to the histogram, the pairwise matrix and the
+     * Borda scores.
+     */
+    private void apply(int code, long delta) {
+        histogram.addAndGet(code, delta);
+        byte[] ballot = codec.decode(code);
+        int placed = 0;
+        for (int position = 0; position < ballot.length; position++) {
+            int ordinal = ballot[position];
+            placed |= 1 << ordinal;
+            borda.addAndGet(ordinal, delta * (optionCount - 1 - position));
+            // Preferred over every option ranked lower or left unranked
+            for (int other = 0; other < optionCount; other++) {
+                if ((placed & (1 << other)) == 0) {
+                    pairwise.addAndGet(ordinal * optionCount + other, delta);
+                }
+            }
+        }
+    }
+
+    public long count(int code) {
+        return histogram.get(code);
+    }
+
+    /**
+     * @return Number of ballots in the histogram
+     */
+    public long total() {
+        long sum = 0;
+        for (int code = 0; code < histogram.length(); code++) {
+            sum += histogram.get(code);
+        }
+        return sum;
+    }
+
+    /**
+     * @return How many ballots prefer option {@code a} over option {@code b}
+     */
+    public long preference(int a, int b) {
+        return pairwise.get(a * optionCount + b);
+    }
+
+    /**
+     * @return A copy of the Borda scores, indexed by option ordinal. A ballot gives
+     *         {@code optionCount - 1} points to its first choice, one fewer to each following
+     *         choice, and none to unranked options.
+     */
+    public long[] bordaScores() {
+        long[] scores = new long[optionCount];
+        for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+            scores[ordinal] = borda.get(ordinal);
+        }
+        return scores;
+    }
+
+    /**
+     * @return The option with the highest Borda score, or -1 if there are no ballots or the
+     *         top score is tied
+     */
+    public int bordaWinner() {
+        return uniqueMax(bordaScores());
+    }
+
+    /**
+     * Finds the Schulze winner with a Floyd-Warshall widest-path pass over the pairwise
+     * matrix: O(options³) regardless of how many ballots were cast.
+     *
+     * @return The option whose strongest path beats or ties every other option's, or -1 if
+     *         there are no ballots or more than one option qualifies
+     */
+    public int schulzeWinner() {
+        int n = optionCount;
+        long[][] paths = new long[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (a == b) continue;
+                long forward = preference(a, b);
+                long backward = preference(b, a);
+                paths[a][b] = forward > backward ? forward : 0;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int a = 0; a < n; a++) {
+                if (a == k) continue;
+                for (int b = 0; b < n; b++) {
+                    if (b == k || b == a) continue;
+                    paths[a][b] = Math.max(paths[a][b], Math.min(paths[a][k], paths[k][b]));
+                }
+            }
+        }
+
+        int winner = -1;
+        for (int a = 0; a < n; a++) {
+            boolean beatsAll = true;
+            for (int b = 0; b < n && beatsAll; b++) {
+                beatsAll = a == b || paths[a][b] >= paths[b][a];
+            }
+            if (!beatsAll) continue;
+            if (winner >= 0) return -1; // Tied
+            winner = a;
+        }
+        return total() == 0 ? -1 : winner;
+    }
+
+    private static int uniqueMax(long[] scores) {
+        int best = -1;
+        boolean tied = false;
+        for (int i = 0; i < scores.length; i++) {
+            if (best < 0 || scores[i] > scores[best]) {
+                best = i;
+                tied = false;
+            } else if (scores[i] == scores[best]) {
+                tied = true;
+            }
+        }
+        return tied || best < 0 || scores[best] == 0 ? -1 : best;
+    }
+
+    /**
+     * @return A point-in-time copy of every bucket
+     */
+    public long[] snapshot() {
+        long[] copy = new long[histogram.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = histogram.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Runs instant-runoff voting over the current histogram.
+     *
+     * <p>Each round counts every ballot for its highest-ranked option still standing. An option
+     * with more than half of all ballots wins; otherwise every option tied for the fewest
+     * first-choice votes is eliminated. Ballots that run out of options still count toward
+     * the majority threshold.
+     *
+     * @return The outcome, including the counts of every round
+     */
+    public Result instantRunoff() {
+        long[] buckets = snapshot();
+        int optionCount = codec.getOptionCount();
+
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+
+        List<Round> rounds = new ArrayList<>();
+        int eliminated = 0;
+        while (true) {
+            long[] counts = new long[optionCount];
+            int standing = firstChoices(buckets, eliminated, counts);
+
+            // Check for majority
+            for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+                if ((standing & (1 << ordinal)) != 0 && counts[ordinal] > total / 2) {
+                    rounds.add(new Round(counts, 0));
+                    return new Result(ordinal, total, rounds);
+                }
+            }
+
+            // No votes remain
+            if (standing == 0) {
+                return new Result(-1, total, rounds);
+            }
+
+            // Eliminate every option tied for the fewest first-choice votes
+            long minVotes = Long.MAX_VALUE;
+            for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+                if ((standing & (1 << ordinal)) != 0) {
+                    minVotes = Math.min(minVotes, counts[ordinal]);
+                }
+            }
+            int toEliminate = 0;
+            for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+                if ((standing & (1 << ordinal)) != 0 && counts[ordinal] == minVotes) {
+                    toEliminate |= 1 << ordinal;
+                }
+            }
+            rounds.add(new Round(counts, toEliminate));
+            eliminated |= toEliminate;
+
+            // If only one option is left at the top of any ballot, it wins
+            int remaining = firstChoices(buckets, eliminated, null);
+            if (Integer.bitCount(remaining) == 1) {
+                return new Result(Integer.numberOfTrailingZeros(remaining), total, rounds);
+            }
+        }
+    }
+
+    /**
+     * Counts each ballot toward its highest-ranked option that has not been eliminated.
+     *
+     * @return A bitmask of the options that received at least one ballot
+     */
+    private int firstChoices(long[] buckets, int eliminated, long[] counts) {
+        int standing = 0;
+        for (int code = 0; code < buckets.length; code++) {
+            if (buckets[code] == 0) continue;
+            for (byte ordinal : codec.decode(code)) {
+                if ((eliminated & (1 << ordinal)) == 0) {
+                    if (counts != null) {
+                        counts[ordinal] += buckets[code];
+                    }
+                    standing |= 1 << ordinal;
+                    break;
+                }
+            }
+        }
+        return standing;
+    }
+
+    /**
+     * First-choice counts of one instant-runoff round.
+     */
+    public static final class Round {
+        private final long[] counts;
+        private final int eliminatedMask;
+
+        Round(long[] counts, int eliminatedMask) {
+            this.counts = counts;
+            this.eliminatedMask = eliminatedMask;
+        }
+
+        public long getCount(int ordinal) {
+            return counts[ordinal];
+        }
+
+        public int getOptionCount() {
+            return counts.length;
+        }
+
+        public boolean isEliminated(int ordinal) {
+            return (eliminatedMask & (1 << ordinal)) != 0;
+        }
+    }
+
+    /**
+     * Outcome of an instant-runoff count.
+     */
+    public static final class Result {
+        private final int winner;
+        private final long totalBallots;
+        private final List<Round> rounds;
+
+        Result(int winner, long totalBallots, List<Round> rounds) {
+            this.winner = winner;
+            this.totalBallots = totalBallots;
+            this.rounds = Collections.unmodifiableList(rounds);
+        }
+
+        /**
+         * @return The winning option ordinal, or -1 if there is no winner
+         */
+        public int getWinner() {
+            return winner;
+        }
+
+        public long getTotalBallots() {
+            return totalBallots;
+        }
+
+        public List<Round> getRounds() {
+            return rounds;
+        }
+    }
+}
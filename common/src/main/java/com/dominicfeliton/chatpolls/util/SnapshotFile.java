@@ -0,0 +1,102 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces save files so that a crash at any point leaves either the old or the new file,
+ * never a truncated one, and keeps the previous version as a backup.
+ *
+ * <p>The new contents go to a temp file beside the target, are forced to disk and then moved
+ * over the target in one atomic rename. Before that, the old file is hard-linked (or, where
+ * links are unsupported, copied) to {@link #backupOf(Path)}, so the target itself is never
+ * missing.
+ */
+public final class SnapshotFile {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Writes a file's contents to a stream. Closing the stream is allowed and does not end
+     * the write early.
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * @return Where the previous version of a file is kept
+     */
+    public static Path backupOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".bak");
+    }
+
+    /**
+     * Atomically replaces {@code file} with {@code content}. If writing fails, the file and
+     * its backup are left as they were.
+     */
+    public static void write(Path file, Content content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+            // Writers such as Jackson close what they write to; the channel must stay open to force it
+            content.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (Files.exists(file)) {
+            Path backup = backupOf(file);
+            Files.deleteIfExists(backup);
+            try {
+                Files.createLink(backup, file);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+                // Unlike a link, a copy is new data that must reach the disk before the rename
+                try (FileChannel copy = FileChannel.open(backup, StandardOpenOption.WRITE)) {
+                    copy.force(true);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces the rename itself to disk. Not every platform can open a directory, in which
+     * case the rename is left to the file system's own ordering.
+     */
+    static void syncDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Unsupported here
+        }
+    }
+}
@@ -1,10 +1,43 @@
 package com.dominicfeliton.chatpolls.util;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Wall-clock time that never runs backwards. It follows {@link System#currentTimeMillis()},
+ * so it catches up after the host is suspended, but holds still while an NTP correction or
+ * manual clock change sets the time back, so a poll cannot start or end twice.
+ * <p>
+ * Timers and sweeps over polls must read {@link #millis()} rather than the system time, so
+ * they agree with the polls on whether a poll is open.
+ */
 public class SystemClock implements Clock {
+    // Shared so every poll sees the same timeline
+    private static final AtomicLong LAST_MILLIS = new AtomicLong();
+
+    /**
+     * @return The current time in epoch millis, never less than a previous call returned
+     */
+    public static long millis() {
+        long now = System.currentTimeMillis();
+        long last = LAST_MILLIS.get();
+        if (now <= last) return last;
+        // Only written when the time moves forward, at most once per millisecond
+        return LAST_MILLIS.accumulateAndGet(now, Math::max);
+    }
+
     @Override
     public LocalDateTime getCurrentDateTime() {
-        return LocalDateTime.now();
+        return Clock.toLocalDateTime(currentTimeMillis());
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
     }
 }
@@ -0,0 +1,90 @@
+package com.dominicfeliton.chatpolls.util;
+
+/**
+ * Option counts and a ballot histogram counted from scratch out of stored votes, as opposed
+ * to the incremental counters kept by {@link PollTally}.
+ *
+ * <p>Each fork-join task of a recount fills its own instance from one table segment, and
+ * the parts are then merged, so counting never touches shared state.
+ */
+final class TallyRecount {
+
+    // Votes per option ordinal, from single votes and selections
+    final long[] options;
+    // Ballots per BallotCodec code
+    final long[] histogram;
+    long voters;
+    // Stored values that name no option or ballot of this poll
+    long invalid;
+
+    TallyRecount(int optionCount, int codeCount) {
+        this.options = new long[optionCount];
+        this.histogram = new long[codeCount];
+    }
+
+    /**
+     * @param ordinals Option ordinals of single-choice votes
+     */
+    void countVotes(int[] ordinals) {
+        for (int ordinal : ordinals) {
+            if (ordinal == VoterTable.NO_VALUE) continue;
+            voters++;
+            if (ordinal < options.length) {
+                options[ordinal]++;
+            } else {
+                invalid++;
+            }
+        }
+    }
+
+    /**
+     * @param masks Bitmasks of selected option ordinals
+     */
+    void countSelections(int[] masks) {
+        for (int mask : masks) {
+            if (mask == VoterTable.NO_VALUE) continue;
+            voters++;
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                int ordinal = Integer.numberOfTrailingZeros(bits);
+                if (ordinal < options.length) {
+                    options[ordinal]++;
+                } else {
+                    invalid++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param codes Ranked ballot codes
+     */
+    void countBallots(int[] codes) {
+        for (int code : codes) {
+            if (code == VoterTable.NO_VALUE) continue;
+            voters++;
+            if (code < histogram.length) {
+                histogram[code]++;
+            } else {
+                invalid++;
+            }
+        }
+    }
+
+    /**
+     * Adds another part's counts to this one.
+     *
+     * @return This recount
+     */
+    TallyRecount merge(TallyRecount other) {
+        for (int i = 0; i < options.length; i++) {
+            options[i] += other.options[i];
+        }
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        voters += other.voters;
+        invalid += other.invalid;
+        return this;
+    }
+}
@@ -0,0 +1,99 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A single vote to be applied in bulk with {@link PollObject#castVotes(java.util.Collection)},
+ * e.g. when importing, relaying from another server or replaying a vote log. A withdrawal
+ * can be queued the same way, so it is applied in order with the voter's votes.
+ */
+public final class VoteRequest {
+
+    private final UUID voter;
+    private final String option;
+    private final List<String> ranking;
+    private final List<String> selection;
+    private final boolean undo;
+
+    private VoteRequest(UUID voter, String option, List<String> ranking, List<String> selection, boolean undo) {
+        this.voter = voter;
+        this.option = option;
+        this.ranking = ranking;
+        this.selection = selection;
+        this.undo = undo;
+    }
+
+    /**
+     * @param voter  The voting player
+     * @param option The chosen option
+     * @return A single-choice vote
+     */
+    public static VoteRequest single(UUID voter, String option) {
+        return new VoteRequest(voter, option, null, null, false);
+    }
+
+    /**
+     * @param voter   The voting player
+     * @param ranking Options in order of preference
+     * @return A ranked ballot
+     */
+    public static VoteRequest ranked(UUID voter, List<String> ranking) {
+        return new VoteRequest(voter, null, Collections.unmodifiableList(ranking), null, false);
+    }
+
+    /**
+     * @param voter     The voting player
+     * @param selection Every option the voter selects, replacing any earlier selection
+     * @return A multiple-choice or approval ballot
+     */
+    public static VoteRequest selection(UUID voter, List<String> selection) {
+        return new VoteRequest(voter, null, null, Collections.unmodifiableList(selection), false);
+    }
+
+    /**
+     * @param voter The voting player
+     * @return A withdrawal of the voter's vote, ballot or selection, as by {@link PollObject#undoVote(UUID)}
+     */
+    public static VoteRequest undo(UUID voter) {
+        return new VoteRequest(voter, null, null, null, true);
+    }
+
+    public UUID getVoter() {
+        return voter;
+    }
+
+    /**
+     * @return The chosen option, or null for a ranked ballot, a full selection or a withdrawal
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * @return The ranking, or null if this is not a ranked ballot
+     */
+    public List<String> getRanking() {
+        return ranking;
+    }
+
+    /**
+     * @return The full selection, or null if this is not a selection ballot
+     */
+    public List<String> getSelection() {
+        return selection;
+    }
+
+    public boolean isRanked() {
+        return ranking != null;
+    }
+
+    public boolean isSelection() {
+        return selection != null;
+    }
+
+    public boolean isUndo() {
+        return undo;
+    }
+}
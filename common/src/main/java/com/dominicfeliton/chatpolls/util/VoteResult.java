@@ -0,0 +1,17 @@
+package com.dominicfeliton.chatpolls.util;
+
+/**
+ * Outcome of a single vote passed to {@link PollObject#castVotes(java.util.Collection)}.
+ */
+public enum VoteResult {
+    ACCEPTED,          // Vote was recorded
+    ALREADY_VOTED,     // Voter already has a vote and it may not be replaced
+    INVALID_OPTION,    // Unknown option, a ranking with unknown/duplicate options, or too many selections
+    POLL_CLOSED,       // Poll has not started yet or has already ended
+    WRONG_POLL_TYPE,   // Ballot kind does not match the poll type, e.g. a ranking on a single-choice poll
+    NOT_VOTED;         // Withdrawal of a vote the voter does not have
+
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+}
@@ -0,0 +1,454 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A compact concurrent map from voter UUID to a small int value (an option ordinal or a
+ * {@link BallotCodec} code).
+ *
+ * <p>Voters are stored inline in primitive arrays with open addressing and linear probing:
+ * two longs for the UUID bits and one int for the value, with no per-voter objects. The
+ * table is split into independently locked segments, four per core, so concurrent writers
+ * rarely meet, and reads are optimistic and lock-free unless they race a write to the same
+ * segment.
+ *
+ * <p>Each slot costs 20 bytes and the load factor stays between 0.375 and 0.75, so a voter
+ * costs about 27-53 bytes. A {@code ConcurrentHashMap<UUID, String>} entry with its node,
+ * UUID and per-command option String measured about 96 bytes, and a ranked
+ * {@code List<String>} ballot about 275 bytes.
+ *
+ * <p>The segment array and each segment are created on their first write, so a table nobody
+ * votes into (e.g. the ranked table of a single-choice poll) costs only its header.
+ */
+public class VoterTable {
+
+    /**
+     * Returned by lookups when the voter is not present. Stored values must be non-negative.
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final int SEGMENT_BITS = segmentBits(Runtime.getRuntime().availableProcessors());
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Receives every entry during {@link #forEach(EntryConsumer)}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long mostSigBits, long leastSigBits, int value);
+    }
+
+    private static final VarHandle SEGMENTS;
+
+    static {
+        try {
+            SEGMENTS = MethodHandles.lookup().findVarHandle(VoterTable.class, "segments", AtomicReferenceArray.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Null until the first write
+    private volatile AtomicReferenceArray<Segment> segments;
+
+    /**
+     * @return Bits of the segment index: four segments per core, between 8 and 256 segments
+     */
+    static int segmentBits(int cores) {
+        int wanted = 4 * Math.max(1, cores);
+        int bits = 32 - Integer.numberOfLeadingZeros(wanted - 1);
+        return Math.max(3, Math.min(8, bits));
+    }
+
+    private static long mix(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * @return The segment for a hash, or null if nothing was ever written to it
+     */
+    private Segment segmentFor(long hash) {
+        return segmentAt((int) (hash >>> (64 - SEGMENT_BITS)));
+    }
+
+    private Segment segmentAt(int index) {
+        AtomicReferenceArray<Segment> table = segments;
+        return table == null ? null : table.get(index);
+    }
+
+    private Segment segmentForWrite(long hash) {
+        AtomicReferenceArray<Segment> table = segments;
+        if (table == null) {
+            SEGMENTS.compareAndSet(this, null, new AtomicReferenceArray<Segment>(SEGMENT_COUNT));
+            table = segments;
+        }
+        int index = (int) (hash >>> (64 - SEGMENT_BITS));
+        Segment segment = table.get(index);
+        if (segment != null) return segment;
+        Segment created = new Segment();
+        return table.compareAndSet(index, null, created) ? created : table.get(index);
+    }
+
+    public int get(UUID voter) {
+        return get(voter.getMostSignificantBits(), voter.getLeastSignificantBits());
+    }
+
+    public int get(long msb, long lsb) {
+        long hash = mix(msb, lsb);
+        Segment segment = segmentFor(hash);
+        return segment == null ? NO_VALUE : segment.get(msb, lsb, (int) hash);
+    }
+
+    public boolean containsKey(UUID voter) {
+        return get(voter) != NO_VALUE;
+    }
+
+    /**
+     * Stores a value only if the voter has none yet.
+     *
+     * @return The existing value, or {@link #NO_VALUE} if the new value was stored
+     */
+    public int putIfAbsent(UUID voter, int value) {
+        return put(voter, value, true);
+    }
+
+    /**
+     * Stores a value, replacing any existing one.
+     *
+     * @return The previous value, or {@link #NO_VALUE} if there was none
+     */
+    public int put(UUID voter, int value) {
+        return put(voter, value, false);
+    }
+
+    /**
+     * Replaces a voter's value only if it still equals {@code expected}.
+     *
+     * @return Whether the value was replaced
+     */
+    public boolean replace(UUID voter, int expected, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Voter values must be non-negative");
+        }
+        long msb = voter.getMostSignificantBits();
+        long lsb = voter.getLeastSignificantBits();
+        long hash = mix(msb, lsb);
+        Segment segment = segmentFor(hash);
+        return segment != null && segment.replace(msb, lsb, (int) hash, expected, value);
+    }
+
+    /**
+     * Removes a voter.
+     *
+     * @return The removed value, or {@link #NO_VALUE} if the voter was not present
+     */
+    public int remove(UUID voter) {
+        long msb = voter.getMostSignificantBits();
+        long lsb = voter.getLeastSignificantBits();
+        long hash = mix(msb, lsb);
+        Segment segment = segmentFor(hash);
+        return segment == null ? NO_VALUE : segment.remove(msb, lsb, (int) hash);
+    }
+
+    /**
+     * Stores a value by the voter's UUID bits, e.g. when loading, without creating a UUID.
+     *
+     * @return The previous value, or {@link #NO_VALUE} if there was none
+     */
+    int put(long msb, long lsb, int value) {
+        return put(msb, lsb, value, false);
+    }
+
+    private int put(UUID voter, int value, boolean onlyIfAbsent) {
+        return put(voter.getMostSignificantBits(), voter.getLeastSignificantBits(), value, onlyIfAbsent);
+    }
+
+    private int put(long msb, long lsb, int value, boolean onlyIfAbsent) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Voter values must be non-negative");
+        }
+        long hash = mix(msb, lsb);
+        return segmentForWrite(hash).put(msb, lsb, (int) hash, value, onlyIfAbsent);
+    }
+
+    /**
+     * Removes every voter and releases the segments' arrays.
+     */
+    public void clear() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = segmentAt(i);
+            if (segment != null) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = segmentAt(i);
+            if (segment != null) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Visits every entry. Each segment is read under its lock, so entries written
+     * concurrently may or may not be seen.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = segmentAt(i);
+            if (segment != null) {
+                segment.forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * @return How many independently locked segments the table is split into
+     */
+    public int segmentCount() {
+        return SEGMENT_COUNT;
+    }
+
+    /**
+     * Copies the values of one segment, so they can be counted without holding its lock.
+     * The copy is taken optimistically and only falls back to the read lock if a write
+     * raced it.
+     *
+     * @param segment A segment index below {@link #segmentCount()}
+     * @return The segment's values with {@link #NO_VALUE} in empty slots, or an empty array
+     */
+    public int[] copyValues(int segment) {
+        Segment s = segmentAt(segment);
+        return s == null ? new int[0] : s.copyValues();
+    }
+
+    /**
+     * @return Approximate heap retained by the table's arrays, in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = segmentAt(i);
+            if (segment == null) continue;
+            int[] values = segment.values;
+            if (values != null) {
+                // long[] keys + int[] values, plus array headers
+                bytes += 16L * values.length + 16 + 4L * values.length + 16;
+            }
+        }
+        return bytes;
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        // keys[2 * slot] = most significant bits, keys[2 * slot + 1] = least significant bits
+        private long[] keys;
+        private int[] values;
+        private volatile int size;
+
+        int get(long msb, long lsb, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            int found = probe(keys, values, msb, lsb, hash);
+            if (lock.validate(stamp)) {
+                return found;
+            }
+            stamp = lock.readLock();
+            try {
+                return probe(keys, values, msb, lsb, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static int probe(long[] keys, int[] values, long msb, long lsb, int hash) {
+            // A torn optimistic read can pair arrays from before and after a resize
+            if (values == null || keys == null || keys.length != values.length << 1) return NO_VALUE;
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            // Bounded so a torn optimistic read can never spin forever
+            for (int i = 0; i < values.length; i++) {
+                int value = values[slot];
+                if (value == NO_VALUE) return NO_VALUE;
+                if (keys[slot << 1] == msb && keys[(slot << 1) + 1] == lsb) return value;
+                slot = (slot + 1) & mask;
+            }
+            return NO_VALUE;
+        }
+
+        int put(long msb, long lsb, int hash, int value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                if (values == null) {
+                    allocate(INITIAL_CAPACITY);
+                }
+                int mask = values.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != NO_VALUE) {
+                    if (keys[slot << 1] == msb && keys[(slot << 1) + 1] == lsb) {
+                        int previous = values[slot];
+                        if (!onlyIfAbsent) {
+                            values[slot] = value;
+                        }
+                        return previous;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot << 1] = msb;
+                keys[(slot << 1) + 1] = lsb;
+                values[slot] = value;
+                if (++size > (values.length >> 2) * 3) {
+                    resize();
+                }
+                return NO_VALUE;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(long msb, long lsb, int hash, int expected, int value) {
+            long stamp = lock.writeLock();
+            try {
+                if (values == null) return false;
+                int mask = values.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != NO_VALUE) {
+                    if (keys[slot << 1] == msb && keys[(slot << 1) + 1] == lsb) {
+                        if (values[slot] != expected) return false;
+                        values[slot] = value;
+                        return true;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                return false;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int remove(long msb, long lsb, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                if (values == null) return NO_VALUE;
+                int mask = values.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != NO_VALUE) {
+                    if (keys[slot << 1] == msb && keys[(slot << 1) + 1] == lsb) {
+                        int previous = values[slot];
+                        deleteSlot(slot, mask);
+                        size--;
+                        return previous;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                return NO_VALUE;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Backward-shift deletion: later entries of the same probe run move into the hole, so
+         * lookups never need tombstones.
+         */
+        private void deleteSlot(int hole, int mask) {
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (values[slot] == NO_VALUE) break;
+                int home = (int) mix(keys[slot << 1], keys[(slot << 1) + 1]) & mask;
+                // Leave the entry if its home lies cyclically within (hole, slot]
+                boolean reachable = hole <= slot
+                        ? hole < home && home <= slot
+                        : hole < home || home <= slot;
+                if (reachable) continue;
+                keys[hole << 1] = keys[slot << 1];
+                keys[(hole << 1) + 1] = keys[(slot << 1) + 1];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+            values[hole] = NO_VALUE;
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity << 1];
+            int[] fresh = new int[capacity];
+            Arrays.fill(fresh, NO_VALUE);
+            values = fresh;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(oldValues.length << 1);
+            int mask = values.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] == NO_VALUE) continue;
+                long msb = oldKeys[i << 1];
+                long lsb = oldKeys[(i << 1) + 1];
+                int slot = (int) mix(msb, lsb) & mask;
+                while (values[slot] != NO_VALUE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot << 1] = msb;
+                keys[(slot << 1) + 1] = lsb;
+                values[slot] = oldValues[i];
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                keys = null;
+                values = null;
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int[] copyValues() {
+            long stamp = lock.tryOptimisticRead();
+            int[] current = values;
+            int[] copy = current == null ? new int[0] : current.clone();
+            if (lock.validate(stamp)) return copy;
+            stamp = lock.readLock();
+            try {
+                return values == null ? new int[0] : values.clone();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(EntryConsumer consumer) {
+            long stamp = lock.readLock();
+            try {
+                if (values == null) return;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != NO_VALUE) {
+                        consumer.accept(keys[i << 1], keys[(i << 1) + 1], values[i]);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
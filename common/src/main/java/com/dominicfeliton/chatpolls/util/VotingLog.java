@@ -0,0 +1,368 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed-capacity log of vote events for one poll.
+ *
+ * <p>Events are kept as primitive columns in a ring buffer. Writers claim a sequence number
+ * with a single atomic increment and publish their slot afterwards, so appends never take a
+ * lock while the ring has room. When it fills up, the oldest committed events are appended
+ * to a binary spill file ({@value #ENTRY_BYTES} bytes each) and their slots reused. Without
+ * a spill file the oldest events are dropped instead. Either way the heap used by a log
+ * never grows past its capacity.
+ *
+ * <p>{@link #iterator(int)} reads the spill file back a page at a time and then continues
+ * with the events still in memory.
+ */
+public class VotingLog {
+
+    /**
+     * Size of one event on disk: time, voter msb, voter lsb, value, action and padding.
+     */
+    public static final int ENTRY_BYTES = 32;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public enum Action {
+        CAST,      // A vote, ballot or selection was stored
+        CHANGE,    // An existing vote was replaced
+        UNDO;      // A vote was withdrawn
+
+        private static final Action[] VALUES = values();
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final long[] voterMsbs;
+    private final long[] voterLsbs;
+    // value << 8 | action ordinal
+    private final long[] payloads;
+    // committed[slot] = sequence + 1 once that slot holds the event with that sequence
+    private final AtomicLongArray committed;
+    private final AtomicLong claimed = new AtomicLong();
+    // Every sequence below this is on disk or was dropped
+    private volatile long spilledUpTo;
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private volatile Path spillFile;
+    // Events already in the spill file before this log started writing to it
+    private volatile long diskBase;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public VotingLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Events kept in memory; rounded up to a power of two
+     */
+    public VotingLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.voterMsbs = new long[size];
+        this.voterLsbs = new long[size];
+        this.payloads = new long[size];
+        this.committed = new AtomicLongArray(size);
+    }
+
+    /**
+     * Sets the append-only file that overflowing events are spilled to. Events already in
+     * the file are kept and come first when iterating.
+     *
+     * @param file The spill file, or null to drop overflowing events
+     */
+    public void setSpillFile(Path file) throws IOException {
+        spillLock.lock();
+        try {
+            long existing = 0;
+            if (file != null && Files.exists(file)) {
+                existing = Files.size(file) / ENTRY_BYTES;
+            }
+            // Sequences restart from the spill point so disk positions stay contiguous
+            diskBase = existing - spilledUpTo;
+            spillFile = file;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param timeMillis When it happened, in epoch millis
+     * @param voter      The voter
+     * @param value      Option ordinal, ballot code or selection mask, depending on the poll type
+     * @param action     What happened
+     */
+    public void append(long timeMillis, UUID voter, int value, Action action) {
+        long seq = claimed.getAndIncrement();
+        while (seq - spilledUpTo >= capacity) {
+            spill(false);
+        }
+        int slot = (int) (seq & mask);
+        // Unpublish first so a reader never mistakes the half-written slot for the old event
+        committed.set(slot, 0);
+        times[slot] = timeMillis;
+        voterMsbs[slot] = voter.getMostSignificantBits();
+        voterLsbs[slot] = voter.getLeastSignificantBits();
+        payloads[slot] = ((long) value << 8) | action.ordinal();
+        committed.set(slot, seq + 1);
+    }
+
+    /**
+     * Writes every committed in-memory event to the spill file, e.g. before saving.
+     */
+    public void flush() {
+        if (spillFile != null) {
+            spill(true);
+        }
+    }
+
+    /**
+     * Moves the oldest committed events out of the ring. Only one thread spills at a time;
+     * others spin until room is made.
+     *
+     * @param all Whether to spill every committed event rather than half the ring
+     */
+    private void spill(boolean all) {
+        if (!spillLock.tryLock()) {
+            if (all) {
+                spillLock.lock();
+            } else {
+                Thread.onSpinWait();
+                return;
+            }
+        }
+        try {
+            long from = spilledUpTo;
+            long limit = all ? claimed.get() : from + Math.max(1, capacity >> 1);
+            long to = from;
+            // Stop at the first event whose writer has not published it yet
+            while (to < limit && committed.get((int) (to & mask)) == to + 1) {
+                to++;
+            }
+            if (to == from) return;
+
+            Path file = spillFile;
+            if (file == null) {
+                dropped.addAndGet(to - from);
+            } else {
+                try {
+                    writeEntries(file, from, to);
+                } catch (IOException e) {
+                    // Keep accepting votes; the events are lost but counts are unaffected
+                    dropped.addAndGet(to - from);
+                    diskBase -= to - from;
+                }
+            }
+            spilledUpTo = to;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void writeEntries(Path file, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from) * ENTRY_BYTES);
+        for (long seq = from; seq < to; seq++) {
+            int slot = (int) (seq & mask);
+            buffer.putLong(times[slot]);
+            buffer.putLong(voterMsbs[slot]);
+            buffer.putLong(voterLsbs[slot]);
+            buffer.putLong(payloads[slot]);
+        }
+        buffer.flip();
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return Events recorded by this log instance, including spilled and dropped ones
+     */
+    public long size() {
+        return claimed.get();
+    }
+
+    /**
+     * @return Events lost because there was no spill file or it could not be written
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Deletes the spill file, e.g. when the poll is deleted.
+     */
+    public void deleteSpillFile() throws IOException {
+        spillLock.lock();
+        try {
+            Path file = spillFile;
+            spillFile = null;
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Iterates over the spilled events, then the ones still in memory, oldest first. Events
+     * recorded after this call are not included, and in-memory events that are spilled while
+     * iterating may be skipped.
+     *
+     * @param pageSize How many events to read from disk at a time
+     */
+    public Iterator<Entry> iterator(int pageSize) {
+        return new PagedIterator(Math.max(1, pageSize));
+    }
+
+    /**
+     * A single logged event.
+     */
+    public static final class Entry {
+        private final long timeMillis;
+        private final long voterMsb;
+        private final long voterLsb;
+        private final int value;
+        private final Action action;
+
+        Entry(long timeMillis, long voterMsb, long voterLsb, long payload) {
+            this.timeMillis = timeMillis;
+            this.voterMsb = voterMsb;
+            this.voterLsb = voterLsb;
+            this.value = (int) (payload >> 8);
+            this.action = Action.VALUES[(int) (payload & 0xFF)];
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public UUID getVoter() {
+            return new UUID(voterMsb, voterLsb);
+        }
+
+        /**
+         * @return Option ordinal, ballot code or selection mask, depending on the poll type
+         */
+        public int getValue() {
+            return value;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+    }
+
+    private final class PagedIterator implements Iterator<Entry> {
+        private final int pageSize;
+        private final Path file;
+        private final long diskEnd;
+        private final long memoryEnd;
+        private long diskPos;
+        private long seq;
+        private final List<Entry> page = new ArrayList<>();
+        private int pageIndex;
+
+        PagedIterator(int pageSize) {
+            this.pageSize = pageSize;
+            spillLock.lock();
+            try {
+                this.file = spillFile;
+                this.seq = spilledUpTo;
+                this.diskEnd = file == null ? 0 : diskBase + seq;
+                this.memoryEnd = claimed.get();
+            } finally {
+                spillLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pageIndex < page.size()) return true;
+            page.clear();
+            pageIndex = 0;
+            if (diskPos < diskEnd) {
+                readDiskPage();
+            } else {
+                readMemoryPage();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return page.get(pageIndex++);
+        }
+
+        private void readDiskPage() {
+            int count = (int) Math.min(pageSize, diskEnd - diskPos);
+            ByteBuffer buffer = ByteBuffer.allocate(count * ENTRY_BYTES);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long offset = diskPos * ENTRY_BYTES;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) break;
+                }
+            } catch (IOException e) {
+                diskPos = diskEnd;
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= ENTRY_BYTES) {
+                page.add(new Entry(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+            diskPos += count;
+        }
+
+        private void readMemoryPage() {
+            while (seq < memoryEnd && page.size() < pageSize) {
+                int slot = (int) (seq & mask);
+                if (committed.get(slot) != seq + 1) {
+                    // Not published yet, or already spilled and overwritten
+                    seq++;
+                    continue;
+                }
+                Entry entry = new Entry(times[slot], voterMsbs[slot], voterLsbs[slot], payloads[slot]);
+                // Re-check so a slot reused mid-read is never returned torn
+                if (committed.get(slot) == seq + 1) {
+                    page.add(entry);
+                }
+                seq++;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpirationWarningBroadcasterTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testExpirationWarningsRenderOncePerLocaleAndRespectBudget() {
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            recipients.add((i % 2 == 0 ? "en-" : "es-") + i);
+        }
+        int[] renders = {0};
+        List<String> sent = new ArrayList<>();
+        ExpirationWarningBroadcaster<String, String> broadcaster = new ExpirationWarningBroadcaster<>(
+                new ExpirationWarningBroadcaster.Platform<String, String>() {
+                    @Override
+                    public Collection<String> resolveRecipients(Set<String> ids) {
+                        return recipients;
+                    }
+
+                    @Override
+                    public String localeOf(String recipient) {
+                        return recipient.substring(0, 2);
+                    }
+
+                    @Override
+                    public String render(String representative, String pollId, PollObject p, long secondsLeft) {
+                        renders[0]++;
+                        return localeOf(representative) + ":" + secondsLeft;
+                    }
+
+                    @Override
+                    public void send(String recipient, String message) {
+                        sent.add(message);
+                    }
+                }, 1000);
+
+        poll.setSendExpirationWarning(true);
+        poll.setWarningThresholdsInSeconds(Arrays.asList(30, 10));
+        broadcaster.track("100001", poll);
+        assertEquals(2, broadcaster.pendingWarnings());
+
+        long end = poll.getEffectiveEndMillis();
+        assertEquals(0, broadcaster.tick(end - 31_000));
+        assertEquals(1000, broadcaster.tick(end - 30_000));
+        assertEquals(2, renders[0]);
+        assertEquals(4000, broadcaster.pendingSends());
+
+        int ticks = 1;
+        while (broadcaster.pendingSends() > 0) {
+            broadcaster.tick(end - 29_000);
+            ticks++;
+        }
+        assertEquals(5, ticks);
+        assertEquals(5000, sent.size());
+        assertEquals(2500, sent.stream().filter("es:30"::equals).count());
+
+        // Forcing an early end drops the remaining warning
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        poll.forceEnd();
+        assertEquals(0, broadcaster.tick(end - 5_000));
+        assertEquals(2, renders[0]);
+        assertEquals(0, broadcaster.pendingWarnings());
+    }
+
+    @Test
+    void testUntrackDropsWarningsAlreadyRendered() {
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            recipients.add("en-" + i);
+        }
+        List<String> sent = new ArrayList<>();
+        ExpirationWarningBroadcaster<String, String> broadcaster = new ExpirationWarningBroadcaster<>(
+                new ExpirationWarningBroadcaster.Platform<String, String>() {
+                    @Override
+                    public Collection<String> resolveRecipients(Set<String> ids) {
+                        return recipients;
+                    }
+
+                    @Override
+                    public String localeOf(String recipient) {
+                        return "en";
+                    }
+
+                    @Override
+                    public String render(String representative, String pollId, PollObject p, long secondsLeft) {
+                        return pollId + ":" + secondsLeft;
+                    }
+
+                    @Override
+                    public void send(String recipient, String message) {
+                        sent.add(message);
+                    }
+                }, 100);
+
+        PollObject other = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+        for (PollObject p : Arrays.asList(poll, other)) {
+            p.setSendExpirationWarning(true);
+            p.setWarningThresholdsInSeconds(Arrays.asList(10));
+        }
+        broadcaster.track("100001", poll);
+        broadcaster.track("100002", other);
+
+        long end = poll.getEffectiveEndMillis();
+        assertEquals(100, broadcaster.tick(end - 10_000));
+        assertEquals(900, broadcaster.pendingSends());
+
+        // Ended part way through sending; nobody else hears it is about to end
+        broadcaster.untrack("100001");
+        int before = (int) sent.stream().filter(m -> m.startsWith("100001")).count();
+        while (broadcaster.pendingSends() > 0) {
+            broadcaster.tick(end - 9_000);
+        }
+        assertEquals(before, sent.stream().filter(m -> m.startsWith("100001")).count());
+        assertEquals(500, sent.stream().filter(m -> m.startsWith("100002")).count());
+    }
+}
@@ -0,0 +1,130 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotPollDispatcherTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testHotPollQueuesVotesAndAcknowledgesInBatches() throws InterruptedException {
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        long now = clock.currentTimeMillis();
+        List<List<HotPollDispatcher.Ack>> batches = new ArrayList<>();
+        HotPollDispatcher dispatcher = new HotPollDispatcher((id, p, acks) -> batches.add(acks), 100);
+
+        // Below the threshold votes are applied by the caller
+        for (int i = 0; i < 150; i++) {
+            VoteRequest request = VoteRequest.single(UUID.randomUUID(), "Option 1");
+            assertFalse(dispatcher.submit("100001", poll, request));
+            assertTrue(poll.castVote(request.getVoter(), request.getOption()));
+        }
+        assertEquals(0, dispatcher.drain(now + 1000));
+        assertTrue(dispatcher.isHot("100001"));
+
+        int threads = 4;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(dispatcher.submit("100001", poll, VoteRequest.single(UUID.randomUUID(), "Option 2")));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        UUID repeat = UUID.randomUUID();
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.single(repeat, "Option 3")));
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.single(repeat, "Option 2")));
+        assertEquals(threads * perThread + 2, dispatcher.pendingVotes());
+        assertEquals(150, poll.getResults().getCount(0));
+
+        assertEquals(threads * perThread + 2, dispatcher.drain(now + 1100));
+        assertEquals(1, batches.size());
+        // The repeat voter hears once, about the vote that counted
+        assertEquals(threads * perThread + 1, batches.get(0).size());
+        assertTrue(batches.get(0).stream().allMatch(ack -> ack.getResult().isAccepted()));
+        assertEquals(threads * perThread, poll.getResults().getCount(1));
+        assertEquals(1, poll.getResults().getCount(2));
+
+        // Still busy in this window, quiet in the next
+        assertEquals(0, dispatcher.drain(now + 2100));
+        assertTrue(dispatcher.isHot("100001"));
+        assertEquals(0, dispatcher.drain(now + 3100));
+        assertFalse(dispatcher.isHot("100001"));
+        assertFalse(dispatcher.submit("100001", poll, VoteRequest.single(UUID.randomUUID(), "Option 1")));
+    }
+
+    @Test
+    void testHotPollKeepsUndoInOrderAndAppliesQueuedVotesBeforeEnding() {
+        poll.setAllowVoteUndo(true);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        long now = clock.currentTimeMillis();
+        List<HotPollDispatcher.Ack> acks = new ArrayList<>();
+        HotPollDispatcher dispatcher = new HotPollDispatcher((id, p, batch) -> acks.addAll(batch), 1);
+        dispatcher.submit("100001", poll, VoteRequest.single(UUID.randomUUID(), "Option 1"));
+        dispatcher.drain(now + 1000);
+        assertTrue(dispatcher.isHot("100001"));
+
+        // A withdrawal queued behind the vote it withdraws
+        UUID voter = UUID.randomUUID();
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.single(voter, "Option 2")));
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.undo(voter)));
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.undo(UUID.randomUUID())));
+        assertEquals(3, dispatcher.flush("100001"));
+        assertFalse(poll.hasVoted(voter));
+        assertEquals(0, poll.getResults().getCount(1));
+        assertEquals(3, acks.size());
+        assertEquals(VoteResult.ACCEPTED, acks.get(0).getResult());
+        assertTrue(acks.get(1).getRequest().isUndo());
+        assertEquals(VoteResult.ACCEPTED, acks.get(1).getResult());
+        assertEquals(VoteResult.NOT_VOTED, acks.get(2).getResult());
+        assertFalse(poll.audit(false).hasDrift());
+
+        // Flushed before ending, a queued vote still counts
+        acks.clear();
+        assertTrue(dispatcher.submit("100001", poll, VoteRequest.single(voter, "Option 3")));
+        dispatcher.flush("100001");
+        poll.forceEnd();
+        assertEquals(1, poll.getResults().getCount(2));
+        assertEquals(VoteResult.ACCEPTED, acks.get(0).getResult());
+
+        // Forgetting a poll acknowledges what was queued rather than dropping it
+        PollObject other = new PollObject(TITLE, OPTIONS, DESCRIPTION, 0, DURATION_SEC, clock) {};
+        clock.setCurrentTime(other.getCurrentDateTime().plusSeconds(1));
+        dispatcher.submit("100002", other, VoteRequest.single(UUID.randomUUID(), "Option 1"));
+        dispatcher.drain(clock.currentTimeMillis() + 1000);
+        acks.clear();
+        assertTrue(dispatcher.submit("100002", other, VoteRequest.single(UUID.randomUUID(), "Option 1")));
+        dispatcher.forget("100002");
+        assertEquals(1, acks.size());
+        assertEquals(0, dispatcher.pendingVotes());
+    }
+}
@@ -0,0 +1,13 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.util.List;
+
+/**
+ * A poll on the system clock. Unlike an anonymous subclass made in a test, it holds no
+ * reference to the test instance.
+ */
+class PlainPoll extends PollObject {
+    PlainPoll(String title, List<String> options) {
+        super(title, options, "", 0, 60);
+    }
+}
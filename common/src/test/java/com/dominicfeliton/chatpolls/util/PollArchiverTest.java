@@ -0,0 +1,59 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollArchiverTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testArchivedPollKeepsTalliesAndRehydratesBallots(@TempDir Path dir) throws Exception {
+        poll.setPollType(PollType.RANKED);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID voter1 = UUID.randomUUID();
+        UUID voter2 = UUID.randomUUID();
+        List<String> ranking = Arrays.asList("Option 2", "Option 1");
+        assertTrue(poll.castRankedVote(voter1, ranking));
+        assertTrue(poll.castRankedVote(voter2, Arrays.asList("Option 2", "Option 3")));
+        poll.forceEnd();
+
+        PollArchiver archiver = new PollArchiver(dir, 60_000L);
+        long ended = poll.getEffectiveEndMillis();
+        assertFalse(archiver.archiveIfCold(poll, ended + 1000));
+        assertTrue(archiver.archiveIfCold(poll, ended + 61_000));
+        assertTrue(poll.isArchived());
+        assertTrue(Files.exists(archiver.fileFor(poll)));
+        assertEquals("Option 2", poll.calculateRankedWinner());
+
+        // The first read pulls the ballots back in
+        assertEquals(ranking, poll.getRankedVotes(voter1));
+        assertFalse(poll.isArchived());
+        assertNull(poll.getRankedVotes(UUID.randomUUID()));
+
+        // Not archived again until it has been unused for the full delay
+        long rehydrated = poll.getLastRehydratedMillis();
+        assertFalse(archiver.archiveIfCold(poll, rehydrated + 1000));
+        assertTrue(archiver.archiveIfCold(poll, rehydrated + 61_000));
+        assertTrue(poll.hasVoted(voter2));
+    }
+}
@@ -0,0 +1,62 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollIdAllocatorTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testPollIdsNeverRepeatAndResolveByPrefix(@TempDir Path dir) throws Exception {
+        Path state = dir.resolve("next-poll-id");
+        PollIdAllocator allocator = new PollIdAllocator(state, -1);
+        Set<String> seen = new java.util.HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(seen.add(allocator.next()));
+        }
+        // A restart resumes past everything handed out, even without a clean shutdown
+        PollIdAllocator restarted = new PollIdAllocator(state, -1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(seen.add(restarted.next()));
+        }
+        assertTrue(seen.stream().allMatch(id -> id.length() <= 2));
+
+        // Node ids keep servers apart
+        assertNotEquals(new PollIdAllocator(0).next(), new PollIdAllocator(1).next());
+
+        PollRegistry registry = new PollRegistry();
+        UUID creator = UUID.randomUUID();
+        for (String id : Arrays.asList("a1", "a2", "b7", "123456")) {
+            assertTrue(registry.register(id, creator, new PlainPoll(id, OPTIONS)));
+        }
+        assertEquals(Arrays.asList("a1", "a2"), registry.findIdsByPrefix("A", 10));
+        assertEquals(Arrays.asList("a2"), registry.findIdsByPrefix("a", 10, id -> !id.equals("a1")));
+        assertEquals("b7", registry.resolveId("b"));
+        assertEquals("123456", registry.resolveId("12"));
+        assertNull(registry.resolveId("a"));
+        assertEquals(4, registry.findIdsByPrefix("", 10).size());
+
+        registry.unregister("a1");
+        assertEquals("a2", registry.resolveId("a"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollJournalTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testJournalReplaysChangesMadeSinceTheLastSave(@TempDir Path dir) throws Exception {
+        PollJournal.Codec codec = new PollJournal.Codec() {
+            @Override
+            public byte[] encode(PollObject p) {
+                return p.getTitle().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public PollObject decode(byte[] data) throws java.io.IOException {
+                String title = new String(data, java.nio.charset.StandardCharsets.UTF_8);
+                if (title.equals("Unreadable")) throw new java.io.IOException("Unknown field");
+                return new PlainPoll(title, OPTIONS);
+            }
+        };
+        PollRegistry live = new PollRegistry();
+        UUID creator = UUID.randomUUID();
+        live.register("100001", creator, poll);
+        PollJournal journal = new PollJournal(dir, codec, 0);
+        journal.open();
+        journal.attach("100001", poll);
+
+        poll.setAllowVoteUndo(true);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID stays = UUID.randomUUID();
+        UUID changes = UUID.randomUUID();
+        UUID leaves = UUID.randomUUID();
+        assertTrue(poll.castVote(stays, "Option 1"));
+        assertTrue(poll.castVote(changes, "Option 1"));
+        assertTrue(poll.undoVote(changes));
+        assertTrue(poll.castVote(changes, "Option 3"));
+        assertTrue(poll.castVote(leaves, "Option 2"));
+        assertTrue(poll.undoVote(leaves));
+        poll.forceEnd();
+        journal.logCreate("100004", creator, new PlainPoll("Unreadable", OPTIONS));
+        journal.logCreate("100002", creator, new PlainPoll("Created later", OPTIONS));
+        journal.logCreate("100003", creator, new PlainPoll("Deleted later", OPTIONS));
+        journal.logDelete("100003");
+        journal.close();
+        assertNull(journal.takeFailure());
+
+        // A record cut off mid-write ends the segment
+        Path segment;
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2}, java.nio.file.StandardOpenOption.APPEND);
+
+        // The last save had the poll, but none of its votes
+        PollRegistry restarted = new PollRegistry();
+        PollObject saved = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+        restarted.register("100001", creator, saved);
+        List<String> restored = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        PollJournal.Listener listener = new PollJournal.Listener() {
+            @Override
+            public void restored(String pollId, PollObject p) {
+                restored.add(pollId);
+            }
+
+            @Override
+            public void deleted(String pollId, PollObject p) {
+                deleted.add(pollId);
+            }
+
+            @Override
+            public void skipped(Path segment, Exception e) {
+                assertEquals("Unknown field", e.getMessage());
+            }
+        };
+        PollJournal reopened = new PollJournal(dir, codec, 0);
+        // A record that no longer decodes is skipped, not the rest of the journal
+        assertEquals(10, reopened.replay(restarted, listener));
+        assertEquals(1, reopened.getSkippedRecords());
+        assertFalse(restarted.contains("100004"));
+        assertEquals(List.of("100002", "100003"), restored);
+        assertEquals(List.of("100003"), deleted);
+        assertEquals("Created later", restarted.get("100002").getTitle());
+        assertFalse(restarted.contains("100003"));
+        assertEquals(1, saved.getOptionVotes().get("Option 1").intValue());
+        assertEquals(0, saved.getOptionVotes().get("Option 2").intValue());
+        assertEquals(1, saved.getOptionVotes().get("Option 3").intValue());
+        assertFalse(saved.hasVoted(leaves));
+        clock.setCurrentTime(clock.getCurrentDateTime().plusSeconds(1));
+        assertTrue(saved.hasEnded());
+
+        // Records hold the resulting entries, so replaying again ends in the same state
+        Map<String, Integer> replayed = saved.getOptionVotes();
+        reopened.replay(restarted, listener);
+        new PollJournal(dir, codec, 0).replay(live, listener);
+        assertEquals(replayed, saved.getOptionVotes());
+        assertEquals(replayed, poll.getOptionVotes());
+        assertFalse(restarted.contains("100003"));
+        assertFalse(saved.audit(false).hasDrift());
+        assertFalse(poll.audit(false).hasDrift());
+        // Each poll's records can be applied as it loads, before it is registered
+        PollRegistry loading = new PollRegistry();
+        PollObject fromFile = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+        PollJournal.Replay replay = new PollJournal(dir, codec, 0).prepareReplay(loading, listener);
+        assertEquals(Set.of(creator), replay.getCreators());
+        assertTrue(replay.replayInto("100001", fromFile) > 0);
+        assertEquals(replayed, fromFile.getOptionVotes());
+        assertEquals(0, replay.replayInto("100001", fromFile));
+        assertEquals(0, loading.size());
+        replay.replayCreated(creator);
+        assertTrue(loading.contains("100002"));
+        assertFalse(loading.contains("100003"));
+        assertTrue(replay.getCreators().isEmpty());
+        assertEquals(PollLoader.DELETED, new PollJournal(dir, codec, 0).prepareReplay(new PollRegistry(), listener)
+                .replayInto("100003", new PlainPoll("Deleted later", OPTIONS)));
+    }
+}
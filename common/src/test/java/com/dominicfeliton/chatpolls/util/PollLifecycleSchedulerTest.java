@@ -0,0 +1,108 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollLifecycleSchedulerTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testLifecycleSchedulerFiresEachTransitionOnce() {
+        PollLifecycleScheduler scheduler = new PollLifecycleScheduler(1000, 8);
+        List<PollStatus> fired = new ArrayList<>();
+        scheduler.addListener((id, p, status) -> fired.add(status));
+
+        long now = clock.currentTimeMillis();
+        scheduler.schedule("100001", poll);
+        assertEquals(PollStatus.SCHEDULED, poll.getLifecycleStatus());
+        assertEquals(0, scheduler.tick(now));
+        assertEquals(0, scheduler.tick(now + DELAY_SEC * 1000L - 1000));
+
+        assertEquals(1, scheduler.tick(now + (DELAY_SEC + 1) * 1000L));
+        assertEquals(Arrays.asList(PollStatus.ACTIVE), fired);
+
+        // The end is more than one revolution of the 8-slot wheel away
+        assertEquals(0, scheduler.tick(now + (DELAY_SEC + 30) * 1000L));
+        assertEquals(1, scheduler.tick(now + (DELAY_SEC + DURATION_SEC + 1) * 1000L));
+        assertEquals(Arrays.asList(PollStatus.ACTIVE, PollStatus.ENDED), fired);
+        assertEquals(0, scheduler.pendingCount());
+        assertEquals(0, scheduler.tick(now + (DELAY_SEC + DURATION_SEC + 10) * 1000L));
+    }
+
+    @Test
+    void testLifecycleSchedulerFiresFarTimersOnTimeThroughEveryLevel() {
+        // Four buckets per level, so a poll hours out passes down through several levels
+        PollLifecycleScheduler scheduler = new PollLifecycleScheduler(1000, 4);
+        Map<String, PollObject> polls = new HashMap<>();
+        Map<String, List<Long>> firedAt = new HashMap<>();
+        long[] now = {clock.currentTimeMillis()};
+        scheduler.addListener((id, p, status) -> firedAt.computeIfAbsent(id, k -> new ArrayList<>()).add(now[0]));
+
+        long latest = 0;
+        for (int i = 0; i < 40; i++) {
+            long delay = 1 + (long) i * i * 7;
+            long duration = 1 + (long) (39 - i) * 97;
+            String id = String.valueOf(100001 + i);
+            PollObject p = new PollObject(TITLE, OPTIONS, DESCRIPTION, delay, duration, clock) {};
+            polls.put(id, p);
+            scheduler.schedule(id, p);
+            latest = Math.max(latest, p.getEffectiveEndMillis());
+        }
+        // Cancelled while on a coarse level
+        scheduler.cancel("100040");
+
+        long start = now[0];
+        for (; now[0] <= latest + 2000; now[0] += 1000) {
+            scheduler.tick(now[0]);
+        }
+        assertEquals(0, scheduler.pendingCount());
+        assertNull(firedAt.get("100040"));
+        for (int i = 0; i < 39; i++) {
+            String id = String.valueOf(100001 + i);
+            PollObject p = polls.get(id);
+            List<Long> times = firedAt.get(id);
+            assertEquals(2, times.size(), id);
+            // Each transition fires on the first tick after it is due, never before
+            long opened = times.get(0);
+            long ended = times.get(1);
+            assertTrue(opened > p.getStartMillis() && opened - 1000 <= p.getStartMillis(), id);
+            assertTrue(ended > p.getEffectiveEndMillis() && ended - 1000 <= p.getEffectiveEndMillis(), id);
+            assertTrue(opened >= start);
+        }
+    }
+
+    @Test
+    void testLifecycleSchedulerCatchesUpAfterRestart() {
+        // Saved as scheduled, loaded after it should already have ended
+        poll.setLifecycleStatus(PollStatus.SCHEDULED);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + DURATION_SEC + 5));
+
+        PollLifecycleScheduler scheduler = new PollLifecycleScheduler();
+        List<PollStatus> fired = new ArrayList<>();
+        scheduler.addListener((id, p, status) -> fired.add(status));
+        scheduler.schedule("100001", poll);
+
+        assertEquals(2, scheduler.tick(clock.currentTimeMillis()));
+        assertEquals(Arrays.asList(PollStatus.ACTIVE, PollStatus.ENDED), fired);
+        assertEquals(PollStatus.ENDED, poll.getLifecycleStatus());
+    }
+}
@@ -0,0 +1,145 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollLoaderTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testLoaderReadsFilesInParallelAndFallsBackToBackups(@TempDir Path dir) throws Exception {
+        Map<UUID, Path> files = new java.util.HashMap<>();
+        for (int i = 0; i < 12; i++) {
+            UUID creator = UUID.randomUUID();
+            Map<String, PollObject> polls = Map.of(String.valueOf(200000 + i), new PlainPoll("Poll " + i, OPTIONS));
+            Path file = dir.resolve(creator + ".chps");
+            SnapshotFile.write(file, out -> PollSnapshot.write(out, creator, polls));
+            files.put(creator, file);
+        }
+        // One file with a backup to fall back to, one without
+        UUID restored = UUID.randomUUID();
+        Path restoredFile = dir.resolve(restored + ".chps");
+        SnapshotFile.write(restoredFile, out -> PollSnapshot.write(out, restored, Map.of("300001", new PlainPoll("Old", OPTIONS))));
+        SnapshotFile.write(restoredFile, out -> out.write(new byte[]{1, 2, 3}));
+        files.put(restored, restoredFile);
+        // A file that reads fine but no longer parses falls back the same way
+        UUID reparsed = UUID.randomUUID();
+        Path reparsedFile = dir.resolve(reparsed + ".json");
+        SnapshotFile.write(reparsedFile, out -> out.write("RANKED".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        SnapshotFile.write(reparsedFile, out -> out.write("REMOVED_TYPE".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        files.put(reparsed, reparsedFile);
+        UUID broken = UUID.randomUUID();
+        Path brokenFile = dir.resolve(broken + ".chps");
+        Files.write(brokenFile, new byte[]{4, 5, 6});
+        files.put(broken, brokenFile);
+
+        // Players with open polls go first
+        Set<UUID> first = Set.of(restored, reparsed);
+
+        PollRegistry registry = new PollRegistry();
+        PollLoader loader = new PollLoader(registry, 4);
+        Set<String> threads = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        List<Path> failed = new java.util.concurrent.CopyOnWriteArrayList<>();
+        List<Path> fellBack = new java.util.concurrent.CopyOnWriteArrayList<>();
+        Set<UUID> finished = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        java.util.concurrent.CompletableFuture<Void> done = loader.load(files, first,
+                file -> {
+                    if (file.getFileName().toString().contains(".json")) {
+                        PollObject p = new PlainPoll("Parsed", OPTIONS);
+                        p.setPollType(PollType.valueOf(Files.readString(file)));
+                        return Map.of("400001", p);
+                    }
+                    PollSnapshot snapshot = PollSnapshot.open(file);
+                    Map<String, PollObject> polls = new java.util.HashMap<>();
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        polls.put(snapshot.getPollId(i), snapshot.decode(i, (title, options, description) -> new PlainPoll(title, options)));
+                    }
+                    return polls;
+                },
+                new PollLoader.Listener() {
+                    @Override
+                    public void prepare(String pollId, PollObject p) {
+                        threads.add(Thread.currentThread().getName());
+                    }
+
+                    @Override
+                    public int replay(String pollId, PollObject p) {
+                        // Deleted since it was saved
+                        return pollId.equals("200003") ? PollLoader.DELETED : 0;
+                    }
+
+                    @Override
+                    public void loaded(String pollId, PollObject p) {
+                    }
+
+                    @Override
+                    public void fileLoaded(UUID creator) {
+                        // Registered before the player stops loading
+                        assertTrue(loader.isLoading(creator));
+                        finished.add(creator);
+                    }
+
+                    @Override
+                    public void skipped(String pollId, Path file) {
+                    }
+
+                    @Override
+                    public void failed(Path file, Exception e) {
+                        failed.add(file);
+                    }
+
+                    @Override
+                    public void restoredFromBackup(Path file, Exception e) {
+                        fellBack.add(file);
+                    }
+                });
+        loader.whenFirstLoaded().get(10, TimeUnit.SECONDS);
+        for (UUID creator : first) {
+            assertFalse(loader.isLoading(creator));
+        }
+        done.get(10, TimeUnit.SECONDS);
+        assertTrue(loader.isDone());
+
+        assertEquals(13, loader.getPollCount());
+        assertEquals(14, loader.getFileCount());
+        assertTrue(loader.getDurationMillis() >= 0);
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("ChatPolls-PollLoader-")));
+        assertEquals(List.of(brokenFile), failed);
+        assertEquals(Set.of(restoredFile, reparsedFile), Set.copyOf(fellBack));
+        assertEquals("Old", registry.get("300001").getTitle());
+        assertEquals(PollType.RANKED, registry.get("400001").getPollType());
+        assertFalse(registry.contains("200003"));
+        for (UUID creator : files.keySet()) {
+            assertFalse(loader.isLoading(creator));
+        }
+        assertEquals(14, finished.size());
+        assertFalse(finished.contains(broken));
+        // Only the files loaded from their backups, or holding a deleted poll, need rewriting
+        Set<UUID> dirty = registry.takeDirtyCreators();
+        assertEquals(3, dirty.size());
+        assertTrue(dirty.containsAll(Set.of(restored, reparsed)));
+    }
+}
@@ -2,10 +2,17 @@ package com.dominicfeliton.chatpolls.util;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,19 +25,6 @@ class PollObjectTest {
     private final long DELAY_SEC = 5;
     private final long DURATION_SEC = 60;
 
-    private static class TestClock implements Clock {
-        private LocalDateTime currentTime = LocalDateTime.now();
-
-        public void setCurrentTime(LocalDateTime time) {
-            this.currentTime = time;
-        }
-
-        @Override
-        public LocalDateTime getCurrentDateTime() {
-            return currentTime;
-        }
-    }
-
     @BeforeEach
     void setUp() {
         clock = new TestClock();
@@ -88,6 +82,38 @@ class PollObjectTest {
         assertTrue(poll.hasEnded());
     }
 
+    @Test
+    void testTimeChecksAgainstEpochMillis() {
+        assertEquals(Clock.toEpochMillis(clock.getCurrentDateTime()), clock.currentTimeMillis());
+        long start = poll.getStartMillis();
+        long end = poll.getEffectiveEndMillis();
+        assertEquals(DURATION_SEC * 1000L, end - start);
+
+        // Both bounds are exclusive
+        assertFalse(poll.hasStarted(start));
+        assertTrue(poll.hasStarted(start + 1));
+        assertFalse(poll.hasEnded(end));
+        assertTrue(poll.hasEnded(end + 1));
+        assertFalse(poll.isOpen(start));
+        assertTrue(poll.isOpen(start + 1));
+        assertTrue(poll.isOpen(end));
+        assertFalse(poll.isOpen(end + 1));
+
+        // The no-argument checks read the poll's clock
+        clock.setCurrentTime(Clock.toLocalDateTime(start + 1));
+        assertEquals(start + 1, clock.currentTimeMillis());
+        assertTrue(poll.hasStarted());
+        assertFalse(poll.hasEnded());
+
+        long forced = start + 1000;
+        clock.setCurrentTime(Clock.toLocalDateTime(forced));
+        poll.forceEnd();
+        assertEquals(forced, poll.getEffectiveEndMillis());
+        assertTrue(poll.isOpen(forced));
+        assertFalse(poll.isOpen(forced + 1));
+        assertTrue(poll.hasEnded(forced + 1));
+    }
+
     @Test
     void testInvalidVotes() {
         UUID voter = UUID.randomUUID();
@@ -143,4 +169,454 @@ class PollObjectTest {
         // Option 2 should win as it has majority support
         assertEquals("Option 2", poll.calculateRankedWinner());
     }
+
+    @Test
+    void testConcurrentVoteCounting() throws InterruptedException {
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        int threads = 8;
+        int votesPerThread = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < votesPerThread; i++) {
+                    poll.castVote(UUID.randomUUID(), OPTIONS.get((i + offset) % OPTIONS.size()));
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        int total = poll.getOptionVotes().values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(threads * votesPerThread, total);
+        assertEquals(OPTIONS, List.copyOf(poll.getOptionVotes().keySet()));
+    }
+
+    @Test
+    void testRankedBallotsSurviveCompactStorage() {
+        poll.setPollType(PollType.RANKED);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        List<List<String>> rankings = Arrays.asList(
+                Arrays.asList("Option 3"),
+                Arrays.asList("Option 2", "Option 1"),
+                Arrays.asList("Option 1", "Option 3", "Option 2"),
+                Arrays.asList()
+        );
+        UUID[] voters = new UUID[1000];
+        for (int i = 0; i < voters.length; i++) {
+            voters[i] = UUID.randomUUID();
+            assertTrue(poll.castRankedVote(voters[i], rankings.get(i % rankings.size())));
+        }
+        for (int i = 0; i < voters.length; i++) {
+            assertTrue(poll.hasVoted(voters[i]));
+            assertEquals(rankings.get(i % rankings.size()), poll.getRankedVotes(voters[i]));
+        }
+        assertNull(poll.getRankedVotes(UUID.randomUUID()));
+    }
+
+    @Test
+    void testRankedWinnerAfterEliminations() {
+        poll.setPollType(PollType.RANKED);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        // No first round majority; Option 3 is eliminated and its ballot transfers to Option 1
+        poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 1", "Option 3"));
+        poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 1", "Option 3"));
+        poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 2", "Option 3"));
+        poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 2", "Option 3"));
+        poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 3", "Option 1"));
+        assertEquals("Option 1", poll.calculateRankedWinner());
+
+        for (int i = 0; i < 100_000; i++) {
+            poll.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 2", "Option 1"));
+        }
+        assertEquals("Option 2", poll.calculateRankedWinner());
+    }
+
+    @Test
+    void testResultSnapshotIsCachedUntilNextVote() {
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        PollResultSnapshot empty = poll.getResults();
+        assertSame(empty, poll.getResults());
+        assertEquals(0, empty.getTotalVotes());
+
+        long version = poll.getVoteVersion();
+        assertTrue(poll.castVote(UUID.randomUUID(), "Option 2"));
+        assertTrue(poll.getVoteVersion() > version);
+
+        PollResultSnapshot afterVote = poll.getResults();
+        assertNotSame(empty, afterVote);
+        assertSame(afterVote, poll.getResults());
+        assertEquals(1, afterVote.getTotalVotes());
+        assertEquals(100.0, afterVote.getPercentage(1), 0.001);
+        assertEquals(0, empty.getTotalVotes());
+    }
+
+    @Test
+    void testBatchVotesReportPerVoteResults() {
+        UUID repeat = UUID.randomUUID();
+        List<VoteRequest> batch = Arrays.asList(
+                VoteRequest.single(repeat, "Option 1"),
+                VoteRequest.single(repeat, "Option 2"),
+                VoteRequest.single(UUID.randomUUID(), "Invalid Option"),
+                VoteRequest.ranked(UUID.randomUUID(), Arrays.asList("Option 1", "Option 2")),
+                VoteRequest.single(UUID.randomUUID(), "Option 3"));
+
+        VoteResult[] early = poll.castVotes(batch);
+        for (VoteResult result : early) {
+            assertEquals(VoteResult.POLL_CLOSED, result);
+        }
+
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        long version = poll.getVoteVersion();
+        VoteResult[] results = poll.castVotes(batch);
+        assertArrayEquals(new VoteResult[]{
+                VoteResult.ACCEPTED,
+                VoteResult.ALREADY_VOTED,
+                VoteResult.INVALID_OPTION,
+                VoteResult.WRONG_POLL_TYPE,
+                VoteResult.ACCEPTED}, results);
+        assertEquals(version + 2, poll.getVoteVersion());
+
+        PollResultSnapshot snapshot = poll.getResults();
+        assertEquals(2, snapshot.getTotalVotes());
+        assertEquals(1, snapshot.getCount(0));
+        assertEquals(1, snapshot.getCount(2));
+    }
+
+    @Test
+    void testApprovalSelectionsUpdateCountersByDiff() {
+        poll.setPollType(PollType.APPROVAL);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID voter = UUID.randomUUID();
+
+        assertTrue(poll.castVote(voter, "Option 1"));
+        assertTrue(poll.castVote(voter, "Option 3"));
+        assertFalse(poll.castVote(voter, "Option 3"));
+        assertEquals(Arrays.asList("Option 1", "Option 3"), poll.getPlayerSelections(voter));
+
+        // Dropping an option needs vote undo
+        assertFalse(poll.castSelection(voter, Arrays.asList("Option 2", "Option 3")));
+        poll.setAllowVoteUndo(true);
+        assertTrue(poll.castSelection(voter, Arrays.asList("Option 2", "Option 3")));
+
+        Map<String, Integer> votes = poll.getOptionVotes();
+        assertEquals(0, votes.get("Option 1"));
+        assertEquals(1, votes.get("Option 2"));
+        assertEquals(1, votes.get("Option 3"));
+        assertTrue(poll.hasVoted(voter));
+        assertNull(poll.getPlayerVote(voter));
+    }
+
+    @Test
+    void testMultipleChoiceHonorsSelectionLimit() {
+        poll.setPollType(PollType.MULTIPLE);
+        poll.setMaxVotesPerUser(2);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID voter = UUID.randomUUID();
+
+        assertFalse(poll.castSelection(voter, OPTIONS));
+        assertTrue(poll.castSelection(voter, Arrays.asList("Option 1", "Option 2")));
+        assertFalse(poll.castVote(voter, "Option 3"));
+
+        VoteResult[] results = poll.castVotes(Arrays.asList(
+                VoteRequest.single(UUID.randomUUID(), "Option 3"),
+                VoteRequest.selection(UUID.randomUUID(), OPTIONS),
+                VoteRequest.ranked(UUID.randomUUID(), OPTIONS)));
+        assertArrayEquals(new VoteResult[]{
+                VoteResult.ACCEPTED,
+                VoteResult.INVALID_OPTION,
+                VoteResult.WRONG_POLL_TYPE}, results);
+        assertEquals(3, poll.getResults().getTotalVotes());
+    }
+
+    @Test
+    void testConcurrentUndoAndChangeKeepCountsExact() throws InterruptedException {
+        poll.setAllowVoteUndo(true);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        UUID[] voters = new UUID[16];
+        for (int i = 0; i < voters.length; i++) {
+            voters[i] = UUID.randomUUID();
+        }
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 5000; i++) {
+                    UUID voter = voters[(i + offset) % voters.length];
+                    if (i % 3 == 0) {
+                        poll.undoVote(voter);
+                    } else {
+                        poll.changeVote(voter, OPTIONS.get((i + offset) % OPTIONS.size()));
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        long[] expected = new long[OPTIONS.size()];
+        for (UUID voter : voters) {
+            String vote = poll.getPlayerVote(voter);
+            if (vote != null) {
+                expected[OPTIONS.indexOf(vote)]++;
+            }
+        }
+        for (int i = 0; i < OPTIONS.size(); i++) {
+            assertEquals(expected[i], poll.getResults().getCount(i));
+        }
+    }
+
+    @Test
+    void testUndoRankedBallot() {
+        poll.setPollType(PollType.RANKED);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID voter = UUID.randomUUID();
+
+        assertTrue(poll.castRankedVote(voter, Arrays.asList("Option 2", "Option 1")));
+        assertFalse(poll.undoVote(voter));
+
+        poll.setAllowVoteUndo(true);
+        assertTrue(poll.undoVote(voter));
+        assertFalse(poll.undoVote(voter));
+        assertFalse(poll.hasVoted(voter));
+        assertEquals(0, poll.getResults().getRankedBallots());
+
+        assertTrue(poll.changeVote(voter, Arrays.asList("Option 3")));
+        assertEquals("Option 3", poll.calculateRankedWinner());
+    }
+
+    @Test
+    void testSchulzeAndBordaFromPairwiseMatrix() {
+        poll.setPollType(PollType.SCHULZE);
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        // A beats B 5-2, B beats C 5-2, C beats A 4-3: a cycle that Schulze resolves to A
+        List<String> abc = Arrays.asList("Option 1", "Option 2", "Option 3");
+        List<String> bca = Arrays.asList("Option 2", "Option 3", "Option 1");
+        List<String> cab = Arrays.asList("Option 3", "Option 1", "Option 2");
+        for (int i = 0; i < 3; i++) assertTrue(poll.castRankedVote(UUID.randomUUID(), abc));
+        for (int i = 0; i < 2; i++) assertTrue(poll.castRankedVote(UUID.randomUUID(), bca));
+        for (int i = 0; i < 2; i++) assertTrue(poll.castRankedVote(UUID.randomUUID(), cab));
+
+        PollResultSnapshot schulze = poll.getResults();
+        assertEquals("Option 1", schulze.getRankedWinner());
+        assertEquals(7, schulze.getRankedBallots());
+        assertNull(schulze.getRankedResult());
+
+        poll.setPollType(PollType.BORDA);
+        PollResultSnapshot borda = poll.getResults();
+        assertEquals("Option 1", borda.getRankedWinner());
+        assertEquals(8, borda.getBordaScore(0));
+        assertEquals(7, borda.getBordaScore(1));
+        assertEquals(6, borda.getBordaScore(2));
+    }
+
+    @Test
+    void testEmptyTwoOptionPollStaysSmall() {
+        PollObject small = new PlainPoll("Lunch?", Arrays.asList("Yes", "No"));
+        PollObject other = new PlainPoll("Dinner?", Arrays.asList(new String("Yes"), new String("No")));
+        assertSame(small.getOptions().get(0), other.getOptions().get(0));
+
+        // Everything reachable, shared clock and interned options included; about 14 KB before
+        // the voting log, voter segments and extras were made lazy
+        long bytes = GraphLayout.parseInstance(small).totalSize();
+        assertTrue(bytes < 2048, "Empty poll retains " + bytes + " bytes");
+    }
+
+    @Test
+    void testConcurrentSettingChangesAreNeverLost() throws InterruptedException {
+        int threads = 4;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    poll.addTag("t" + id + "-" + i);
+                }
+                return null;
+            });
+        }
+        pool.submit(() -> {
+            start.await();
+            for (int i = 0; i < perThread; i++) {
+                poll.setPollType(i % 2 == 0 ? PollType.MULTIPLE : PollType.APPROVAL);
+                poll.setMaxVotesPerUser(i);
+            }
+            return null;
+        });
+        PollDefinition before = poll.getDefinition();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        PollDefinition after = poll.getDefinition();
+        assertEquals(threads * perThread, after.getTags().size());
+        assertEquals(PollType.APPROVAL, after.getPollType());
+        assertEquals(perThread - 1, after.getMaxVotesPerUser());
+        // Earlier definitions are never modified
+        assertTrue(before.getTags().isEmpty());
+        assertEquals(PollType.SINGLE, before.getPollType());
+    }
+
+    @Test
+    void testLifecycleOnlyMovesForwardAndCancelIsFinal() {
+        PollLifecycleScheduler scheduler = new PollLifecycleScheduler();
+        List<PollStatus> fired = new ArrayList<>();
+        scheduler.addListener((id, p, status) -> fired.add(status));
+        scheduler.schedule("100001", poll);
+        assertEquals(PollStatus.SCHEDULED, poll.getLifecycleStatus());
+        assertThrows(IllegalStateException.class, () -> poll.setLifecycleStatus(PollStatus.ACTIVE));
+
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        assertEquals(1, scheduler.tick(clock.currentTimeMillis()));
+        assertFalse(poll.advanceLifecycle(PollStatus.SCHEDULED));
+        assertTrue(poll.castVote(UUID.randomUUID(), "Option 1"));
+
+        assertTrue(poll.cancel("Duplicate"));
+        assertFalse(poll.cancel("Again"));
+        assertFalse(poll.advanceLifecycle(PollStatus.ENDED));
+        assertEquals("Duplicate", poll.getCancellationReason());
+        assertEquals(PollStatus.CANCELLED, poll.statusAt(clock.currentTimeMillis()));
+        assertFalse(poll.castVote(UUID.randomUUID(), "Option 2"));
+
+        // The pending end timer finds the poll cancelled and announces nothing
+        scheduler.reschedule("100001");
+        assertEquals(0, scheduler.tick(clock.currentTimeMillis() + DURATION_SEC * 1000L));
+        assertEquals(Arrays.asList(PollStatus.ACTIVE), fired);
+        assertEquals(PollStatus.CANCELLED, poll.getLifecycleStatus());
+    }
+
+    @Test
+    void testLargePollsResolveOptionsIgnoringCaseAndRankLeaders() {
+        List<String> options = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            options.add("Map " + i);
+        }
+        options.add("map 7");
+        PollObject large = new PollObject("Maps", options, "", 0, 60, clock) {};
+        clock.setCurrentTime(large.getCurrentDateTime().plusSeconds(1));
+
+        assertEquals("Map 42", large.resolveOption("MAP 42"));
+        assertEquals("map 7", large.resolveOption("map 7"));
+        // Two options differ only in case, so only an exact match picks one
+        assertNull(large.resolveOption("MAP 7"));
+        assertNull(large.resolveOption("Map 300"));
+        assertEquals(Arrays.asList("Map 29", "Map 290", "Map 291"), large.findOptionsByPrefix("map 29", 3));
+        assertEquals(50, large.findOptionsByPrefix("MAP 2", 50).size());
+        assertEquals(111, large.findOptionsByPrefix("MAP 2", 500).size());
+
+        for (int i = 0; i < 300; i++) {
+            for (int v = 0; v < i % 7; v++) {
+                assertTrue(large.castVote(UUID.randomUUID(), large.resolveOption("map " + i)));
+            }
+        }
+        PollResultSnapshot results = large.getResults();
+        int[] top = results.topOrdinals(5);
+        assertArrayEquals(new int[]{6, 13, 20, 27, 34}, top);
+        assertArrayEquals(top, results.ordinalsByVotes(0, 5));
+        assertArrayEquals(new int[]{41, 48, 55, 62, 69}, results.ordinalsByVotes(1, 5));
+        assertEquals(61, results.pageCount(5));
+        assertEquals(0, results.ordinalsByVotes(61, 5).length);
+    }
+
+    @Test
+    void testAuditFindsAndRepairsDriftWithoutFlaggingLiveVotes() throws InterruptedException {
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    poll.castVote(UUID.randomUUID(), OPTIONS.get(i % OPTIONS.size()));
+                }
+                done.countDown();
+            });
+        }
+        // Votes racing the recount are not reported as drift
+        while (done.getCount() > 0) {
+            PollAudit racing = poll.audit(false);
+            assertTrue(racing.getVoters() <= 20000);
+            assertFalse(racing.hasDrift());
+            assertFalse(racing.isRepaired());
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(poll.audit(false).isSettled());
+        assertFalse(poll.audit(false).hasDrift());
+
+        poll.tally.getCounters().add(1, 7);
+        PollAudit audit = poll.audit(false);
+        assertEquals(20000, audit.getVoters());
+        assertArrayEquals(new int[]{1}, audit.getDriftedOptions());
+        assertEquals(7, audit.getDrift(1));
+        assertEquals(audit.getRecounted(1) + 7, audit.getLive(1));
+        assertFalse(audit.isRepaired());
+        assertTrue(poll.audit(true).isRepaired());
+        assertFalse(poll.audit(false).hasDrift());
+        assertEquals(6668, poll.getOptionVotes().get("Option 2").intValue());
+
+        // Repairs racing votes fix only the real drift, never the votes in flight
+        PollObject busy = new PollObject(TITLE, OPTIONS, DESCRIPTION, 0, DURATION_SEC, clock) {};
+        clock.setCurrentTime(busy.getCurrentDateTime().plusSeconds(1));
+        busy.tally.getCounters().add(2, 5);
+        ExecutorService voters = Executors.newFixedThreadPool(4);
+        CountDownLatch voted = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            voters.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    busy.castVote(UUID.randomUUID(), OPTIONS.get(i % OPTIONS.size()));
+                }
+                voted.countDown();
+            });
+        }
+        int repairs = 0;
+        while (voted.getCount() > 0) {
+            if (busy.audit(true).isRepaired()) repairs++;
+        }
+        assertTrue(voted.await(10, TimeUnit.SECONDS));
+        voters.shutdown();
+        if (busy.audit(true).isRepaired()) repairs++;
+        assertEquals(1, repairs);
+        assertFalse(busy.audit(false).hasDrift());
+        assertEquals(6668, busy.getOptionVotes().get("Option 1").intValue());
+        assertEquals(6668, busy.getOptionVotes().get("Option 2").intValue());
+        assertEquals(6664, busy.getOptionVotes().get("Option 3").intValue());
+
+        PollObject ranked = new PollObject(TITLE, OPTIONS, DESCRIPTION, 0, DURATION_SEC, clock) {};
+        ranked.setPollType(PollType.RANKED);
+        clock.setCurrentTime(ranked.getCurrentDateTime().plusSeconds(1));
+        assertTrue(ranked.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 2", "Option 1")));
+        assertTrue(ranked.castRankedVote(UUID.randomUUID(), Arrays.asList("Option 3")));
+        ranked.tally.rankedTally().remove(BallotCodec.forOptions(3).encode(new byte[]{2}, 1));
+        audit = ranked.audit(true);
+        assertEquals(1, audit.getBallotDrift());
+        assertEquals(1, audit.getDriftedBallotCodes());
+        assertTrue(audit.isRepaired());
+        assertEquals(2, ranked.tally.rankedTally().total());
+        assertFalse(ranked.audit(false).hasDrift());
+    }
 }
@@ -0,0 +1,106 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollRegistryTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testRegistryTracksCreatorTagAndStatus() {
+        PollRegistry registry = new PollRegistry();
+        UUID creator = UUID.randomUUID();
+        PollObject other = new PollObject(TITLE, OPTIONS, DESCRIPTION, 0, 10, clock) {};
+
+        assertTrue(registry.register("100001", creator, poll));
+        assertTrue(registry.register("100002", UUID.randomUUID(), other));
+        assertFalse(registry.register("100001", UUID.randomUUID(), other));
+
+        assertSame(poll, registry.get("100001"));
+        assertEquals(creator, registry.getCreator("100001"));
+        assertEquals(1, registry.getByCreator(creator).size());
+        assertEquals(PollStatus.SCHEDULED, registry.getStatus("100001"));
+
+        assertTrue(registry.addTag("100001", "Event"));
+        assertTrue(registry.getByTag("event").containsKey("100001"));
+
+        // Both running, then the short poll ends
+        long now = clock.currentTimeMillis();
+        assertEquals(2, registry.getByStatus(PollStatus.ACTIVE, now + (DELAY_SEC + 1) * 1000L).size());
+        assertEquals(Arrays.asList("100002"), registry.getEndingBefore(now + 20_000L));
+        assertTrue(registry.getByStatus(PollStatus.ENDED, now + 20_000L).containsKey("100002"));
+        assertEquals(PollStatus.ACTIVE, registry.getStatus("100001"));
+
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        poll.forceEnd();
+        registry.reindex("100001");
+        assertTrue(registry.getByStatus(PollStatus.ENDED, clock.currentTimeMillis() + 1).containsKey("100001"));
+
+        assertSame(poll, registry.unregister("100001"));
+        assertNull(registry.get("100001"));
+        assertTrue(registry.getByTag("event").isEmpty());
+        assertTrue(registry.getByCreator(creator).isEmpty());
+    }
+
+    @Test
+    void testRegistryOnlyReportsCreatorsWithChangedPollsAsDirty() {
+        PollRegistry registry = new PollRegistry();
+        UUID quiet = UUID.randomUUID();
+        UUID busy = UUID.randomUUID();
+        PollObject other = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+        registry.register("100001", quiet, other);
+        registry.register("100002", busy, poll);
+        assertEquals(Set.of(quiet, busy), registry.takeDirtyCreators());
+        // Taking clears the flags; a failed write hands the creator back
+        assertTrue(registry.takeDirtyCreators().isEmpty());
+        registry.markDirty(busy);
+        assertEquals(Set.of(busy), registry.takeDirtyCreators());
+
+        registry.markSaved(Map.of("100001", other.getChangeStamp(), "100002", poll.getChangeStamp()));
+        assertTrue(registry.takeDirtyCreators().isEmpty());
+
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        long stamp = poll.getChangeStamp();
+        assertTrue(poll.castVote(UUID.randomUUID(), "Option 1"));
+        assertTrue(poll.getChangeStamp() > stamp);
+        long saving = poll.getChangeStamp();
+        assertEquals(Set.of(busy), registry.takeDirtyCreators());
+        // A vote after the save read its stamp is left for the next save
+        assertTrue(poll.castVote(UUID.randomUUID(), "Option 2"));
+        registry.markSaved(Map.of("100002", saving));
+        assertEquals(Set.of(busy), registry.takeDirtyCreators());
+        registry.markSaved(Map.of("100002", poll.getChangeStamp()));
+        assertTrue(registry.takeDirtyCreators().isEmpty());
+
+        other.forceEnd();
+        assertEquals(Set.of(quiet), registry.takeDirtyCreators());
+        registry.markSaved(Map.of("100001", other.getChangeStamp()));
+        registry.addTag("100002", "event");
+        assertEquals(Set.of(busy), registry.takeDirtyCreators());
+        registry.markSaved(Map.of("100002", poll.getChangeStamp()));
+
+        // Deleting the last poll still rewrites the creator's file, once
+        registry.unregister("100001");
+        assertEquals(Set.of(quiet), registry.takeDirtyCreators());
+        assertTrue(registry.takeDirtyCreators().isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollSnapshotTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testBinarySnapshotRoundTripsPollsCompactly(@TempDir Path dir) throws Exception {
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+        UUID[] voters = new UUID[100_000];
+        for (int i = 0; i < voters.length; i++) {
+            voters[i] = UUID.randomUUID();
+            assertTrue(poll.castVote(voters[i], OPTIONS.get(i % 3)));
+        }
+        poll.forceEnd();
+        poll.setLifecycleStatus(PollStatus.ENDED);
+        PollObject ranked = new PlainPoll("Ranked", OPTIONS);
+        ranked.setPollType(PollType.RANKED);
+        ranked.setWarningThresholdsInSeconds(List.of(30, 5));
+
+        UUID creator = UUID.randomUUID();
+        Map<String, PollObject> polls = new java.util.LinkedHashMap<>();
+        polls.put("100001", poll);
+        polls.put("100002", ranked);
+        Path file = dir.resolve(creator + ".chps");
+        SnapshotFile.write(file, out -> PollSnapshot.write(out, creator, polls));
+        // About 20 bytes a voter, against well over 50 as JSON
+        assertTrue(Files.size(file) < 21L * voters.length, "Snapshot is " + Files.size(file) + " bytes");
+
+        PollSnapshot snapshot = PollSnapshot.open(file);
+        assertEquals(creator, snapshot.getCreator());
+        assertEquals(2, snapshot.size());
+        assertEquals("100001", snapshot.getPollId(0));
+        PollObject loaded = snapshot.decode(0, (title, options, description) ->
+                new PollObject(title, options, description, 0, 0, clock) {});
+        assertEquals(poll.getUuid(), loaded.getUuid());
+        assertEquals(poll.getStartMillis(), loaded.getStartMillis());
+        assertEquals(poll.getEndTime(), loaded.getEndTime());
+        assertEquals(poll.getEffectiveEndMillis(), loaded.getEffectiveEndMillis());
+        assertEquals(PollStatus.ENDED, loaded.getLifecycleStatus());
+        assertEquals(poll.getOptionVotes(), loaded.getOptionVotes());
+        assertTrue(loaded.hasVoted(voters[0]));
+        assertTrue(loaded.hasVoted(voters[voters.length - 1]));
+        assertFalse(loaded.audit(false).hasDrift());
+
+        PollObject loadedRanked = snapshot.decode(1, (title, options, description) -> new PlainPoll(title, options));
+        assertEquals(PollType.RANKED, loadedRanked.getPollType());
+        assertEquals(List.of(30, 5), loadedRanked.getWarningThresholdsInSeconds());
+        assertNull(loadedRanked.getLifecycleStatus());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(java.io.IOException.class, () -> PollSnapshot.open(file));
+
+        // A corrupt count or length anywhere is an IOException, never an unchecked one
+        Path small = dir.resolve("small.chps");
+        SnapshotFile.write(small, out -> PollSnapshot.write(out, creator, Map.of("100002", ranked)));
+        byte[] intact = Files.readAllBytes(small);
+        for (int at = 8; at + 4 <= intact.length; at += 4) {
+            for (int bad : new int[]{-1, Integer.MAX_VALUE}) {
+                byte[] damaged = intact.clone();
+                java.nio.ByteBuffer.wrap(damaged).putInt(at, bad);
+                Files.write(small, damaged);
+                try {
+                    PollSnapshot corrupt = PollSnapshot.open(small);
+                    for (int i = 0; i < corrupt.size(); i++) {
+                        corrupt.decode(i, (title, options, description) -> new PlainPoll(title, options));
+                    }
+                } catch (java.io.IOException e) {
+                    // Expected for most offsets
+                }
+            }
+        }
+    }
+}
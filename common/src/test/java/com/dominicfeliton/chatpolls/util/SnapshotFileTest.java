@@ -0,0 +1,36 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+    @Test
+    void testSnapshotFileKeepsOldContentsWhenAWriteFails(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("player.json");
+        SnapshotFile.write(file, out -> out.write("first".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        assertEquals("first", Files.readString(file));
+        assertFalse(Files.exists(SnapshotFile.backupOf(file)));
+
+        // Closing the stream early, as Jackson does, still writes everything
+        SnapshotFile.write(file, out -> {
+            out.write("second".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            out.close();
+        });
+        assertEquals("second", Files.readString(file));
+        assertEquals("first", Files.readString(SnapshotFile.backupOf(file)));
+
+        assertThrows(java.io.IOException.class, () -> SnapshotFile.write(file, out -> {
+            out.write("thi".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            throw new java.io.IOException("killed mid-write");
+        }));
+        assertEquals("second", Files.readString(file));
+        assertEquals("first", Files.readString(SnapshotFile.backupOf(file)));
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+}
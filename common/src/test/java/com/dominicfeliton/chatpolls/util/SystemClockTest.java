@@ -0,0 +1,25 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemClockTest {
+    @Test
+    void testFollowsSystemTimeAndNeverRunsBackwards() {
+        Clock clock = new SystemClock();
+        long before = System.currentTimeMillis();
+        long now = clock.currentTimeMillis();
+        long after = System.currentTimeMillis();
+        // Timers read the static time; polls read their clock, and both are one timeline
+        assertTrue(now >= before && now <= after, now + " not in [" + before + ", " + after + "]");
+        assertTrue(SystemClock.millis() >= now);
+
+        long last = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long read = i % 2 == 0 ? SystemClock.millis() : clock.currentTimeMillis();
+            assertTrue(read >= last);
+            last = read;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.dominicfeliton.chatpolls.util;
+
+import java.time.LocalDateTime;
+
+/**
+ * A clock that only moves when a test sets it.
+ */
+class TestClock implements Clock {
+    private LocalDateTime currentTime = LocalDateTime.now();
+
+    public void setCurrentTime(LocalDateTime time) {
+        this.currentTime = time;
+    }
+
+    @Override
+    public LocalDateTime getCurrentDateTime() {
+        return currentTime;
+    }
+}
@@ -0,0 +1,59 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoterTableTest {
+    @Test
+    void testSegmentsScaleWithCores() {
+        assertEquals(3, VoterTable.segmentBits(1));
+        assertEquals(3, VoterTable.segmentBits(2));
+        assertEquals(4, VoterTable.segmentBits(3));
+        assertEquals(5, VoterTable.segmentBits(8));
+        assertEquals(7, VoterTable.segmentBits(32));
+        assertEquals(8, VoterTable.segmentBits(512));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        assertTrue(new VoterTable().segmentCount() >= Math.min(256, 4 * cores));
+    }
+
+    @Test
+    void testConcurrentWritersKeepEveryVoter() throws InterruptedException {
+        VoterTable table = new VoterTable();
+        assertEquals(0, table.size());
+        assertEquals(0, table.copyValues(0).length);
+
+        int threads = 8;
+        int perThread = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        UUID[][] voters = new UUID[threads][perThread];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    voters[id][i] = UUID.randomUUID();
+                    assertEquals(VoterTable.NO_VALUE, table.putIfAbsent(voters[id][i], id));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, table.size());
+        for (int t = 0; t < threads; t++) {
+            for (UUID voter : voters[t]) {
+                assertEquals(t, table.get(voter));
+            }
+        }
+    }
+}
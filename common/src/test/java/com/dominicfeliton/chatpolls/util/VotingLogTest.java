@@ -0,0 +1,53 @@
+package com.dominicfeliton.chatpolls.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VotingLogTest {
+    private PollObject poll;
+    private TestClock clock;
+    private final String TITLE = "Test Poll";
+    private final String DESCRIPTION = "Test Description";
+    private final List<String> OPTIONS = Arrays.asList("Option 1", "Option 2", "Option 3");
+    private final long DELAY_SEC = 5;
+    private final long DURATION_SEC = 60;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        poll = new PollObject(TITLE, OPTIONS, DESCRIPTION, DELAY_SEC, DURATION_SEC, clock) {};
+    }
+
+    @Test
+    void testVotingLogSpillsOverflowToDisk(@TempDir Path dir) throws Exception {
+        VotingLog log = poll.getVotingLog();
+        log.setSpillFile(dir.resolve("poll.log"));
+        clock.setCurrentTime(poll.getCurrentDateTime().plusSeconds(DELAY_SEC + 1));
+
+        int votes = log.getCapacity() * 3 + 7;
+        UUID[] voters = new UUID[votes];
+        for (int i = 0; i < votes; i++) {
+            voters[i] = UUID.randomUUID();
+            assertTrue(poll.castVote(voters[i], OPTIONS.get(i % OPTIONS.size())));
+        }
+        assertEquals(0, log.getDroppedCount());
+
+        Iterator<VotingLog.Entry> it = log.iterator(50);
+        for (int i = 0; i < votes; i++) {
+            assertTrue(it.hasNext());
+            VotingLog.Entry entry = it.next();
+            assertEquals(voters[i], entry.getVoter());
+            assertEquals(i % OPTIONS.size(), entry.getValue());
+            assertEquals(VotingLog.Action.CAST, entry.getAction());
+        }
+        assertFalse(it.hasNext());
+    }
+}